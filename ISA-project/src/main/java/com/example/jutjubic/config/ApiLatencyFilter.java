@@ -0,0 +1,86 @@
+package com.example.jutjubic.config;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meri trajanje API zahteva u kružnom baferu poslednjih SAMPLE_CAPACITY zahteva.
+ * Koristi ga autoscaler transkodiranja kao signal da FFmpeg oduzima procesor web nitima.
+ * Streaming, HLS, upload (multipart i resumable) i NDJSON export zahtevi se ne mere jer njihovo
+ * trajanje zavisi od veličine prenosa.
+ */
+@Component
+public class ApiLatencyFilter implements Filter {
+
+    private static final int SAMPLE_CAPACITY = 2048;
+    private static final long WINDOW_MS = 60_000L;
+    private static final int MIN_SAMPLES = 20;
+    private static final String API_PREFIX = "/api/";
+    private static final String VIDEOS_PREFIX = "/api/videos/";
+
+    private final long[] durations = new long[SAMPLE_CAPACITY];
+    private final long[] finishedAt = new long[SAMPLE_CAPACITY];
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        if (!shouldMeasure(httpRequest.getRequestURI())) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            record((System.nanoTime() - start) / 1_000_000, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * p99 trajanja API zahteva u poslednjih minut, ili -1 ako uzoraka nema dovoljno.
+     * Upisi nisu sinhronizovani sa čitanjem, pa je vrednost približna - dovoljno za autoscaler.
+     */
+    public long p99Millis() {
+        long now = System.currentTimeMillis();
+        long[] window = new long[SAMPLE_CAPACITY];
+        int count = 0;
+        for (int i = 0; i < SAMPLE_CAPACITY; i++) {
+            if (now - finishedAt[i] <= WINDOW_MS) {
+                window[count++] = durations[i];
+            }
+        }
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        Arrays.sort(window, 0, count);
+        return window[(int) Math.ceil(count * 0.99) - 1];
+    }
+
+    private void record(long durationMs, long now) {
+        int slot = (int) (sequence.getAndIncrement() % SAMPLE_CAPACITY);
+        durations[slot] = durationMs;
+        finishedAt[slot] = now;
+    }
+
+    private boolean shouldMeasure(String uri) {
+        return uri.startsWith(API_PREFIX)
+                && !uri.endsWith("/stream")
+                && !uri.contains("/hls/")
+                && !uri.contains("/uploads")
+                && !uri.endsWith("/export")
+                && !uri.equals(VIDEOS_PREFIX + "create")
+                && !uri.equals(VIDEOS_PREFIX + "create-from-upload");
+    }
+}
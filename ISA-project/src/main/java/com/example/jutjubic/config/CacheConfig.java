@@ -16,10 +16,11 @@ public class CacheConfig {
 
     public static final String COMMENTS_CACHE = "commentsCache";
     public static final String COMMENT_COUNT_CACHE = "commentCountCache";
+    public static final String TOP_TAGS_CACHE = "topTagsCache";
 
     @Bean
     public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager(COMMENTS_CACHE, COMMENT_COUNT_CACHE);
+        return new ConcurrentMapCacheManager(COMMENTS_CACHE, COMMENT_COUNT_CACHE, TOP_TAGS_CACHE);
     }
 }
 
@@ -12,10 +12,15 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * RabbitMQ red za transkodiranje; ne koristi se kada je transcoding.queue.mode=embedded.
+ */
 @Configuration
+@ConditionalOnProperty(name = "transcoding.queue.mode", havingValue = "amqp", matchIfMissing = true)
 @RequiredArgsConstructor
 public class RabbitMQConfig {
 
@@ -24,6 +29,12 @@ public class RabbitMQConfig {
     private static final int MESSAGE_TTL_MS = 60_000;
     private static final int PREFETCH_COUNT = 1;
 
+    /**
+     * Najveći prioritet poruke u redu za transkodiranje (vidi TranscodingProducerService.computePriority).
+     * Argumenti postojećeg reda ne mogu da se menjaju - red bez x-max-priority mora jednom da se obriše.
+     */
+    private static final int MAX_PRIORITY = 10;
+
     @Value("${transcoding.queue.name}")
     private String queueName;
 
@@ -38,6 +49,7 @@ public class RabbitMQConfig {
     @Bean
     public Queue transcodingQueue() {
         return QueueBuilder.durable(queueName)
+                .maxPriority(MAX_PRIORITY)
                 .deadLetterExchange(exchangeName + DLX_SUFFIX)
                 .deadLetterRoutingKey(routingKey + DLQ_SUFFIX)
                 .build();
@@ -94,6 +106,8 @@ public class RabbitMQConfig {
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter jsonMessageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(jsonMessageConverter);
+        // Unroutable messages come back to the publisher instead of being confirmed and dropped
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
 
@@ -29,11 +29,15 @@ public class SecurityConfig {
     );
 
     private static final List<String> ALLOWED_METHODS = List.of(
-            "GET", "POST", "PUT", "DELETE", "OPTIONS"
+            "GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"
     );
 
     private static final List<String> ALLOWED_HEADERS = List.of(
-            "Authorization", "Content-Type"
+            "Authorization", "Content-Type", "If-None-Match", "If-Modified-Since", "Range", "If-Range", "X-File-Name", "Upload-Offset"
+    );
+
+    private static final List<String> EXPOSED_HEADERS = List.of(
+            "ETag", "Last-Modified", "Content-Range", "Accept-Ranges", "Content-Length", "Upload-Offset"
     );
 
     private final AuthenticationProvider authenticationProvider;
@@ -69,6 +73,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(ALLOWED_ORIGINS);
         configuration.setAllowedMethods(ALLOWED_METHODS);
         configuration.setAllowedHeaders(ALLOWED_HEADERS);
+        configuration.setExposedHeaders(EXPOSED_HEADERS);
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -7,9 +7,11 @@ import com.example.jutjubic.dto.ErrorResponse;
 import com.example.jutjubic.exceptions.CommentLimitExceededException;
 import com.example.jutjubic.models.Comment;
 import com.example.jutjubic.services.CommentService;
+import com.example.jutjubic.services.ResourceVersionService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -18,15 +20,17 @@ import java.util.UUID;
 @RequestMapping("/api/comments")
 public class CommentController {
     private final CommentService commentService;
+    private final ResourceVersionService resourceVersionService;
 
-    public CommentController(CommentService commentService) {
+    public CommentController(CommentService commentService, ResourceVersionService resourceVersionService) {
         this.commentService = commentService;
+        this.resourceVersionService = resourceVersionService;
     }
 
     /**
      * Dobija paginiranu listu komentara za video.
      * Komentari su sortirani od najnovijeg do najstarijeg.
-     * Rezultat je keširan.
+     * Rezultat je keširan, a uslovni GET (If-None-Match) vraća 304 ako nema novih komentara.
      *
      * @param videoId ID videa
      * @param page Broj stranice (0-based, default: 0)
@@ -37,8 +41,12 @@ public class CommentController {
     public ResponseEntity<CommentPageResponse> getCommentsByVideoIdPaginated(
             @PathVariable UUID videoId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest request
     ) {
+        if (resourceVersionService.checkNotModified(request, ResourceVersionService.commentsKey(videoId))) {
+            return null;
+        }
         CommentPageResponse comments = commentService.getCommentsByVideoIdPaginated(videoId, page, size);
         return ResponseEntity.ok(comments);
     }
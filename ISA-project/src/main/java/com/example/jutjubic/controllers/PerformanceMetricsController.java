@@ -3,11 +3,16 @@ package com.example.jutjubic.controllers;
 import com.example.jutjubic.dto.PerformanceMetricDto;
 import com.example.jutjubic.dto.PerformanceReportDto;
 import com.example.jutjubic.services.PerformanceMetricsService;
+import com.example.jutjubic.services.TranscodingAutoscaler;
+import com.example.jutjubic.services.TranscodingPresetPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -25,9 +30,24 @@ public class PerformanceMetricsController {
     private static final Logger logger = LoggerFactory.getLogger(PerformanceMetricsController.class);
 
     private final PerformanceMetricsService metricsService;
+    private final TranscodingAutoscaler transcodingAutoscaler;
+    private final TranscodingPresetPolicy transcodingPresetPolicy;
 
-    public PerformanceMetricsController(PerformanceMetricsService metricsService) {
+    /**
+     * Benchmark endpoints change how every upload is transcoded, so they are off unless explicitly enabled.
+     */
+    @Value("${performance.benchmark.enabled:false}")
+    private boolean benchmarkEnabled;
+
+    @Value("${performance.benchmark.max-pin-minutes:240}")
+    private int maxPinMinutes;
+
+    public PerformanceMetricsController(PerformanceMetricsService metricsService,
+                                        TranscodingAutoscaler transcodingAutoscaler,
+                                        TranscodingPresetPolicy transcodingPresetPolicy) {
         this.metricsService = metricsService;
+        this.transcodingAutoscaler = transcodingAutoscaler;
+        this.transcodingPresetPolicy = transcodingPresetPolicy;
     }
 
     /**
@@ -104,4 +124,59 @@ public class PerformanceMetricsController {
         metricsService.clearMetrics(operationType);
         return ResponseEntity.ok("Metrics cleared for: " + operationType);
     }
+
+    /**
+     * Pin the number of transcoding consumers and optionally the x264 preset (benchmark function,
+     * see test-transcoding-throughput.py). Only available with performance.benchmark.enabled=true.
+     * The autoscaler stops adjusting consumers and FFmpeg threads, and the preset policy uses the pinned
+     * preset, until released or until the pin expires after the given minutes.
+     * The count must be between 1 and transcoding.autoscaler.max-consumers.
+     */
+    @PutMapping("/transcoding/consumers")
+    public ResponseEntity<String> pinTranscodingConsumers(@RequestParam int count,
+                                                          @RequestParam(required = false) String preset,
+                                                          @RequestParam(defaultValue = "60") int minutes) {
+        if (!benchmarkEnabled) {
+            return benchmarkDisabled();
+        }
+        int maxConsumers = transcodingAutoscaler.maxConsumers();
+        if (count < 1 || count > maxConsumers) {
+            return ResponseEntity.badRequest().body("count must be between 1 and " + maxConsumers);
+        }
+        if (minutes < 1 || minutes > maxPinMinutes) {
+            return ResponseEntity.badRequest().body("minutes must be between 1 and " + maxPinMinutes);
+        }
+
+        Duration duration = Duration.ofMinutes(minutes);
+        if (preset != null) {
+            try {
+                transcodingPresetPolicy.pinPreset(preset, duration);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        } else {
+            transcodingPresetPolicy.releasePreset();
+        }
+        transcodingAutoscaler.pinConsumers(count, duration);
+        return ResponseEntity.ok("Transcoding consumers pinned to " + count
+                + (preset != null ? ", preset " + preset : "") + " for " + minutes + " minutes");
+    }
+
+    /**
+     * Hand the transcoding consumer count back to the autoscaler and the preset back to the preset policy.
+     */
+    @DeleteMapping("/transcoding/consumers")
+    public ResponseEntity<String> releaseTranscodingConsumers() {
+        if (!benchmarkEnabled) {
+            return benchmarkDisabled();
+        }
+        transcodingAutoscaler.releaseConsumers();
+        transcodingPresetPolicy.releasePreset();
+        return ResponseEntity.ok("Transcoding consumers released to the autoscaler");
+    }
+
+    private static ResponseEntity<String> benchmarkDisabled() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body("Benchmark endpoints are disabled (performance.benchmark.enabled=false)");
+    }
 }
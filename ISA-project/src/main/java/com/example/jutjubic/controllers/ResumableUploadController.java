@@ -0,0 +1,166 @@
+package com.example.jutjubic.controllers;
+
+import com.example.jutjubic.dto.UploadResultDto;
+import com.example.jutjubic.dto.UploadSessionDto;
+import com.example.jutjubic.exceptions.UploadOffsetMismatchException;
+import com.example.jutjubic.models.User;
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.services.ResumableUploadService;
+import com.example.jutjubic.services.UserService;
+import com.example.jutjubic.services.VideoService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * REST kontroler za resumable (chunked) upload videa.
+ *
+ * Tok: POST kreira sesiju, PATCH šalje chunk od offseta iz Upload-Offset header-a,
+ * HEAD/GET vraća trenutni offset posle prekida, POST /finalize kreira video.
+ */
+@RestController
+@RequestMapping("/api/videos/uploads/sessions")
+public class ResumableUploadController {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadController.class);
+    private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+
+    private final ResumableUploadService resumableUploadService;
+    private final VideoService videoService;
+    private final UserService userService;
+
+    public ResumableUploadController(ResumableUploadService resumableUploadService, VideoService videoService,
+                                     UserService userService) {
+        this.resumableUploadService = resumableUploadService;
+        this.videoService = videoService;
+        this.userService = userService;
+    }
+
+    /**
+     * Kreira upload sesiju i prealocira fajl.
+     *
+     * @param size Ukupna veličina fajla u bajtovima (max 200MB)
+     * @param filename Originalni naziv fajla (opciono, za ekstenziju)
+     */
+    @PostMapping
+    public ResponseEntity<?> createSession(@RequestParam("size") long size,
+                                           @RequestParam(value = "filename", required = false) String filename) {
+        User user = userService.getLoggedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).body("Unauthorized");
+        }
+        try {
+            UploadSessionDto session = resumableUploadService.createSession(user.getId(), filename, size);
+            return ResponseEntity.status(201)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getOffset()))
+                    .body(session);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IOException e) {
+            logger.error("Error creating upload session", e);
+            return ResponseEntity.status(500).body("Error creating upload session: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Vraća trenutni offset sesije (u Upload-Offset header-u i telu odgovora).
+     */
+    @RequestMapping(value = "/{sessionId}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public ResponseEntity<?> getSession(@PathVariable UUID sessionId) {
+        User user = userService.getLoggedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).body("Unauthorized");
+        }
+        try {
+            UploadSessionDto session = resumableUploadService.getSession(sessionId, user.getId());
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(session.getOffset()))
+                    .body(session);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Upisuje chunk. Telo zahteva je sirov sadržaj (application/octet-stream),
+     * a Upload-Offset mora biti jednak trenutnom offsetu sesije.
+     */
+    @PatchMapping(value = "/{sessionId}", consumes = "application/octet-stream")
+    public ResponseEntity<?> appendChunk(@PathVariable UUID sessionId,
+                                         @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+                                         HttpServletRequest request) {
+        User user = userService.getLoggedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).body("Unauthorized");
+        }
+        try {
+            long newOffset = resumableUploadService.appendChunk(sessionId, user.getId(), offset,
+                    request.getInputStream());
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(newOffset))
+                    .build();
+        } catch (UploadOffsetMismatchException e) {
+            return ResponseEntity.status(409)
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(e.getCurrentOffset()))
+                    .body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Chunk upload for session {} interrupted: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(500).body("Chunk upload interrupted: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finalizuje upload i kreira video kroz standardni tok kreiranja.
+     */
+    @PostMapping(value = "/{sessionId}/finalize", consumes = "multipart/form-data")
+    public ResponseEntity<?> finalizeSession(
+            @PathVariable UUID sessionId,
+            @RequestParam("title") String title,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam("tags") String tags,
+            @RequestParam(value = "latitude", required = false) Double latitude,
+            @RequestParam(value = "longitude", required = false) Double longitude,
+            @RequestParam("thumbnailFile") MultipartFile thumbnailFile,
+            @RequestParam(value = "scheduledAt", required = false) LocalDateTime scheduledAt) {
+        User user = userService.getLoggedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).body("Unauthorized");
+        }
+        if (scheduledAt != null && scheduledAt.isBefore(LocalDateTime.now())) {
+            return ResponseEntity.status(400).body("Scheduled time must be in the future");
+        }
+        UploadResultDto upload;
+        try {
+            upload = resumableUploadService.finalizeSession(sessionId, user.getId());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IOException e) {
+            logger.error("Error finalizing upload session {}", sessionId, e);
+            return ResponseEntity.status(500).body("Error finalizing upload: " + e.getMessage());
+        }
+
+        // The file is now a completed upload; if creation fails it can be retried via /create-from-upload
+        try {
+            Video video = videoService.createVideoFromUpload(title, description, tags, latitude, longitude,
+                    upload.getUploadId(), thumbnailFile, user, scheduledAt);
+            logger.info("Video created from upload session {} with ID: {}", sessionId, video.getId());
+            return ResponseEntity.ok(video);
+        } catch (IllegalArgumentException e) {
+            logger.error("Validation error while finalizing upload: {}", e.getMessage());
+            return ResponseEntity.status(400).body("Error creating video from upload "
+                    + upload.getUploadId() + ": " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error creating video from upload session {}", sessionId, e);
+            return ResponseEntity.status(500).body("Error creating video from upload "
+                    + upload.getUploadId() + ": " + e.getMessage());
+        }
+    }
+}
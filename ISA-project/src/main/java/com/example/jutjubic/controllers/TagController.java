@@ -0,0 +1,58 @@
+package com.example.jutjubic.controllers;
+
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.services.TagService;
+import com.example.jutjubic.utils.CursorPageResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/tags")
+public class TagController {
+    private static final Logger logger = LoggerFactory.getLogger(TagController.class);
+
+    private final TagService tagService;
+
+    public TagController(TagService tagService) {
+        this.tagService = tagService;
+    }
+
+    /**
+     * Dobija javno dostupne video objave sa datim tagom, najnovije prvo.
+     * Koristi keyset paginaciju: za sledeću stranicu prosleđuje se nextCursor iz prethodnog odgovora.
+     *
+     * @param tag Tag (case-insensitive)
+     * @param cursor Kursor sledeće stranice (opciono)
+     * @param size Veličina stranice (default: 16, max: 100)
+     * @return Stranica videa sa kursorom za nastavak
+     */
+    @GetMapping("/{tag}/videos")
+    public ResponseEntity<CursorPageResponse<Video>> getVideosByTag(
+            @PathVariable String tag,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(defaultValue = "16") int size
+    ) {
+        try {
+            return ResponseEntity.ok(tagService.getVideosByTag(tag, cursor, size));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid tag browse request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Dobija najpopularnije tagove sa brojem videa.
+     *
+     * @param limit Broj tagova (default: 20, max: 100)
+     * @return Lista parova tag/count sortirana opadajuće
+     */
+    @GetMapping("/top")
+    public ResponseEntity<List<Map<String, Object>>> getTopTags(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(tagService.getTopTags(limit));
+    }
+}
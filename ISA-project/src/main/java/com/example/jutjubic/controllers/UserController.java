@@ -4,12 +4,15 @@ import com.example.jutjubic.dto.UserProfileDto;
 import com.example.jutjubic.models.User;
 import com.example.jutjubic.models.Video;
 import com.example.jutjubic.repositories.UserRepository;
+import com.example.jutjubic.services.NdjsonExportService;
 import com.example.jutjubic.services.UserService;
 import com.example.jutjubic.services.VideoService;
 import com.example.jutjubic.utils.PageResponse;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.UUID;
 
 @RestController
@@ -18,11 +21,14 @@ class UserController {
     private final UserRepository userRepository;
     private final UserService userService;
     private final VideoService videoService;
+    private final NdjsonExportService ndjsonExportService;
 
-    public UserController(UserRepository userRepository, UserService userService, VideoService videoService) {
+    public UserController(UserRepository userRepository, UserService userService, VideoService videoService,
+                          NdjsonExportService ndjsonExportService) {
         this.userRepository = userRepository;
         this.userService = userService;
         this.videoService = videoService;
+        this.ndjsonExportService = ndjsonExportService;
     }
 
     @GetMapping("/users")
@@ -30,6 +36,17 @@ class UserController {
         return userRepository.findAll();
     }
 
+    /**
+     * Izvozi javne profile svih korisnika kao NDJSON (jedan JSON objekat po liniji), bez lozinki.
+     * Za razliku od /users, ne učitava celu tabelu u memoriju.
+     */
+    @GetMapping(value = "/users/export", produces = NdjsonExportService.NDJSON_CONTENT_TYPE)
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonExportService.NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        ndjsonExportService.exportUsers(response.getOutputStream());
+    }
+
     /**
      * Javni endpoint za dobijanje profila korisnika.
      * Dostupan svim korisnicima (autentifikovanim i neautentifikovanim).
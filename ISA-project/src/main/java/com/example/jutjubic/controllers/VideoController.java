@@ -1,19 +1,30 @@
 package com.example.jutjubic.controllers;
 
+import com.example.jutjubic.dto.SuggestionDto;
+import com.example.jutjubic.dto.UploadResultDto;
 import com.example.jutjubic.dto.ViewResponseDto;
 import com.example.jutjubic.models.User;
 import com.example.jutjubic.models.Video;
+import com.example.jutjubic.services.NdjsonExportService;
+import com.example.jutjubic.services.ResourceVersionService;
+import com.example.jutjubic.services.SuggestionService;
 import com.example.jutjubic.services.UserService;
 import com.example.jutjubic.services.VideoService;
+import com.example.jutjubic.services.VideoUploadService;
 import com.example.jutjubic.utils.PageResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,10 +35,20 @@ class VideoController {
 
     private final VideoService videoService;
     private final UserService userService;
+    private final SuggestionService suggestionService;
+    private final NdjsonExportService ndjsonExportService;
+    private final ResourceVersionService resourceVersionService;
+    private final VideoUploadService videoUploadService;
 
-    VideoController(VideoService videoService, UserService userService) {
+    VideoController(VideoService videoService, UserService userService, SuggestionService suggestionService,
+                    NdjsonExportService ndjsonExportService, ResourceVersionService resourceVersionService,
+                    VideoUploadService videoUploadService) {
         this.videoService = videoService;
         this.userService = userService;
+        this.suggestionService = suggestionService;
+        this.ndjsonExportService = ndjsonExportService;
+        this.resourceVersionService = resourceVersionService;
+        this.videoUploadService = videoUploadService;
     }
 
     /**
@@ -84,17 +105,152 @@ class VideoController {
         }
     }
 
+    /**
+     * Streaming upload video fajla. Telo zahteva je sirov sadržaj fajla (application/octet-stream)
+     * i upisuje se direktno na konačnu lokaciju, bez multipart privremenog fajla.
+     * Vraćeni uploadId se zatim prosleđuje na /create-from-upload zajedno sa metapodacima.
+     *
+     * @param filename Originalni naziv fajla (header X-File-Name, opciono)
+     * @return ResponseEntity sa uploadId, veličinom i SHA-256 hash-om
+     */
+    @PostMapping(value = "/uploads", consumes = "application/octet-stream")
+    public ResponseEntity<?> uploadVideoStream(
+            @RequestHeader(value = "X-File-Name", required = false) String filename,
+            HttpServletRequest request) {
+        try {
+            User authenticatedUser = userService.getLoggedUser();
+
+            if (authenticatedUser == null) {
+                logger.warn("Unauthorized attempt to upload video");
+                return ResponseEntity.status(401).body("Unauthorized");
+            }
+
+            UploadResultDto result = videoUploadService.storeStream(request.getInputStream(), filename,
+                    request.getContentLengthLong(), authenticatedUser.getId());
+            return ResponseEntity.status(201).body(result);
+        } catch (IllegalArgumentException e) {
+            logger.error("Validation error while uploading video: {}", e.getMessage());
+            return ResponseEntity.status(400).body("Error uploading video: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error uploading video", e);
+            return ResponseEntity.status(500).body("Error uploading video: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Kreira video iz završenog streaming upload-a. Multipart zahtev nosi samo metapodatke i thumbnail.
+     *
+     * @param uploadId ID dobijen od /uploads endpoint-a
+     * @param thumbnailFile Thumbnail image file
+     * @return ResponseEntity with created Video or error message
+     */
+    @PostMapping(value = "/create-from-upload", consumes = "multipart/form-data")
+    public ResponseEntity<?> createVideoFromUpload(
+            @RequestParam("title") String title,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam("tags") String tags,
+            @RequestParam(value = "latitude", required = false) Double latitude,
+            @RequestParam(value = "longitude", required = false) Double longitude,
+            @RequestParam("uploadId") UUID uploadId,
+            @RequestParam("thumbnailFile") MultipartFile thumbnailFile,
+            @RequestParam(value = "scheduledAt", required = false) LocalDateTime scheduledAt) {
+        try {
+            User authenticatedUser = userService.getLoggedUser();
+
+            if (authenticatedUser == null) {
+                logger.warn("Unauthorized attempt to create video");
+                return ResponseEntity.status(401).body("Unauthorized");
+            }
+
+            if (scheduledAt != null && scheduledAt.isBefore(LocalDateTime.now())) {
+                logger.warn("Scheduled time is in the past: {}", scheduledAt);
+                return ResponseEntity.status(400).body("Scheduled time must be in the future");
+            }
+
+            Video video = videoService.createVideoFromUpload(title, description, tags, latitude, longitude,
+                    uploadId, thumbnailFile, authenticatedUser, scheduledAt);
+            logger.info("Video created from upload {} with ID: {}", uploadId, video.getId());
+
+            return ResponseEntity.ok(video);
+        } catch (IllegalArgumentException e) {
+            logger.error("Validation error while creating video: {}", e.getMessage());
+            return ResponseEntity.status(400).body("Error creating video: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error creating video", e);
+            return ResponseEntity.status(500).body("Error creating video: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Paginirana lista javno dostupnih videa.
+     * Podržava uslovni GET: ako se lista nije promenila od ETag-a klijenta, vraća 304 bez upita ka bazi.
+     */
     @GetMapping("/")
     public ResponseEntity<PageResponse<Video>> getAllVideos(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "16") int size
+            @RequestParam(defaultValue = "16") int size,
+            WebRequest request
     ) {
+        if (resourceVersionService.checkNotModified(request, ResourceVersionService.VIDEO_LIST_KEY)) {
+            return null;
+        }
         PageResponse<Video> videos = videoService.getVideosPaginated(page, size);
         return ResponseEntity.ok(videos);
     }
 
+    /**
+     * Izvozi sve javno dostupne video objave kao NDJSON (jedan JSON objekat po liniji).
+     * Redovi se čitaju kursorom i šalju odmah, pa memorija ne raste sa brojem videa.
+     */
+    @GetMapping(value = "/export", produces = NdjsonExportService.NDJSON_CONTENT_TYPE)
+    public void exportVideos(HttpServletResponse response) throws IOException {
+        response.setContentType(NdjsonExportService.NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        ndjsonExportService.exportVideos(response.getOutputStream());
+    }
+
+    /**
+     * Typeahead predlozi nad naslovima i tagovima, sortirani po broju pregleda.
+     * Služi se iz indeksa u memoriji, bez upita ka bazi.
+     *
+     * @param q Prefiks koji je korisnik uneo
+     * @param limit Maksimalan broj predloga (default: 10)
+     * @return Lista predloga
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggest(
+            @RequestParam("q") String q,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(suggestionService.suggest(q, limit));
+    }
+
+    /**
+     * Dobija više videa jednim zahtevom umesto pojedinačnih GET /{id} poziva.
+     * Rezultat prati redosled traženih ID-eva; nepostojeći ID-evi se preskaču.
+     *
+     * @param ids Lista ID-eva odvojenih zarezom (najviše 100)
+     * @return Lista pronađenih videa (VideoSummaryDto, bez privatnih podataka kreatora)
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<?> getVideosBatch(@RequestParam("ids") List<UUID> ids) {
+        try {
+            return ResponseEntity.ok(videoService.getVideosByIds(ids));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid batch video request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Metapodaci jednog videa.
+     * Podržava uslovni GET: ako se video nije promenio od ETag-a klijenta, vraća 304 bez upita ka bazi.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Video> getVideoById(@PathVariable UUID id) {
+    public ResponseEntity<Video> getVideoById(@PathVariable UUID id, WebRequest request) {
+        if (resourceVersionService.checkNotModified(request, ResourceVersionService.videoKey(id))) {
+            return null;
+        }
         Video video = videoService.getVideoById(id);
         return ResponseEntity.ok(video);
     }
@@ -182,6 +338,11 @@ class VideoController {
             }
         }
 
+        // Adaptivni bitrate: plejer koji podržava HLS koristi master playlistu umesto MP4 fajla
+        streamingInfo.put("hlsUrl", video.getHlsMasterPath() != null
+                ? "/api/videos/" + videoId + "/hls/master.m3u8"
+                : null);
+
         return ResponseEntity.ok(streamingInfo);
     }
 
@@ -0,0 +1,71 @@
+package com.example.jutjubic.controllers;
+
+import com.example.jutjubic.services.VideoStreamingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * REST kontroler za strimovanje video fajlova sa podrškom za HTTP Range zahteve.
+ * Zamenjuje generičko posluživanje statičkih resursa (/media/**) za video plejer.
+ */
+@RestController
+@RequestMapping("/api/videos")
+public class VideoStreamingController {
+    private static final Logger logger = LoggerFactory.getLogger(VideoStreamingController.class);
+
+    private final VideoStreamingService videoStreamingService;
+
+    public VideoStreamingController(VideoStreamingService videoStreamingService) {
+        this.videoStreamingService = videoStreamingService;
+    }
+
+    /**
+     * Strimuje video fajl. Ako je video transkodiran, šalje se transkodirana verzija.
+     * Podržava jedan ili više opsega (Range: bytes=...), If-Range i If-None-Match.
+     *
+     * @param id ID videa
+     * @param original Ako je true, šalje se originalni fajl i kada postoji transkodirana verzija
+     */
+    @GetMapping("/{id}/stream")
+    public void streamVideo(@PathVariable UUID id,
+                            @RequestParam(defaultValue = "false") boolean original,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        Optional<Path> file = videoStreamingService.resolveVideoFile(id, original);
+        if (file.isEmpty()) {
+            logger.warn("Video file not found for streaming: {}", id);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        videoStreamingService.streamFile(file.get(), request, response);
+    }
+
+    /**
+     * Služi HLS izlaz videa: master playlistu, playliste rendicija i segmente, sa podrškom za Range.
+     * Putanje u playlistama su relativne, pa plejer sve zahteve šalje na ovaj endpoint.
+     *
+     * @param id ID videa
+     * @param file Putanja unutar HLS direktorijuma (npr. /master.m3u8 ili /480p/seg_00001.ts)
+     */
+    @GetMapping("/{id}/hls/{*file}")
+    public void streamHls(@PathVariable UUID id,
+                          @PathVariable String file,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        Optional<Path> hlsFile = videoStreamingService.resolveHlsFile(id, file);
+        if (hlsFile.isEmpty()) {
+            logger.debug("HLS file {} not found for video {}", file, id);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        videoStreamingService.streamFile(hlsFile.get(), request, response);
+    }
+}
@@ -26,4 +26,5 @@ public class CreateVideoDto {
     private Double longitude;
     private Time duration;
     private LocalDateTime scheduledAt;
+    private String contentHash;
 }
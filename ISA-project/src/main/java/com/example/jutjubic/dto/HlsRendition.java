@@ -0,0 +1,40 @@
+package com.example.jutjubic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Jedna rendicija HLS lestvice (npr. 480p, 1 Mbps).
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HlsRendition implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Naziv rendicije, ujedno i naziv poddirektorijuma (npr. "480p")
+     */
+    private String name;
+
+    /**
+     * Ciljna visina u pikselima; širina se računa iz odnosa stranica izvora
+     */
+    private int height;
+
+    /**
+     * Video bitrate in bits per second
+     */
+    private long videoBitrate;
+
+    /**
+     * Audio bitrate in bits per second
+     */
+    private long audioBitrate;
+}
@@ -0,0 +1,22 @@
+package com.example.jutjubic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * DTO za jedan predlog pretrage (typeahead).
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class SuggestionDto {
+    private String text;
+    private String type;       // "TITLE" ili "TAG"
+    private UUID videoId;      // samo za TITLE predloge
+    private long weight;       // broj pregleda
+}
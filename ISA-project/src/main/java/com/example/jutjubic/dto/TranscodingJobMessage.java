@@ -6,6 +6,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.UUID;
 
 
@@ -62,6 +63,52 @@ public class TranscodingJobMessage implements Serializable {
      */
     private String format;
 
+    /**
+     * Output directory for the HLS ladder (master.m3u8 plus one subdirectory per rendition),
+     * or null if HLS output is disabled
+     */
+    private String hlsOutputDirectory;
+
+    /**
+     * HLS renditions to produce, from lowest to highest
+     */
+    private List<HlsRendition> hlsRenditions;
+
+    /**
+     * Target HLS segment duration in seconds
+     */
+    private Integer hlsSegmentSeconds;
+
+    /**
+     * Index of the source part for a segment sub-job, or null for a whole-video job
+     */
+    private Integer segmentIndex;
+
+    /**
+     * Total number of parts the source was split into (segment sub-jobs only)
+     */
+    private Integer segmentCount;
+
+    /**
+     * AMQP priority the job was published with (0-9, higher is consumed first)
+     */
+    private Integer priority;
+
+    /**
+     * Publish time in epoch milliseconds, used for the queue wait time metric
+     */
+    private Long enqueuedAt;
+
+    /**
+     * x264 preset chosen by TranscodingPresetPolicy, or null to encode at the target bitrate
+     */
+    private String x264Preset;
+
+    /**
+     * CRF used with x264Preset; the target bitrate then only caps the rate (maxrate)
+     */
+    private Integer crf;
+
     @Override
     public String toString() {
         return "TranscodingJobMessage{" +
@@ -71,6 +118,12 @@ public class TranscodingJobMessage implements Serializable {
                 ", videoCodec='" + videoCodec + '\'' +
                 ", resolution='" + resolution + '\'' +
                 ", format='" + format + '\'' +
+                ", hlsOutputDirectory='" + hlsOutputDirectory + '\'' +
+                ", segmentIndex=" + segmentIndex +
+                ", segmentCount=" + segmentCount +
+                ", priority=" + priority +
+                ", x264Preset='" + x264Preset + '\'' +
+                ", crf=" + crf +
                 '}';
     }
 }
@@ -0,0 +1,32 @@
+package com.example.jutjubic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Događaj napretka transkodiranja koji se šalje na /topic/transcoding/{videoId}.
+ * Vrednosti koje nisu poznate (npr. ETA pre prvog izveštaja FFmpeg-a) su null.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class TranscodingProgressDto {
+    private UUID videoId;
+    private Status status;
+    private Double percent;
+    private Double fps;
+    private Double speed;
+    private Long etaSeconds;
+    private long timestamp;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
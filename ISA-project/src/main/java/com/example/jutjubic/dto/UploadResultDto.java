@@ -0,0 +1,22 @@
+package com.example.jutjubic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * DTO sa rezultatom završenog upload-a video fajla.
+ * uploadId se prosleđuje endpoint-u za kreiranje videa iz upload-a.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UploadResultDto {
+    private UUID uploadId;
+    private long size;
+    private String sha256;
+}
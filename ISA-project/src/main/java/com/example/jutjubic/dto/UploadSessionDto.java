@@ -0,0 +1,21 @@
+package com.example.jutjubic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * DTO sa stanjem resumable upload sesije.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UploadSessionDto {
+    private UUID sessionId;
+    private long offset;
+    private long totalSize;
+}
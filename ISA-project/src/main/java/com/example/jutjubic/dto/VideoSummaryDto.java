@@ -0,0 +1,42 @@
+package com.example.jutjubic.dto;
+
+import com.example.jutjubic.models.Video;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.sql.Time;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Javni prikaz videa za izvoz i batch upite: polja videa i samo id i korisničko ime kreatora,
+ * bez ostalih podataka korisnika (lozinka, email, adresa, verifikacioni kod).
+ * Redosled polja je redosled argumenata konstruktora u JPQL projekcijama VideoRepository-ja.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter @Setter
+public class VideoSummaryDto {
+    private UUID id;
+    private String title;
+    private String description;
+    private String videoPath;
+    private String thumbnailPath;
+    private String thumbnailCompressedPath;
+    private long fileSize;
+    private Time duration;
+    private boolean transcoded;
+    private String transcodedVideoPath;
+    private String hlsMasterPath;
+    private Video.ProcessingState processingState;
+    private LocalDateTime scheduledAt;
+    private String tags;
+    private long viewCount;
+    private LocalDateTime createdAt;
+    private Double latitude;
+    private Double longitude;
+    private UUID creatorId;
+    private String creatorUsername;
+}
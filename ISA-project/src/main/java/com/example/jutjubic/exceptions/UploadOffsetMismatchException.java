@@ -0,0 +1,20 @@
+package com.example.jutjubic.exceptions;
+
+/**
+ * Izuzetak koji se baca kada chunk resumable upload-a ne počinje na trenutnom offsetu sesije.
+ * Klijent treba da pročita trenutni offset i nastavi od njega.
+ */
+public class UploadOffsetMismatchException extends RuntimeException {
+
+    private final long currentOffset;
+
+    public UploadOffsetMismatchException(long requestedOffset, long currentOffset) {
+        super(String.format("Chunk offset %d does not match current upload offset %d",
+            requestedOffset, currentOffset));
+        this.currentOffset = currentOffset;
+    }
+
+    public long getCurrentOffset() {
+        return currentOffset;
+    }
+}
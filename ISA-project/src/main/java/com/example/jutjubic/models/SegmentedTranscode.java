@@ -0,0 +1,67 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Stanje segmentiranog transkodiranja jednog videa.
+ * Izvor je isečen na totalSegments delova, a svaki deo je zaseban posao u redu;
+ * radnik koji završi poslednji deo prebacuje stanje u CONCATENATING i spaja izlaze, a zatim u CONCATENATED.
+ */
+@Entity
+@Table(name = "segmented_transcodes")
+@NoArgsConstructor
+@Getter @Setter
+public class SegmentedTranscode {
+    @Id
+    @Column(name = "video_id", columnDefinition = "BINARY(16)")
+    private UUID videoId;
+
+    @Column(name = "total_segments", nullable = false)
+    private int totalSegments;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false, length = 16)
+    private State state;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Kada je radnik preuzeo spajanje. Ako radnik padne tokom spajanja, posle isteka
+     * zakupa (concat-lease-minutes) spajanje može da preuzme drugi radnik.
+     */
+    @Column(name = "concat_started_at")
+    private LocalDateTime concatStartedAt;
+
+    /**
+     * x264 preset i CRF svih delova (TranscodingPresetPolicy), kako bi i obnovljeno spajanje
+     * zabeležilo podešavanja sa kojima je video kodiran. NULL - delovi se kodiraju na ciljni bitrate.
+     */
+    @Column(name = "x264_preset", length = 16)
+    private String x264Preset;
+
+    @Column(name = "crf")
+    private Integer crf;
+
+    public SegmentedTranscode(UUID videoId, int totalSegments) {
+        this.videoId = videoId;
+        this.totalSegments = totalSegments;
+        this.state = State.TRANSCODING;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public enum State {
+        TRANSCODING,
+        CONCATENATING,
+        /**
+         * Izlaz je spojen; red i delovi se brišu tek kada je video upisan kao transkodiran.
+         */
+        CONCATENATED
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Posao za transkodiranje koji čeka da bude objavljen u RabbitMQ (transactional outbox).
+ * Red se upisuje u istoj transakciji u kojoj video prelazi u TRANSCODING_QUEUED, a briše tek
+ * kada broker potvrdi poruku, pa posao ne može da se izgubi ni kada broker nije dostupan.
+ */
+@Entity
+@Table(name = "transcoding_outbox", indexes = {
+        @Index(name = "idx_transcoding_outbox_next_attempt", columnList = "next_attempt_at")
+})
+@NoArgsConstructor
+@Getter @Setter
+public class TranscodingOutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "video_id", columnDefinition = "BINARY(16)", nullable = false)
+    private UUID videoId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 512)
+    private String lastError;
+
+    public TranscodingOutboxEntry(UUID videoId) {
+        this.videoId = videoId;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+        this.attempts = 0;
+    }
+}
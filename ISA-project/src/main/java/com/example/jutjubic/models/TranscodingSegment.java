@@ -0,0 +1,29 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Jedan deo segmentiranog transkodiranja. done se postavlja uslovnim update-om,
+ * pa ponovljena isporuka istog dela ne broji se dva puta.
+ */
+@Entity
+@Table(name = "transcoding_segments")
+@NoArgsConstructor
+@Getter @Setter
+public class TranscodingSegment {
+    @EmbeddedId
+    private TranscodingSegmentId id;
+
+    @Column(name = "done", nullable = false)
+    private boolean done;
+
+    public TranscodingSegment(UUID videoId, int segmentIndex) {
+        this.id = new TranscodingSegmentId(videoId, segmentIndex);
+        this.done = false;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@EqualsAndHashCode
+@NoArgsConstructor @AllArgsConstructor
+@Getter @Setter
+public class TranscodingSegmentId implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 6318420977125536841L;
+
+    @NotNull
+    @Column(name = "video_id", nullable = false, columnDefinition = "BINARY(16)")
+    private UUID videoId;
+
+    @Column(name = "segment_index", nullable = false)
+    private int segmentIndex;
+}
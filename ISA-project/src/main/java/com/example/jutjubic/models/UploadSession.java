@@ -0,0 +1,61 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Sesija resumable (chunked) upload-a video fajla.
+ * Fajl se prealocira na punu veličinu, a chunk-ovi se upisuju pozicionim upisima.
+ * receivedBytes je offset do kog je fajl neprekidno upisan - klijent nastavlja od njega.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_updated", columnList = "updated_at")
+})
+@NoArgsConstructor
+@Getter @Setter
+public class UploadSession {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID id;
+
+    @Column(name = "user_id", columnDefinition = "BINARY(16)", nullable = false)
+    private UUID userId;
+
+    /**
+     * Putanja fajla u koji se upisuje (bez sufiksa .part); pri finalizaciji se premešta na putanju po hash-u.
+     */
+    @Column(name = "video_path", nullable = false)
+    private String videoPath;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public UploadSession(UUID userId, String videoPath, long totalSize) {
+        this.userId = userId;
+        this.videoPath = videoPath;
+        this.totalSize = totalSize;
+        this.receivedBytes = 0;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isComplete() {
+        return receivedBytes == totalSize;
+    }
+}
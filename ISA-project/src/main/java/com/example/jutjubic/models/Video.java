@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.data.geo.Point;
 
 import java.sql.Time;
@@ -11,8 +12,11 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "videos")
+@Table(name = "videos", indexes = {
+        @Index(name = "idx_videos_content_hash", columnList = "content_hash")
+})
 @Getter @Setter @NoArgsConstructor
+@DynamicUpdate
 public class Video {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -46,6 +50,40 @@ public class Video {
     @Column(name = "transcoded_video_path")
     private String transcodedVideoPath;
 
+    /**
+     * Putanja do HLS master playliste (adaptivni bitrate), NULL ako HLS izlaz ne postoji.
+     */
+    @Column(name = "hls_master_path")
+    private String hlsMasterPath;
+
+    /**
+     * x264 preset i CRF sa kojima je video transkodiran, NULL ako je kodiran na ciljni bitrate ili remux-ovan.
+     */
+    @Column(name = "transcoding_preset", length = 16)
+    private String transcodingPreset;
+
+    @Column(name = "transcoding_crf")
+    private Integer transcodingCrf;
+
+    /**
+     * Veličina transkodiranog MP4 fajla u bajtovima, NULL ako nije poznata.
+     */
+    @Column(name = "transcoded_file_size")
+    private Long transcodedFileSize;
+
+    /**
+     * SHA-256 sadržaja originalnog fajla; videi sa istim hash-om dele videoPath i transkodirani izlaz.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Faza asinhrone obrade posle upload-a. NULL za videe kreirane pre uvođenja pipeline-a.
+     */
+    @Column(name = "processing_state", length = 32)
+    @Enumerated(EnumType.STRING)
+    private ProcessingState processingState;
+
     @Column(name = "scheduled_at")
     private LocalDateTime scheduledAt;
 
@@ -88,4 +126,17 @@ public class Video {
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
     }
+
+    /**
+     * Stanja obrade videa: PROCESSING -> METADATA_EXTRACTED -> THUMBNAIL_PROCESSED
+     * -> TRANSCODING_QUEUED -> READY, ili FAILED ako obrada ne uspe.
+     */
+    public enum ProcessingState {
+        PROCESSING,
+        METADATA_EXTRACTED,
+        THUMBNAIL_PROCESSED,
+        TRANSCODING_QUEUED,
+        READY,
+        FAILED
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Normalizovani zapis jednog taga videa.
+ * Zamenjuje parsiranje comma-separated kolone {@code videos.tags} pri pretrazi po tagu.
+ * Indeks (tag, created_at, video_id) pokriva keyset paginaciju "najnoviji prvi" za zadati tag.
+ */
+@Entity
+@Table(name = "video_tags", indexes = {
+        @Index(name = "idx_video_tags_tag_created", columnList = "tag, created_at, video_id")
+})
+@NoArgsConstructor
+@Getter @Setter
+public class VideoTag {
+    @EmbeddedId
+    private VideoTagId id;
+
+    @MapsId("videoId")
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "video_id", nullable = false)
+    private Video video;
+
+    /**
+     * Kopija {@code videos.created_at} kako bi sortiranje ostalo unutar indeksa.
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public VideoTag(String tag, Video video) {
+        this.id = new VideoTagId(tag, video.getId());
+        this.video = video;
+        this.createdAt = video.getCreatedAt();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.jutjubic.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@EqualsAndHashCode
+@NoArgsConstructor @AllArgsConstructor
+@Getter @Setter
+public class VideoTagId implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 4127730568418260119L;
+
+    @NotNull
+    @Column(name = "tag", nullable = false, length = 64)
+    private String tag;
+
+    @NotNull
+    @Column(name = "video_id", nullable = false, columnDefinition = "BINARY(16)")
+    private UUID videoId;
+}
@@ -0,0 +1,46 @@
+package com.example.jutjubic.repositories;
+
+import com.example.jutjubic.models.SegmentedTranscode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface SegmentedTranscodeRepository extends JpaRepository<SegmentedTranscode, UUID> {
+
+    /**
+     * Menja stanje samo ako je i dalje jednako očekivanom, pa spajanje preuzima tačno jedan radnik.
+     *
+     * @return broj izmenjenih redova (0 ako je drugi radnik već promenio stanje)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SegmentedTranscode s SET s.state = :to WHERE s.videoId = :videoId AND s.state = :from")
+    int transitionState(@Param("videoId") UUID videoId,
+                        @Param("from") SegmentedTranscode.State from,
+                        @Param("to") SegmentedTranscode.State to);
+
+    /**
+     * Preuzima spajanje: iz TRANSCODING, ili iz CONCATENATING čiji je zakup istekao (radnik je pao).
+     *
+     * @return 1 ako je ovaj radnik preuzeo spajanje
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SegmentedTranscode s SET s.state = com.example.jutjubic.models.SegmentedTranscode.State.CONCATENATING, " +
+            "s.concatStartedAt = :now WHERE s.videoId = :videoId " +
+            "AND (s.state = com.example.jutjubic.models.SegmentedTranscode.State.TRANSCODING " +
+            "OR (s.state = com.example.jutjubic.models.SegmentedTranscode.State.CONCATENATING " +
+            "AND s.concatStartedAt < :staleBefore))")
+    int claimConcatenation(@Param("videoId") UUID videoId, @Param("now") LocalDateTime now,
+                           @Param("staleBefore") LocalDateTime staleBefore);
+
+    List<SegmentedTranscode> findByStateAndConcatStartedAtBefore(SegmentedTranscode.State state, LocalDateTime cutoff);
+
+    List<SegmentedTranscode> findByStateAndCreatedAtBefore(SegmentedTranscode.State state, LocalDateTime cutoff);
+}
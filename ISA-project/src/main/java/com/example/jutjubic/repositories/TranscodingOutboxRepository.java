@@ -0,0 +1,28 @@
+package com.example.jutjubic.repositories;
+
+import com.example.jutjubic.models.TranscodingOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TranscodingOutboxRepository extends JpaRepository<TranscodingOutboxEntry, Long> {
+
+    /**
+     * Najstariji unosi spremni za slanje; broj se ograničava preko Pageable parametra.
+     */
+    @Query("SELECT o FROM TranscodingOutboxEntry o WHERE o.nextAttemptAt <= :now ORDER BY o.id")
+    List<TranscodingOutboxEntry> findReady(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscodingOutboxEntry o SET o.attempts = o.attempts + 1, o.lastError = :error, " +
+            "o.nextAttemptAt = :nextAttemptAt WHERE o.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("error") String error,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
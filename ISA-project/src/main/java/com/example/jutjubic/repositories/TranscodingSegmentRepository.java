@@ -0,0 +1,34 @@
+package com.example.jutjubic.repositories;
+
+import com.example.jutjubic.models.TranscodingSegment;
+import com.example.jutjubic.models.TranscodingSegmentId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+public interface TranscodingSegmentRepository extends JpaRepository<TranscodingSegment, TranscodingSegmentId> {
+
+    /**
+     * Označava deo kao završen.
+     *
+     * @return 1 pri prvom završetku, 0 ako je deo već bio označen (ponovljena isporuka)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscodingSegment s SET s.done = true " +
+            "WHERE s.id.videoId = :videoId AND s.id.segmentIndex = :segmentIndex AND s.done = false")
+    int markDone(@Param("videoId") UUID videoId, @Param("segmentIndex") int segmentIndex);
+
+    long countByIdVideoIdAndDoneTrue(UUID videoId);
+
+    boolean existsByIdVideoIdAndIdSegmentIndexAndDoneTrue(UUID videoId, int segmentIndex);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TranscodingSegment s WHERE s.id.videoId = :videoId")
+    int deleteByVideoId(@Param("videoId") UUID videoId);
+}
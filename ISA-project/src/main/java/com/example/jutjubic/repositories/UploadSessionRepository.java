@@ -0,0 +1,32 @@
+package com.example.jutjubic.repositories;
+
+import com.example.jutjubic.models.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    /**
+     * Pomera offset samo ako je i dalje jednak očekivanom, pa dva paralelna PATCH-a
+     * za isti offset ne mogu oba da napreduju.
+     *
+     * @return broj izmenjenih redova (0 ako je offset u međuvremenu promenjen)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.receivedBytes = :newOffset, s.updatedAt = :now " +
+            "WHERE s.id = :id AND s.receivedBytes = :expectedOffset")
+    int advanceOffset(@Param("id") UUID id, @Param("expectedOffset") long expectedOffset,
+                      @Param("newOffset") long newOffset, @Param("now") LocalDateTime now);
+
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime cutoff);
+
+    boolean existsByVideoPath(String videoPath);
+}
@@ -1,15 +1,35 @@
 package com.example.jutjubic.repositories;
 
+import com.example.jutjubic.dto.UserProfileDto;
 import com.example.jutjubic.models.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
 
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
+
+    /**
+     * Streams the public profile of all users through a forward-only JDBC cursor
+     * (see VideoRepository.STREAMING_FETCH_SIZE). Only public columns are selected, so credentials
+     * and verification codes never leave the database. Must be consumed inside a transaction and closed after use.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = VideoRepository.STREAMING_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT new com.example.jutjubic.dto.UserProfileDto(u.id, u.username, u.firstName, u.lastName, u.createdAt) " +
+            "FROM User u ORDER BY u.createdAt")
+    Stream<UserProfileDto> streamAllProfiles();
 }
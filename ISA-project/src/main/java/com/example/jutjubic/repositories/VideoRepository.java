@@ -1,21 +1,82 @@
 package com.example.jutjubic.repositories;
 
+import com.example.jutjubic.dto.VideoSummaryDto;
 import com.example.jutjubic.models.Video;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Time;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface VideoRepository extends JpaRepository<Video, UUID> {
 
+    /**
+     * MySQL Connector/J streams rows one by one only when the fetch size is Integer.MIN_VALUE.
+     * Any positive value makes the driver buffer the whole result set in memory.
+     */
+    String STREAMING_FETCH_SIZE = "" + Integer.MIN_VALUE;
+
+    /**
+     * SELECT i FROM deo JPQL projekcije u VideoSummaryDto; od kreatora se biraju samo id i korisničko ime.
+     */
+    String VIDEO_SUMMARY_PROJECTION = "new com.example.jutjubic.dto.VideoSummaryDto(v.id, v.title, v.description, "
+            + "v.videoPath, v.thumbnailPath, v.thumbnailCompressedPath, v.fileSize, v.duration, v.transcoded, "
+            + "v.transcodedVideoPath, v.hlsMasterPath, v.processingState, v.scheduledAt, v.tags, v.viewCount, "
+            + "v.createdAt, v.latitude, v.longitude, c.id, c.username) FROM Video v LEFT JOIN v.creator c";
+
     Optional<Video> findVideoById(UUID id);
 
+    /**
+     * Postojeći video sa istim sadržajem, transkodirani imaju prednost.
+     */
+    Optional<Video> findFirstByContentHashOrderByTranscodedDesc(String contentHash);
+
+    Optional<Video> findFirstByVideoPathAndTranscodedTrue(String videoPath);
+
+    List<Video> findByVideoPathAndTranscodedFalse(String videoPath);
+
+    /**
+     * Prelazak u sledeće stanje obrade samo ako je video i dalje u očekivanom stanju,
+     * pa ponovljeno izvršavanje iste faze nema efekta.
+     *
+     * @return 1 ako je prelazak izvršen, inače 0
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.processingState = :to, v.updatedAt = :now WHERE v.id = :id AND v.processingState = :from")
+    int transitionProcessingState(@Param("id") UUID id, @Param("from") Video.ProcessingState from,
+                                  @Param("to") Video.ProcessingState to, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.duration = :duration WHERE v.id = :id")
+    int updateDuration(@Param("id") UUID id, @Param("duration") Time duration);
+
+    /**
+     * Videi zaglavljeni u međufazi obrade (npr. posle restarta ili odbijenog zadatka).
+     */
+    @Query("SELECT v.id FROM Video v WHERE v.processingState IN :states AND v.updatedAt < :cutoff")
+    List<UUID> findStalledInStates(@Param("states") Collection<Video.ProcessingState> states,
+                                   @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Broj videa koji upućuju na isti fajl (broj referenci u skladištu adresiranom sadržajem).
+     */
+    long countByVideoPath(String videoPath);
+
     /**
      * Pronalazi sve video objave za datog korisnika sa paginacijom.
      */
@@ -43,6 +104,45 @@ public interface VideoRepository extends JpaRepository<Video, UUID> {
     @Query("SELECT v FROM Video v WHERE v.scheduledAt IS NULL OR v.scheduledAt <= :now ORDER BY v.createdAt DESC")
     List<Video> findAllPubliclyAvailable(@Param("now") LocalDateTime now);
 
+    /**
+     * Učitava više videa jednim IN upitom kao javni prikaz, sa id-em i korisničkim imenom kreatora
+     * iz istog JOIN-a (bez N+1 upita i bez ostalih podataka korisnika).
+     * Redosled rezultata nije definisan.
+     */
+    @Query("SELECT " + VIDEO_SUMMARY_PROJECTION + " WHERE v.id IN :ids")
+    List<VideoSummaryDto> findSummariesByIds(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Vraća zakazana vremena objave koja su još u budućnosti.
+     */
+    @Query("SELECT v.scheduledAt FROM Video v WHERE v.scheduledAt > :now")
+    List<LocalDateTime> findScheduledAtAfter(@Param("now") LocalDateTime now);
+
+    /**
+     * Streamuje sve javno dostupne video objave kroz forward-only JDBC kursor, kao projekciju
+     * sa id-jem i korisničkim imenom kreatora (bez entiteta korisnika, pa ni dodatnih upita
+     * dok je streaming result set otvoren).
+     * Mora se konzumirati unutar transakcije i zatvoriti posle upotrebe.
+     *
+     * @param now Trenutno vreme
+     * @return Stream javno dostupnih video objava
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAMING_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT " + VIDEO_SUMMARY_PROJECTION + " WHERE v.scheduledAt IS NULL OR v.scheduledAt <= :now ORDER BY v.createdAt DESC")
+    Stream<VideoSummaryDto> streamAllPubliclyAvailable(@Param("now") LocalDateTime now);
+
+    /**
+     * Vraća samo polja potrebna za indeks predloga pretrage (id, naslov, tagovi, broj pregleda)
+     * za sve javno dostupne video objave, bez učitavanja celih entiteta.
+     * Svaki red je niz [id, title, tags, viewCount].
+     */
+    @Query("SELECT v.id, v.title, v.tags, v.viewCount FROM Video v WHERE v.scheduledAt IS NULL OR v.scheduledAt <= :now")
+    List<Object[]> findSuggestionSource(@Param("now") LocalDateTime now);
+
     /**
      * Finds videos within a specified radius from a center point using spatial indexing.
      *
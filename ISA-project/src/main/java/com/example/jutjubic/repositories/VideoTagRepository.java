@@ -0,0 +1,50 @@
+package com.example.jutjubic.repositories;
+
+import com.example.jutjubic.models.VideoTag;
+import com.example.jutjubic.models.VideoTagId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface VideoTagRepository extends JpaRepository<VideoTag, VideoTagId> {
+
+    /**
+     * Prva stranica javno dostupnih videa sa datim tagom (najnoviji prvi), kao zapisi taga sa učitanim videom.
+     * Broj rezultata se ograničava preko Pageable parametra.
+     */
+    @Query("SELECT t FROM VideoTag t JOIN FETCH t.video v " +
+            "WHERE t.id.tag = :tag " +
+            "AND (v.scheduledAt IS NULL OR v.scheduledAt <= :now) " +
+            "ORDER BY t.createdAt DESC, t.id.videoId DESC")
+    List<VideoTag> findPageByTag(@Param("tag") String tag,
+                                 @Param("now") LocalDateTime now,
+                                 Pageable pageable);
+
+    /**
+     * Sledeća stranica posle kursora (createdAt, videoId) poslednjeg vraćenog zapisa taga.
+     * Za razliku od OFFSET paginacije, cena ne raste sa dubinom stranice.
+     */
+    @Query("SELECT t FROM VideoTag t JOIN FETCH t.video v " +
+            "WHERE t.id.tag = :tag " +
+            "AND (t.createdAt < :cursorCreatedAt " +
+            "     OR (t.createdAt = :cursorCreatedAt AND t.id.videoId < :cursorVideoId)) " +
+            "AND (v.scheduledAt IS NULL OR v.scheduledAt <= :now) " +
+            "ORDER BY t.createdAt DESC, t.id.videoId DESC")
+    List<VideoTag> findPageByTagAfter(@Param("tag") String tag,
+                                      @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                      @Param("cursorVideoId") UUID cursorVideoId,
+                                      @Param("now") LocalDateTime now,
+                                      Pageable pageable);
+
+    /**
+     * Broj videa po tagu. Koristi se samo za inicijalno punjenje brojača u memoriji.
+     * Svaki red je par [tag, count].
+     */
+    @Query("SELECT t.id.tag, COUNT(t) FROM VideoTag t GROUP BY t.id.tag")
+    List<Object[]> countVideosPerTag();
+}
@@ -0,0 +1,196 @@
+"""
+Single-Decode vs Per-Rendition Transcoding Benchmark
+=====================================================
+Runs the same outputs the transcoding consumer produces (MP4 + HLS ladder) in two ways:
+
+    PER_RENDITION  one ffmpeg process for the MP4 and one per HLS rendition
+                   (the source is decoded once per process)
+    SINGLE_DECODE  one ffmpeg process with all outputs (the source is decoded once)
+
+For each mode it reports wall time and CPU seconds (user + system of the ffmpeg processes).
+FFmpeg arguments mirror TranscodingConsumerService, and the ladder uses the
+transcoding.hls.renditions format from application.properties.
+
+Usage:
+    python test-multi-output-transcoding.py --input FILE [--renditions SPEC] [--runs N]
+                                            [--segment-seconds S] [--ffmpeg PATH] [--json FILE]
+
+Arguments:
+    --input FILE          Source video (required)
+    --renditions SPEC     name:height:video-bitrate:audio-bitrate list
+                          (default: same ladder as application.properties)
+    --runs N              Repetitions per mode, results are averaged (default: 3)
+    --segment-seconds S   HLS segment duration (default: 6)
+    --ffmpeg PATH         ffmpeg binary (default: ffmpeg)
+    --json FILE           Also write results as JSON to FILE (optional)
+"""
+
+import argparse
+import json
+import os
+import shutil
+import subprocess
+import tempfile
+import time
+from datetime import datetime
+
+try:
+    import resource
+except ImportError:
+    resource = None
+
+try:
+    import psutil
+except ImportError:
+    psutil = None
+
+DEFAULT_RENDITIONS = "240p:240:400000:64000,480p:480:1000000:96000,720p:720:2500000:128000,1080p:1080:5000000:192000"
+
+
+def parse_renditions(spec):
+    renditions = []
+    for item in spec.split(","):
+        name, height, video_bitrate, audio_bitrate = item.strip().split(":")
+        renditions.append({
+            "name": name,
+            "height": int(height),
+            "video_bitrate": int(video_bitrate),
+            "audio_bitrate": int(audio_bitrate),
+        })
+    return sorted(renditions, key=lambda r: r["height"])
+
+
+def mp4_output_args(out_dir):
+    # transcoding.params.* defaults
+    return ["-f", "mp4", "-vcodec", "libx264", "-s", "1280x720", "-b:v", "2500000",
+            "-acodec", "aac", "-b:a", "128000", "-ac", "2", "-ar", "44100", "-strict", "experimental",
+            os.path.join(out_dir, "transcoded.mp4")]
+
+
+def hls_output_args(out_dir, rendition, segment_seconds):
+    rendition_dir = os.path.join(out_dir, rendition["name"])
+    os.makedirs(rendition_dir, exist_ok=True)
+    return ["-f", "hls", "-vcodec", "libx264", "-vf", f"scale=-2:{rendition['height']}",
+            "-b:v", str(rendition["video_bitrate"]),
+            "-acodec", "aac", "-b:a", str(rendition["audio_bitrate"]), "-ac", "2", "-ar", "44100",
+            "-strict", "experimental",
+            "-force_key_frames", f"expr:gte(t,n_forced*{segment_seconds})", "-sc_threshold", "0",
+            "-hls_time", str(segment_seconds), "-hls_playlist_type", "vod",
+            "-hls_segment_filename", os.path.join(rendition_dir, "seg_%05d.ts"),
+            os.path.join(rendition_dir, "index.m3u8")]
+
+
+def run_ffmpeg(ffmpeg, input_file, output_args):
+    """Runs one ffmpeg process. Returns (wall seconds, cpu seconds or None)."""
+    command = [ffmpeg, "-y", "-v", "error", "-i", input_file] + output_args
+
+    if resource is not None:
+        before = resource.getrusage(resource.RUSAGE_CHILDREN)
+        start = time.perf_counter()
+        subprocess.run(command, check=True)
+        wall = time.perf_counter() - start
+        after = resource.getrusage(resource.RUSAGE_CHILDREN)
+        cpu = (after.ru_utime - before.ru_utime) + (after.ru_stime - before.ru_stime)
+        return wall, cpu
+
+    # No getrusage (Windows): sample the process with psutil until it exits
+    start = time.perf_counter()
+    process = subprocess.Popen(command)
+    cpu = None
+    if psutil is not None:
+        try:
+            handle = psutil.Process(process.pid)
+            while process.poll() is None:
+                times = handle.cpu_times()
+                cpu = times.user + times.system
+                time.sleep(0.1)
+        except psutil.NoSuchProcess:
+            pass
+    process.wait()
+    wall = time.perf_counter() - start
+    if process.returncode != 0:
+        raise subprocess.CalledProcessError(process.returncode, command)
+    return wall, cpu
+
+
+def run_mode(mode, args, renditions):
+    out_dir = tempfile.mkdtemp(prefix=f"bench_{mode.lower()}_")
+    try:
+        if mode == "SINGLE_DECODE":
+            output_args = mp4_output_args(out_dir)
+            for rendition in renditions:
+                output_args += hls_output_args(out_dir, rendition, args.segment_seconds)
+            return run_ffmpeg(args.ffmpeg, args.input, output_args)
+
+        wall_total, cpu_total = run_ffmpeg(args.ffmpeg, args.input, mp4_output_args(out_dir))
+        for rendition in renditions:
+            wall, cpu = run_ffmpeg(args.ffmpeg, args.input, hls_output_args(out_dir, rendition, args.segment_seconds))
+            wall_total += wall
+            cpu_total = cpu_total + cpu if cpu_total is not None and cpu is not None else None
+        return wall_total, cpu_total
+    finally:
+        shutil.rmtree(out_dir, ignore_errors=True)
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Single-decode vs per-rendition transcoding benchmark")
+    parser.add_argument("--input", required=True, help="Source video file")
+    parser.add_argument("--renditions", default=DEFAULT_RENDITIONS, help="HLS ladder spec")
+    parser.add_argument("--runs", type=int, default=3, help="Repetitions per mode")
+    parser.add_argument("--segment-seconds", type=int, default=6, help="HLS segment duration")
+    parser.add_argument("--ffmpeg", default="ffmpeg", help="ffmpeg binary")
+    parser.add_argument("--json", help="Write results to this JSON file")
+    args = parser.parse_args()
+
+    renditions = parse_renditions(args.renditions)
+
+    print(f"\n{'#' * 70}")
+    print("SINGLE-DECODE TRANSCODING BENCHMARK")
+    print(f"{'#' * 70}")
+    print(f"Start Time: {datetime.now().strftime('%Y-%m-%d %H:%M:%S')}")
+    print(f"Input: {args.input}")
+    print(f"Outputs: MP4 + {', '.join(r['name'] for r in renditions)}")
+    if resource is None and psutil is None:
+        print("Neither resource nor psutil is available - CPU seconds will not be reported")
+
+    results = []
+    for mode in ["PER_RENDITION", "SINGLE_DECODE"]:
+        walls, cpus = [], []
+        for run in range(args.runs):
+            print(f"  {mode} run {run + 1}/{args.runs}...")
+            wall, cpu = run_mode(mode, args, renditions)
+            walls.append(wall)
+            cpus.append(cpu)
+        valid_cpus = [c for c in cpus if c is not None]
+        results.append({
+            "mode": mode,
+            "runs": args.runs,
+            "avg_wall_s": round(sum(walls) / len(walls), 3),
+            "min_wall_s": round(min(walls), 3),
+            "avg_cpu_s": round(sum(valid_cpus) / len(valid_cpus), 3) if valid_cpus else None,
+        })
+
+    print(f"\n{'=' * 70}")
+    print(f"{'Mode':<16} {'Runs':>6} {'Avg wall s':>12} {'Min wall s':>12} {'Avg CPU s':>12}")
+    print(f"{'-' * 70}")
+    for r in results:
+        cpu = r["avg_cpu_s"] if r["avg_cpu_s"] is not None else "N/A"
+        print(f"{r['mode']:<16} {r['runs']:>6} {r['avg_wall_s']:>12} {r['min_wall_s']:>12} {cpu:>12}")
+    print(f"{'-' * 70}")
+
+    per_rendition, single = results
+    if single["avg_wall_s"] > 0:
+        print(f"Wall time speedup: {per_rendition['avg_wall_s'] / single['avg_wall_s']:.2f}x")
+    if per_rendition["avg_cpu_s"] and single["avg_cpu_s"]:
+        saved = (1 - single["avg_cpu_s"] / per_rendition["avg_cpu_s"]) * 100
+        print(f"CPU seconds saved: {saved:.1f}%")
+
+    if args.json:
+        with open(args.json, "w") as f:
+            json.dump({"timestamp": datetime.now().isoformat(), "input": args.input,
+                       "renditions": renditions, "results": results}, f, indent=2)
+        print(f"Results written to {args.json}")
+
+
+if __name__ == "__main__":
+    main()
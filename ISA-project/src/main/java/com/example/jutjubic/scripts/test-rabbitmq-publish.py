@@ -0,0 +1,200 @@
+"""
+RabbitMQ Publish Throughput Benchmark
+=====================================
+Measures messages per second and publisher confirm latency against a locally running broker
+(e.g. docker run -p 5672:5672 rabbitmq:4) for the three ways a producer can publish:
+
+    NO_CONFIRMS     fire and forget, no publisher confirms (upper bound, no delivery guarantee)
+    SYNC_CONFIRMS   wait for the broker's confirm after every message (one round trip per message)
+    ASYNC_BATCHED   confirms handled asynchronously with up to --window unconfirmed messages in flight,
+                    the way TranscodingProducerService.publishBatch + awaitConfirms publish
+
+Messages are the size of a TranscodingJobMessage, carry a priority and are published to a temporary
+queue declared with x-max-priority like the transcoding queue. The queue is deleted afterwards.
+
+Usage:
+    python test-rabbitmq-publish.py [--messages N] [--window W] [--size BYTES] [--host HOST] [--port PORT]
+                                    [--persistent] [--json FILE]
+
+Arguments:
+    --messages N    Messages per mode (default: 10000)
+    --window W      Unconfirmed messages in flight in ASYNC_BATCHED mode (default: 100)
+    --size BYTES    Message body size (default: 1024)
+    --host HOST     Broker host (default: localhost)
+    --port PORT     Broker port (default: 5672)
+    --persistent    Publish persistent messages (delivery_mode=2), like Spring AMQP does by default
+    --json FILE     Also write results as JSON to FILE (optional)
+"""
+
+import argparse
+import json
+import time
+import uuid
+from datetime import datetime
+
+import pika
+
+MAX_PRIORITY = 10
+
+
+def percentile(values, p):
+    if not values:
+        return None
+    ordered = sorted(values)
+    index = min(len(ordered) - 1, int(round(p / 100 * (len(ordered) - 1))))
+    return round(ordered[index], 3)
+
+
+def connection_parameters(args):
+    return pika.ConnectionParameters(host=args.host, port=args.port,
+                                     credentials=pika.PlainCredentials("guest", "guest"))
+
+
+def message_properties(args, index):
+    return pika.BasicProperties(content_type="application/json", priority=index % MAX_PRIORITY,
+                                delivery_mode=2 if args.persistent else 1)
+
+
+def run_blocking(args, queue, body, confirms):
+    """NO_CONFIRMS / SYNC_CONFIRMS. Returns (elapsed seconds, confirm latencies in ms)."""
+    connection = pika.BlockingConnection(connection_parameters(args))
+    channel = connection.channel()
+    if confirms:
+        channel.confirm_delivery()
+
+    latencies = []
+    start = time.perf_counter()
+    for i in range(args.messages):
+        sent = time.perf_counter()
+        channel.basic_publish("", queue, body, message_properties(args, i), mandatory=confirms)
+        if confirms:
+            latencies.append((time.perf_counter() - sent) * 1000)
+    elapsed = time.perf_counter() - start
+
+    connection.close()
+    return elapsed, latencies
+
+
+def run_async_batched(args, queue, body):
+    """ASYNC_BATCHED. Returns (elapsed seconds, confirm latencies in ms)."""
+    state = {"next": 0, "sent_at": {}, "latencies": [], "nacks": 0, "start": None, "end": None}
+
+    def publish_more(channel):
+        while state["next"] < args.messages and len(state["sent_at"]) < args.window:
+            state["next"] += 1
+            state["sent_at"][state["next"]] = time.perf_counter()
+            channel.basic_publish("", queue, body, message_properties(args, state["next"]))
+
+    def on_confirm(frame, channel):
+        now = time.perf_counter()
+        tag = frame.method.delivery_tag
+        tags = [t for t in state["sent_at"] if t <= tag] if frame.method.multiple else [tag]
+        for t in tags:
+            sent = state["sent_at"].pop(t, None)
+            if sent is not None:
+                state["latencies"].append((now - sent) * 1000)
+        if isinstance(frame.method, pika.spec.Basic.Nack):
+            state["nacks"] += len(tags)
+
+        if state["next"] >= args.messages and not state["sent_at"]:
+            state["end"] = now
+            channel.connection.close()
+        else:
+            publish_more(channel)
+
+    def on_channel_open(channel):
+        channel.confirm_delivery(lambda frame: on_confirm(frame, channel),
+                                 callback=lambda _: start_publishing(channel))
+
+    def start_publishing(channel):
+        state["start"] = time.perf_counter()
+        publish_more(channel)
+
+    connection = pika.SelectConnection(
+        connection_parameters(args),
+        on_open_callback=lambda conn: conn.channel(on_open_callback=on_channel_open),
+        on_open_error_callback=lambda conn, error: conn.ioloop.stop(),
+        on_close_callback=lambda conn, reason: conn.ioloop.stop())
+    connection.ioloop.start()
+
+    if state["end"] is None:
+        raise RuntimeError("Async publishing did not complete")
+    if state["nacks"]:
+        print(f"  Broker nacked {state['nacks']} messages")
+    return state["end"] - state["start"], state["latencies"]
+
+
+def run_mode(mode, args, body):
+    queue = f"bench.publish.{uuid.uuid4().hex[:8]}"
+    connection = pika.BlockingConnection(connection_parameters(args))
+    channel = connection.channel()
+    channel.queue_declare(queue, durable=args.persistent, arguments={"x-max-priority": MAX_PRIORITY})
+    try:
+        if mode == "ASYNC_BATCHED":
+            elapsed, latencies = run_async_batched(args, queue, body)
+        else:
+            elapsed, latencies = run_blocking(args, queue, body, confirms=mode == "SYNC_CONFIRMS")
+    finally:
+        channel.queue_delete(queue)
+        connection.close()
+
+    return {
+        "mode": mode,
+        "messages": args.messages,
+        "elapsed_s": round(elapsed, 3),
+        "msgs_per_s": round(args.messages / elapsed, 1) if elapsed > 0 else 0,
+        "confirm_p50_ms": percentile(latencies, 50),
+        "confirm_p95_ms": percentile(latencies, 95),
+        "confirm_p99_ms": percentile(latencies, 99),
+    }
+
+
+def main():
+    parser = argparse.ArgumentParser(description="RabbitMQ publish throughput benchmark")
+    parser.add_argument("--messages", type=int, default=10000, help="Messages per mode")
+    parser.add_argument("--window", type=int, default=100, help="Unconfirmed messages in flight (async)")
+    parser.add_argument("--size", type=int, default=1024, help="Message body size in bytes")
+    parser.add_argument("--host", default="localhost", help="Broker host")
+    parser.add_argument("--port", type=int, default=5672, help="Broker port")
+    parser.add_argument("--persistent", action="store_true", help="Publish persistent messages")
+    parser.add_argument("--json", help="Write results to this JSON file")
+    args = parser.parse_args()
+
+    body = json.dumps({"videoId": str(uuid.uuid4()), "padding": "x" * max(0, args.size - 64)}).encode()
+
+    print(f"\n{'#' * 70}")
+    print("RABBITMQ PUBLISH BENCHMARK")
+    print(f"{'#' * 70}")
+    print(f"Start Time: {datetime.now().strftime('%Y-%m-%d %H:%M:%S')}")
+    print(f"Broker: {args.host}:{args.port}, {args.messages} messages of {len(body)} bytes, "
+          f"window {args.window}, {'persistent' if args.persistent else 'transient'}")
+
+    results = []
+    for mode in ["NO_CONFIRMS", "SYNC_CONFIRMS", "ASYNC_BATCHED"]:
+        print(f"  Running {mode}...")
+        results.append(run_mode(mode, args, body))
+
+    print(f"\n{'=' * 80}")
+    print(f"{'Mode':<16} {'Messages':>9} {'Elapsed s':>10} {'Msgs/s':>10} "
+          f"{'p50 ms':>9} {'p95 ms':>9} {'p99 ms':>9}")
+    print(f"{'-' * 80}")
+    for r in results:
+        p50, p95, p99 = (r[k] if r[k] is not None else "N/A"
+                         for k in ("confirm_p50_ms", "confirm_p95_ms", "confirm_p99_ms"))
+        print(f"{r['mode']:<16} {r['messages']:>9} {r['elapsed_s']:>10} {r['msgs_per_s']:>10} "
+              f"{p50:>9} {p95:>9} {p99:>9}")
+    print(f"{'-' * 80}")
+
+    sync, batched = results[1], results[2]
+    if sync["msgs_per_s"] > 0:
+        print(f"Async batched vs sync confirms: {batched['msgs_per_s'] / sync['msgs_per_s']:.1f}x throughput")
+
+    if args.json:
+        with open(args.json, "w") as f:
+            json.dump({"timestamp": datetime.now().isoformat(), "window": args.window,
+                       "persistent": args.persistent, "results": results}, f, indent=2)
+        print(f"Results written to {args.json}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,195 @@
+"""
+Range Streaming Benchmark
+=========================
+Compares the dedicated streaming endpoint (/api/videos/{id}/stream, sendfile/transferTo)
+against the generic static resource handler (/media/**) under concurrent streams.
+
+Every simulated viewer either downloads the whole file or performs a series of
+random seeks (Range: bytes=start-end), like a player scrubbing through a video.
+If the server PID is given (and psutil is installed) the server CPU time consumed
+during each run is sampled, giving CPU seconds per stream and per GB served.
+
+Usage:
+    python test-range-streaming.py --video-id UUID [--streams N] [--mode seek|full]
+                                   [--seeks S] [--chunk-kb K] [--pid PID] [--json FILE]
+
+Arguments:
+    --video-id UUID   Video to stream (required)
+    --streams N       Concurrent streams, comma-separated list (default: 1,4,16)
+    --mode M          "seek" for random ranges, "full" for whole-file downloads (default: seek)
+    --seeks S         Range requests per stream in seek mode (default: 20)
+    --chunk-kb K      Size of each range in seek mode, in KB (default: 1024)
+    --pid PID         Server process ID for CPU measurement (optional, needs psutil)
+    --json FILE       Also write results as JSON to FILE (optional)
+"""
+
+import argparse
+import json
+import random
+import time
+from concurrent.futures import ThreadPoolExecutor
+from datetime import datetime
+
+import requests
+
+try:
+    import psutil
+except ImportError:
+    psutil = None
+
+BASE_URL = "http://localhost:8080"
+
+
+def resolve_targets(video_id):
+    """Return (name, url) pairs for the new endpoint and the static handler serving the same file."""
+    response = requests.get(f"{BASE_URL}/api/videos/{video_id}", timeout=10)
+    response.raise_for_status()
+    video = response.json()
+
+    path = video.get("transcodedVideoPath") if video.get("transcoded") else None
+    path = path or video.get("videoPath")
+    path = path.replace("\\", "/").lstrip("/")
+
+    return [
+        ("STREAM_ENDPOINT", f"{BASE_URL}/api/videos/{video_id}/stream"),
+        ("STATIC_HANDLER", f"{BASE_URL}/{path}"),
+    ]
+
+
+def content_length(url):
+    response = requests.head(url, timeout=10)
+    response.raise_for_status()
+    return int(response.headers["Content-Length"])
+
+
+def run_stream(url, length, mode, seeks, chunk_bytes):
+    """Simulate one viewer. Returns (bytes received, number of requests, errors)."""
+    session = requests.Session()
+    received = 0
+    requests_made = 0
+    errors = 0
+
+    if mode == "full":
+        ranges = [None]
+    else:
+        ranges = []
+        for _ in range(seeks):
+            start = random.randint(0, max(0, length - chunk_bytes))
+            ranges.append((start, min(length - 1, start + chunk_bytes - 1)))
+
+    for byte_range in ranges:
+        headers = {}
+        if byte_range:
+            headers["Range"] = f"bytes={byte_range[0]}-{byte_range[1]}"
+        try:
+            with session.get(url, headers=headers, stream=True, timeout=60) as response:
+                expected = 206 if byte_range else 200
+                if response.status_code != expected:
+                    errors += 1
+                for chunk in response.iter_content(chunk_size=256 * 1024):
+                    received += len(chunk)
+        except Exception:
+            errors += 1
+        requests_made += 1
+
+    return received, requests_made, errors
+
+
+def cpu_seconds(process):
+    if process is None:
+        return None
+    times = process.cpu_times()
+    return times.user + times.system
+
+
+def run_benchmark(name, url, streams, args, process):
+    length = content_length(url)
+    chunk_bytes = args.chunk_kb * 1024
+
+    cpu_before = cpu_seconds(process)
+    start = time.time()
+    with ThreadPoolExecutor(max_workers=streams) as executor:
+        futures = [executor.submit(run_stream, url, length, args.mode, args.seeks, chunk_bytes)
+                   for _ in range(streams)]
+        results = [f.result() for f in futures]
+    elapsed = time.time() - start
+    cpu_after = cpu_seconds(process)
+
+    total_bytes = sum(r[0] for r in results)
+    total_requests = sum(r[1] for r in results)
+    total_errors = sum(r[2] for r in results)
+    cpu_used = (cpu_after - cpu_before) if cpu_before is not None else None
+
+    return {
+        "handler": name,
+        "streams": streams,
+        "mode": args.mode,
+        "requests": total_requests,
+        "errors": total_errors,
+        "bytes": total_bytes,
+        "elapsed_s": round(elapsed, 3),
+        "throughput_mb_s": round(total_bytes / elapsed / (1024 * 1024), 2) if elapsed > 0 else 0,
+        "cpu_s": round(cpu_used, 3) if cpu_used is not None else None,
+        "cpu_s_per_stream": round(cpu_used / streams, 4) if cpu_used is not None else None,
+        "cpu_s_per_gb": round(cpu_used / (total_bytes / 1024 ** 3), 3)
+        if cpu_used is not None and total_bytes > 0 else None,
+    }
+
+
+def print_table(results):
+    print(f"\n{'=' * 100}")
+    print("RANGE STREAMING COMPARISON")
+    print(f"{'=' * 100}")
+    print(f"{'Handler':<18} {'Streams':>8} {'Requests':>9} {'Errors':>7} {'MB/s':>10} "
+          f"{'CPU s':>8} {'CPU s/stream':>13} {'CPU s/GB':>10}")
+    print(f"{'-' * 100}")
+    for r in results:
+        cpu = r["cpu_s"] if r["cpu_s"] is not None else "N/A"
+        per_stream = r["cpu_s_per_stream"] if r["cpu_s_per_stream"] is not None else "N/A"
+        per_gb = r["cpu_s_per_gb"] if r["cpu_s_per_gb"] is not None else "N/A"
+        print(f"{r['handler']:<18} {r['streams']:>8} {r['requests']:>9} {r['errors']:>7} "
+              f"{r['throughput_mb_s']:>10} {cpu:>8} {per_stream:>13} {per_gb:>10}")
+    print(f"{'-' * 100}")
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Range streaming benchmark")
+    parser.add_argument("--video-id", required=True, help="Video UUID to stream")
+    parser.add_argument("--streams", default="1,4,16", help="Concurrent streams (comma-separated)")
+    parser.add_argument("--mode", choices=["seek", "full"], default="seek", help="Access pattern")
+    parser.add_argument("--seeks", type=int, default=20, help="Range requests per stream in seek mode")
+    parser.add_argument("--chunk-kb", type=int, default=1024, help="Range size in KB in seek mode")
+    parser.add_argument("--pid", type=int, help="Server PID for CPU measurement")
+    parser.add_argument("--json", help="Write results to this JSON file")
+    args = parser.parse_args()
+
+    process = None
+    if args.pid:
+        if psutil is None:
+            print("psutil is not installed - CPU measurement disabled (pip install psutil)")
+        else:
+            process = psutil.Process(args.pid)
+
+    print(f"\n{'#' * 70}")
+    print("RANGE STREAMING BENCHMARK")
+    print(f"{'#' * 70}")
+    print(f"Start Time: {datetime.now().strftime('%Y-%m-%d %H:%M:%S')}")
+    print(f"Mode: {args.mode}, streams: {args.streams}")
+
+    targets = resolve_targets(args.video_id)
+    results = []
+    for streams in [int(s) for s in args.streams.split(",")]:
+        for name, url in targets:
+            print(f"  Running {name} with {streams} concurrent streams...")
+            results.append(run_benchmark(name, url, streams, args, process))
+
+    print_table(results)
+
+    if args.json:
+        with open(args.json, "w") as f:
+            json.dump({"timestamp": datetime.now().isoformat(), "results": results}, f, indent=2)
+        print(f"Results written to {args.json}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,276 @@
+"""
+Transcoding Throughput Benchmark
+================================
+Measures transcoding capacity end to end: synthetic clips are generated locally with FFmpeg
+(testsrc video + sine audio), uploaded through /api/videos/create and processed by the normal
+pipeline (metadata, thumbnail, outbox, queue, TranscodingConsumerService). Every clip is made unique
+(sine frequency and a metadata tag), so content-addressed reuse never skips the encode, and is encoded
+as MPEG-4 Part 2, so the consumer always re-encodes it instead of remuxing.
+
+For every consumer count the consumers and the x264 preset (--preset) are pinned through
+/api/performance/transcoding/consumers (the autoscaler and the preset policy are paused meanwhile), and
+for every resolution one batch (all durations, --clips clips each) is uploaded and awaited. The pin is
+renewed before every batch and expires on its own if the benchmark is interrupted. The pin endpoints
+are only available when the server runs with performance.benchmark.enabled=true. Reported per batch:
+
+    encode_fps            frames encoded per second of FFmpeg wall time (TRANSCODING_THROUGHPUT)
+    realtime_factor       seconds of media per second of encode
+    cpu_s_per_output_min  server + FFmpeg CPU seconds per minute of output (needs --pid and psutil)
+    queue_to_done_*       enqueue -> transcoded latency, avg and p95 (TRANSCODING_QUEUE_TO_DONE)
+    wall_s                upload of the first clip -> last clip transcoded
+
+Usage:
+    python test-transcoding-throughput.py --email EMAIL --password PASSWORD
+                                          [--consumers 1,2,4] [--preset medium] [--durations 10,30,60]
+                                          [--resolutions 480,720,1080] [--clips N] [--fps F]
+                                          [--pid PID] [--timeout S] [--ffmpeg PATH] [--json FILE]
+
+Arguments:
+    --email, --password   Credentials of an existing, verified user (uploads require login)
+    --consumers LIST      Consumer counts to benchmark, each at most transcoding.autoscaler.max-consumers
+                          (default: 1,2,4)
+    --preset NAME         x264 preset pinned for all batches, one of transcoding.preset-policy.ladder
+                          (default: medium)
+    --durations LIST      Clip durations in seconds (default: 10,30,60)
+    --resolutions LIST    Clip heights, 16:9 (default: 480,720,1080)
+    --clips N             Clips per duration in each batch (default: the largest consumer count)
+    --fps F               Clip frame rate (default: 30)
+    --pid PID             Server process ID for CPU measurement (optional, needs psutil)
+    --timeout S           Maximum wait per batch in seconds (default: 1800)
+    --ffmpeg PATH         ffmpeg binary (default: ffmpeg)
+    --json FILE           Also write results as JSON to FILE (optional)
+
+Uploaded benchmark videos stay in the database; their titles start with "Benchmark".
+"""
+
+import argparse
+import json
+import math
+import os
+import shutil
+import subprocess
+import tempfile
+import time
+import uuid
+from datetime import datetime
+
+import requests
+
+try:
+    import psutil
+except ImportError:
+    psutil = None
+
+BASE_URL = "http://localhost:8080"
+POLL_INTERVAL_S = 1.0
+
+
+def login(email, password):
+    response = requests.post(f"{BASE_URL}/api/auth/login", json={"email": email, "password": password},
+                             timeout=10)
+    response.raise_for_status()
+    session = requests.Session()
+    session.headers["Authorization"] = f"Bearer {response.json()['token']}"
+    return session
+
+
+def generate_clip(ffmpeg, directory, height, duration, fps, index):
+    """Returns (video path, thumbnail path) of a unique synthetic clip."""
+    width = (height * 16 // 9) // 2 * 2
+    tag = uuid.uuid4().hex
+    video = os.path.join(directory, f"clip_{height}p_{duration}s_{tag[:8]}.mp4")
+    thumbnail = os.path.join(directory, f"thumb_{tag[:8]}.jpg")
+
+    subprocess.run([ffmpeg, "-y", "-v", "error",
+                    "-f", "lavfi", "-i", f"testsrc=size={width}x{height}:rate={fps}:duration={duration}",
+                    "-f", "lavfi", "-i", f"sine=frequency={220 + index * 7}:duration={duration}",
+                    "-c:v", "mpeg4", "-q:v", "3", "-c:a", "aac", "-b:a", "128k", "-shortest",
+                    "-metadata", f"comment=benchmark-{tag}", video], check=True)
+    subprocess.run([ffmpeg, "-y", "-v", "error", "-f", "lavfi", "-i", f"testsrc=size=640x360:rate=1",
+                    "-frames:v", "1", thumbnail], check=True)
+    return video, thumbnail
+
+
+def upload(session, video, thumbnail, title):
+    with open(video, "rb") as video_file, open(thumbnail, "rb") as thumbnail_file:
+        response = session.post(f"{BASE_URL}/api/videos/create",
+                                data={"title": title, "description": "Transcoding benchmark clip",
+                                      "tags": "benchmark"},
+                                files={"videoFile": (os.path.basename(video), video_file, "video/mp4"),
+                                       "thumbnailFile": (os.path.basename(thumbnail), thumbnail_file,
+                                                         "image/jpeg")},
+                                timeout=300)
+    response.raise_for_status()
+    return response.json()["id"]
+
+
+def wait_until_done(session, video_ids, timeout):
+    """Polls until every video is transcoded or failed. Returns the number of failed videos."""
+    pending = set(video_ids)
+    failed = 0
+    deadline = time.time() + timeout
+    while pending and time.time() < deadline:
+        for video_id in list(pending):
+            response = session.get(f"{BASE_URL}/api/videos/{video_id}", timeout=10)
+            if response.status_code != 200:
+                continue
+            video = response.json()
+            if video.get("transcoded"):
+                pending.discard(video_id)
+            elif video.get("processingState") == "FAILED":
+                pending.discard(video_id)
+                failed += 1
+        if pending:
+            time.sleep(POLL_INTERVAL_S)
+    if pending:
+        raise TimeoutError(f"{len(pending)} videos not transcoded within {timeout}s")
+    return failed
+
+
+def metrics(operation):
+    response = requests.get(f"{BASE_URL}/api/performance/metrics/{operation}", params={"lastMinutes": 0},
+                            timeout=10)
+    response.raise_for_status()
+    return response.json()
+
+
+def clear_metrics():
+    for operation in ["TRANSCODING_THROUGHPUT", "TRANSCODING_QUEUE_TO_DONE"]:
+        requests.delete(f"{BASE_URL}/api/performance/clear/{operation}", timeout=10)
+
+
+def percentile(values, p):
+    if not values:
+        return None
+    ordered = sorted(values)
+    return ordered[min(len(ordered) - 1, int(round(p / 100 * (len(ordered) - 1))))]
+
+
+def cpu_seconds(process):
+    """CPU of the server plus its exited FFmpeg children (children_* are filled in on Linux/macOS)."""
+    if process is None:
+        return None
+    times = process.cpu_times()
+    return times.user + times.system + getattr(times, "children_user", 0) + getattr(times, "children_system", 0)
+
+
+def pin(consumers, preset, minutes):
+    response = requests.put(f"{BASE_URL}/api/performance/transcoding/consumers",
+                            params={"count": consumers, "preset": preset, "minutes": minutes}, timeout=10)
+    if response.status_code == 403:
+        raise SystemExit("Benchmark endpoints are disabled - start the server with performance.benchmark.enabled=true")
+    response.raise_for_status()
+
+
+def run_batch(session, args, consumers, height, process, work_dir):
+    clips = []
+    for duration in args.durations:
+        for i in range(args.clips):
+            clips.append((duration, generate_clip(args.ffmpeg, work_dir, height, duration, args.fps, len(clips))))
+
+    clear_metrics()
+    cpu_before = cpu_seconds(process)
+    start = time.time()
+    video_ids = [upload(session, video, thumbnail, f"Benchmark {height}p {duration}s #{n}")
+                 for n, (duration, (video, thumbnail)) in enumerate(clips)]
+    failed = wait_until_done(session, video_ids, args.timeout)
+    wall = time.time() - start
+    cpu_used = cpu_seconds(process) - cpu_before if cpu_before is not None else None
+
+    throughput = metrics("TRANSCODING_THROUGHPUT")
+    encode_s = sum(m["responseTimeMs"] for m in throughput) / 1000
+    media_s = sum(m["resultCount"] for m in throughput)
+    latencies = [m["responseTimeMs"] / 1000 for m in metrics("TRANSCODING_QUEUE_TO_DONE")]
+    output_min = sum(duration for duration, _ in clips) / 60
+
+    return {
+        "consumers": consumers,
+        "preset": args.preset,
+        "height": height,
+        "clips": len(clips),
+        "failed": failed,
+        "media_s": media_s,
+        "wall_s": round(wall, 2),
+        "encode_fps": round(media_s * args.fps / encode_s, 1) if encode_s > 0 else None,
+        "realtime_factor": round(media_s / encode_s, 2) if encode_s > 0 else None,
+        "cpu_s_per_output_min": round(cpu_used / output_min, 2) if cpu_used is not None else None,
+        "queue_to_done_avg_s": round(sum(latencies) / len(latencies), 2) if latencies else None,
+        "queue_to_done_p95_s": round(percentile(latencies, 95), 2) if latencies else None,
+    }
+
+
+def print_table(results):
+    print(f"\n{'=' * 120}")
+    print(f"{'Consumers':>9} {'Preset':>9} {'Height':>7} {'Clips':>6} {'Failed':>7} {'Wall s':>9} {'Enc fps':>9} "
+          f"{'x realtime':>11} {'CPU s/min':>10} {'Q->done avg':>12} {'Q->done p95':>12}")
+    print(f"{'-' * 120}")
+    for r in results:
+        values = [r[k] if r[k] is not None else "N/A" for k in
+                  ("encode_fps", "realtime_factor", "cpu_s_per_output_min", "queue_to_done_avg_s",
+                   "queue_to_done_p95_s")]
+        print(f"{r['consumers']:>9} {r['preset']:>9} {r['height']:>7} {r['clips']:>6} {r['failed']:>7} {r['wall_s']:>9} "
+              f"{values[0]:>9} {values[1]:>11} {values[2]:>10} {values[3]:>12} {values[4]:>12}")
+    print(f"{'-' * 120}")
+
+
+def main():
+    parser = argparse.ArgumentParser(description="End-to-end transcoding throughput benchmark")
+    parser.add_argument("--email", required=True, help="Login email")
+    parser.add_argument("--password", required=True, help="Login password")
+    parser.add_argument("--consumers", default="1,2,4", help="Consumer counts (comma-separated)")
+    parser.add_argument("--preset", default="medium", help="x264 preset pinned for all batches")
+    parser.add_argument("--durations", default="10,30,60", help="Clip durations in seconds (comma-separated)")
+    parser.add_argument("--resolutions", default="480,720,1080", help="Clip heights (comma-separated)")
+    parser.add_argument("--clips", type=int, help="Clips per duration in each batch")
+    parser.add_argument("--fps", type=int, default=30, help="Clip frame rate")
+    parser.add_argument("--pid", type=int, help="Server PID for CPU measurement")
+    parser.add_argument("--timeout", type=int, default=1800, help="Maximum wait per batch in seconds")
+    parser.add_argument("--ffmpeg", default="ffmpeg", help="ffmpeg binary")
+    parser.add_argument("--json", help="Write results to this JSON file")
+    args = parser.parse_args()
+
+    consumer_counts = [int(c) for c in args.consumers.split(",")]
+    args.durations = [int(d) for d in args.durations.split(",")]
+    heights = [int(h) for h in args.resolutions.split(",")]
+    args.clips = args.clips or max(consumer_counts)
+
+    process = None
+    if args.pid:
+        if psutil is None:
+            print("psutil is not installed - CPU measurement disabled (pip install psutil)")
+        else:
+            process = psutil.Process(args.pid)
+
+    print(f"\n{'#' * 70}")
+    print("TRANSCODING THROUGHPUT BENCHMARK")
+    print(f"{'#' * 70}")
+    print(f"Start Time: {datetime.now().strftime('%Y-%m-%d %H:%M:%S')}")
+    print(f"Consumers: {consumer_counts}, preset: {args.preset}, heights: {heights}, durations: {args.durations}s, "
+          f"{args.clips} clips per duration")
+
+    # A pin outlives one batch (wait + upload) and lapses shortly after an interrupted run
+    pin_minutes = math.ceil(args.timeout / 60) + 5
+    session = login(args.email, args.password)
+    work_dir = tempfile.mkdtemp(prefix="bench_transcoding_")
+    results = []
+    try:
+        for consumers in consumer_counts:
+            for height in heights:
+                pin(consumers, args.preset, pin_minutes)
+                print(f"  {consumers} consumers, {height}p...")
+                results.append(run_batch(session, args, consumers, height, process, work_dir))
+    finally:
+        requests.delete(f"{BASE_URL}/api/performance/transcoding/consumers", timeout=10)
+        shutil.rmtree(work_dir, ignore_errors=True)
+
+    print_table(results)
+
+    if args.json:
+        with open(args.json, "w") as f:
+            json.dump({"timestamp": datetime.now().isoformat(), "preset": args.preset, "fps": args.fps, "durations": args.durations,
+                       "clips_per_duration": args.clips, "results": results}, f, indent=2)
+        print(f"Results written to {args.json}")
+
+
+if __name__ == "__main__":
+    main()
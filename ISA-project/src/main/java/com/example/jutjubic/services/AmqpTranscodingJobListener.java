@@ -0,0 +1,82 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Potrošač RabbitMQ reda za transkodiranje; obradu radi TranscodingConsumerService.process.
+ Koristi se ručna potvrda poruka kako bi se obezbedila pouzdana obrada.
+ Broj potrošača koji rade paralelno podešava se preko parametra ${transcoding.consumer.concurrency}, a menja ga TranscodingAutoscaler.
+ Posao za ponovni pokušaj (Outcome.RETRY) se odbija i preko DLQ-a sa TTL-om vraća u red; broj pokušaja se čita iz x-death zaglavlja.
+ */
+@Component
+@ConditionalOnProperty(name = "transcoding.queue.mode", havingValue = "amqp", matchIfMissing = true)
+public class AmqpTranscodingJobListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpTranscodingJobListener.class);
+
+    private final TranscodingConsumerService transcodingConsumerService;
+
+    public AmqpTranscodingJobListener(TranscodingConsumerService transcodingConsumerService) {
+        this.transcodingConsumerService = transcodingConsumerService;
+    }
+
+    /**
+     Parametri metode:
+     message – poruka sa podacima o video fajlu i parametrima za transkodiranje
+     channel – RabbitMQ kanal koji se koristi za ručnu potvrdu poruka
+     deliveryTag – jedinstveni identifikator poruke koji se koristi za potvrdu
+     */
+    @RabbitListener(
+            id = AmqpTranscodingJobQueue.LISTENER_ID,
+            queues = "${transcoding.queue.name}",
+            concurrency = "${transcoding.consumer.concurrency}"
+    )
+    public void onMessage(TranscodingJobMessage message,
+                          Channel channel,
+                          @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                          @Header(name = "x-death", required = false) List<Map<String, Object>> xDeath) {
+        TranscodingJobQueue.Outcome outcome = transcodingConsumerService.process(message, getRetryCount(xDeath));
+        try {
+            if (outcome == TranscodingJobQueue.Outcome.ACK) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                // Reject message - it will be sent to DLQ and retried after TTL
+                channel.basicNack(deliveryTag, false, false);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to ack/nack transcoding job for video {}: {}", message.getVideoId(), e.getMessage());
+        }
+    }
+
+    /**
+     Izvlači broj pokušaja ponovne obrade poruke iz x-death zaglavlja.
+     xDeath – lista zapisa iz x-death zaglavlja
+     */
+    private int getRetryCount(List<Map<String, Object>> xDeath) {
+        if (xDeath == null || xDeath.isEmpty()) {
+            return 0;
+        }
+        try {
+            // Get count from first death record
+            Object count = xDeath.get(0).get("count");
+            if (count instanceof Number) {
+                return ((Number) count).intValue();
+            }
+        } catch (Exception e) {
+            logger.debug("Could not parse x-death header: {}", e.getMessage());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Red poslova na RabbitMQ-u. Poslovi se šalju u grupama na jednom kanalu iz keša, sa correlated
+ * publisher confirm-ima; ponovni pokušaji idu kroz DLQ sa TTL-om (RabbitMQConfig), a potrošači
+ * su kontejner AmqpTranscodingJobListener-a.
+ */
+@Service
+@ConditionalOnProperty(name = "transcoding.queue.mode", havingValue = "amqp", matchIfMissing = true)
+public class AmqpTranscodingJobQueue implements TranscodingJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpTranscodingJobQueue.class);
+
+    public static final String LISTENER_ID = "transcodingListener";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    @Value("${transcoding.queue.name}")
+    private String queueName;
+
+    @Value("${transcoding.exchange.name}")
+    private String exchangeName;
+
+    @Value("${transcoding.routing.key}")
+    private String routingKey;
+
+    public AmqpTranscodingJobQueue(RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin,
+                                   RabbitListenerEndpointRegistry listenerRegistry,
+                                   PerformanceMetricsService performanceMetricsService) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.listenerRegistry = listenerRegistry;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Kanal se vraća u keš tek kada je cela grupa poslata. Nack ili vraćena (unroutable) poruka
+     * završavaju future izuzetkom; ako broker nije dostupan, izuzetkom se završava cela grupa.
+     */
+    @Override
+    public List<CompletableFuture<Void>> publish(List<TranscodingJobMessage> messages, List<String> correlationIds) {
+        List<CompletableFuture<Void>> results = new ArrayList<>(messages.size());
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (int i = 0; i < messages.size(); i++) {
+                    TranscodingJobMessage message = messages.get(i);
+                    CorrelationData correlationData = new CorrelationData(correlationIds.get(i));
+                    results.add(confirmed(correlationData));
+                    int priority = message.getPriority() != null
+                            ? message.getPriority() : TranscodingProducerService.PRIORITY_NORMAL;
+                    operations.convertAndSend(exchangeName, routingKey, message, amqpMessage -> {
+                        amqpMessage.getMessageProperties().setPriority(priority);
+                        return amqpMessage;
+                    }, correlationData);
+                }
+                return null;
+            });
+        } catch (AmqpException e) {
+            // Nothing sent after the failure is confirmed, and earlier confirms on a lost channel never arrive
+            logger.warn("Publishing {} transcoding jobs failed: {}", messages.size(), e.getMessage());
+            results.clear();
+            messages.forEach(message -> results.add(CompletableFuture.failedFuture(e)));
+        }
+        return results;
+    }
+
+    private CompletableFuture<Void> confirmed(CorrelationData correlationData) {
+        long sentAt = System.nanoTime();
+        return correlationData.getFuture().thenApply(confirm -> {
+            if (!confirm.isAck()) {
+                throw new IllegalStateException("Nacked by broker: " + confirm.getReason());
+            }
+            // Returns arrive before the confirm of the same message
+            if (correlationData.getReturned() != null) {
+                throw new IllegalStateException("Unroutable: " + correlationData.getReturned().getReplyText());
+            }
+            performanceMetricsService.recordMetric("RABBIT_CONFIRM_LATENCY",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt), 1);
+            return null;
+        });
+    }
+
+    @Override
+    public long depth() {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queueName);
+            return info != null ? info.getMessageCount() : -1;
+        } catch (Exception e) {
+            logger.debug("Could not read depth of {}: {}", queueName, e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public int activeConsumers() {
+        SimpleMessageListenerContainer container = transcodingContainer();
+        return container != null ? container.getActiveConsumerCount() : -1;
+    }
+
+    /**
+     * Pri povećanju se prvo podiže maksimum, a pri smanjenju prvo broj potrošača,
+     * jer kontejner ne dozvoljava da broj potrošača pređe maksimum.
+     */
+    @Override
+    public void setConsumers(int consumers) {
+        SimpleMessageListenerContainer container = transcodingContainer();
+        if (container == null) {
+            return;
+        }
+        if (consumers > container.getActiveConsumerCount()) {
+            container.setMaxConcurrentConsumers(consumers);
+            container.setConcurrentConsumers(consumers);
+        } else {
+            container.setConcurrentConsumers(consumers);
+            container.setMaxConcurrentConsumers(consumers);
+        }
+    }
+
+    private SimpleMessageListenerContainer transcodingContainer() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        return container instanceof SimpleMessageListenerContainer simple ? simple : null;
+    }
+}
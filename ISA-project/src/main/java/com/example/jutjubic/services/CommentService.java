@@ -42,11 +42,14 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final UserService userService;
     private final VideoService videoService;
+    private final ResourceVersionService resourceVersionService;
 
-    public CommentService(CommentRepository commentRepository, UserService userService, VideoService videoService) {
+    public CommentService(CommentRepository commentRepository, UserService userService, VideoService videoService,
+                          ResourceVersionService resourceVersionService) {
         this.commentRepository = commentRepository;
         this.userService = userService;
         this.videoService = videoService;
+        this.resourceVersionService = resourceVersionService;
     }
 
     /**
@@ -126,6 +129,7 @@ public class CommentService {
 
         Comment comment = new Comment(user, video, commentDto.getContent());
         Comment savedComment = commentRepository.save(comment);
+        resourceVersionService.bump(ResourceVersionService.commentsKey(videoId));
 
         logger.info("User {} created comment on video {}. Comment ID: {}", userId, videoId, savedComment.getId());
 
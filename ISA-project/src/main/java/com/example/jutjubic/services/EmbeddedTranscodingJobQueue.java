@@ -0,0 +1,330 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import com.example.jutjubic.utils.MappedAppendLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Red poslova unutar aplikacije, za jedan čvor i testna okruženja bez RabbitMQ broker-a
+ * (transcoding.queue.mode=embedded).
+ *
+ * Poslovi se upisuju u MappedAppendLog na disku (PUT pri slanju, DONE pri potvrdi), pa preživljavaju
+ * restart: posao koji je bio u obradi kada je aplikacija pala ponovo se isporučuje sa istim brojem pokušaja,
+ * kao nepotvrđena poruka na RabbitMQ-u. Outcome.RETRY upisuje novi PUT sa uvećanim brojem pokušaja i
+ * kašnjenjem retry-delay-ms (kao TTL DLQ-a), zajedno sa DONE starog, u jednom upisu.
+ *
+ * Poslove obrađuju ograničene radne niti; njihov broj menja TranscodingAutoscaler kao i kod RabbitMQ-a.
+ */
+@Service
+@ConditionalOnProperty(name = "transcoding.queue.mode", havingValue = "embedded")
+public class EmbeddedTranscodingJobQueue implements TranscodingJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedTranscodingJobQueue.class);
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DONE = 2;
+    // type(1) + id(8) + attempt(4) + priority(4) + availableAt(8), followed by the JSON message
+    private static final int PUT_HEADER_SIZE = 25;
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    private final ObjectProvider<TranscodingConsumerService> transcodingConsumerService;
+    private final PerformanceMetricsService performanceMetricsService;
+    private final JsonMapper jsonMapper;
+
+    @Value("${transcoding.queue.embedded.directory:media/queue/}")
+    private String directory;
+
+    @Value("${transcoding.queue.embedded.segment-bytes:16777216}")
+    private int segmentBytes;
+
+    @Value("${transcoding.queue.embedded.consumers:2}")
+    private int initialConsumers;
+
+    @Value("${transcoding.queue.embedded.retry-delay-ms:60000}")
+    private long retryDelayMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition jobAvailable = lock.newCondition();
+
+    // All unacknowledged jobs by id (ready, waiting for retry, in progress)
+    private final Map<Long, Job> jobs = new HashMap<>();
+    private final PriorityQueue<Job> ready = new PriorityQueue<>(
+            Comparator.comparingInt(Job::priority).reversed().thenComparingLong(Job::id));
+    private final PriorityQueue<Job> delayed = new PriorityQueue<>(Comparator.comparingLong(Job::availableAt));
+
+    private final AtomicInteger targetConsumers = new AtomicInteger();
+    private final AtomicInteger activeConsumers = new AtomicInteger();
+    private final AtomicInteger workerCounter = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private MappedAppendLog log;
+    private long nextId = 1;
+
+    public EmbeddedTranscodingJobQueue(ObjectProvider<TranscodingConsumerService> transcodingConsumerService,
+                                       PerformanceMetricsService performanceMetricsService,
+                                       JsonMapper jsonMapper) {
+        this.transcodingConsumerService = transcodingConsumerService;
+        this.performanceMetricsService = performanceMetricsService;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        lock.lock();
+        try {
+            log = MappedAppendLog.open(Paths.get(directory), segmentBytes, this::replay, this::liveRecords);
+            long now = System.currentTimeMillis();
+            for (Job job : jobs.values()) {
+                (job.availableAt() > now ? delayed : ready).add(job);
+            }
+            logger.info("Embedded transcoding queue opened in {}: {} pending jobs", directory, jobs.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Radne niti kreću tek kada je kontekst podignut, jer TranscodingConsumerService zavisi od reda.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startConsumers() {
+        running = true;
+        setConsumers(initialConsumers);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        running = false;
+        // Jobs in progress stay unacknowledged and are delivered again after restart
+        synchronized (workers) {
+            workers.forEach(Thread::interrupt);
+        }
+        lock.lock();
+        try {
+            log.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<CompletableFuture<Void>> publish(List<TranscodingJobMessage> messages, List<String> correlationIds) {
+        long startTime = System.currentTimeMillis();
+        List<CompletableFuture<Void>> results = new ArrayList<>(messages.size());
+        lock.lock();
+        try {
+            List<Job> batch = new ArrayList<>(messages.size());
+            for (TranscodingJobMessage message : messages) {
+                int priority = message.getPriority() != null
+                        ? message.getPriority() : TranscodingProducerService.PRIORITY_NORMAL;
+                batch.add(newJob(0, priority, startTime, jsonMapper.writeValueAsBytes(message)));
+            }
+            log.append(batch.stream().map(Job::record).toList());
+            for (Job job : batch) {
+                jobs.put(job.id(), job);
+                ready.add(job);
+                results.add(CompletableFuture.completedFuture(null));
+            }
+            jobAvailable.signalAll();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Writing {} transcoding jobs to the embedded queue failed: {}", messages.size(), e.getMessage());
+            results.clear();
+            messages.forEach(message -> results.add(CompletableFuture.failedFuture(e)));
+        } finally {
+            lock.unlock();
+        }
+        performanceMetricsService.recordMetric("EMBEDDED_QUEUE_APPEND", System.currentTimeMillis() - startTime,
+                messages.size());
+        return results;
+    }
+
+    @Override
+    public long depth() {
+        lock.lock();
+        try {
+            return ready.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int activeConsumers() {
+        return running ? activeConsumers.get() : -1;
+    }
+
+    /**
+     * Nove niti se pokreću odmah; višak niti se gasi kada završi tekući posao.
+     */
+    @Override
+    public void setConsumers(int consumers) {
+        if (!running) {
+            return;
+        }
+        targetConsumers.set(Math.max(0, consumers));
+        synchronized (workers) {
+            workers.removeIf(worker -> !worker.isAlive());
+            while (activeConsumers.get() < consumers) {
+                activeConsumers.incrementAndGet();
+                Thread worker = new Thread(this::work, "transcoding-embedded-" + workerCounter.incrementAndGet());
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+    }
+
+    private void work() {
+        try {
+            while (running) {
+                int active = activeConsumers.get();
+                if (active > targetConsumers.get()) {
+                    if (activeConsumers.compareAndSet(active, active - 1)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                Job job = take();
+                if (job != null) {
+                    process(job);
+                }
+            }
+            activeConsumers.decrementAndGet();
+        } catch (InterruptedException e) {
+            activeConsumers.decrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(Job job) throws InterruptedException {
+        Outcome outcome;
+        try {
+            TranscodingJobMessage message = jsonMapper.readValue(job.payload(), TranscodingJobMessage.class);
+            outcome = transcodingConsumerService.getObject().process(message, job.attempt());
+        } catch (RuntimeException e) {
+            logger.error("Embedded transcoding job {} failed unexpectedly: {}", job.id(), e.getMessage(), e);
+            outcome = Outcome.RETRY;
+        }
+        if (Thread.interrupted()) {
+            // Shutting down - leave the job unacknowledged so it is delivered again
+            throw new InterruptedException();
+        }
+        complete(job, outcome);
+    }
+
+    /**
+     * @return sledeći posao najvećeg prioriteta, ili null ako ga nema u roku od POLL_TIMEOUT_MS
+     */
+    private Job take() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + POLL_TIMEOUT_MS;
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                while (!delayed.isEmpty() && delayed.peek().availableAt() <= now) {
+                    ready.add(delayed.poll());
+                }
+                if (!ready.isEmpty()) {
+                    return ready.poll();
+                }
+                if (now >= deadline) {
+                    return null;
+                }
+                long wait = deadline - now;
+                if (!delayed.isEmpty()) {
+                    wait = Math.min(wait, delayed.peek().availableAt() - now);
+                }
+                jobAvailable.await(wait, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void complete(Job job, Outcome outcome) {
+        lock.lock();
+        try {
+            if (outcome == Outcome.ACK) {
+                log.append(List.of(doneRecord(job.id())));
+                jobs.remove(job.id());
+                return;
+            }
+            Job retry = newJob(job.attempt() + 1, job.priority(), System.currentTimeMillis() + retryDelayMs,
+                    job.payload());
+            log.append(List.of(retry.record(), doneRecord(job.id())));
+            jobs.remove(job.id());
+            jobs.put(retry.id(), retry);
+            delayed.add(retry);
+            jobAvailable.signalAll();
+        } catch (IOException e) {
+            // Not written: the job stays unacknowledged on disk and is delivered again after restart
+            logger.error("Failed to record outcome {} of embedded transcoding job {}: {}",
+                    outcome, job.id(), e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Job newJob(int attempt, int priority, long availableAt, byte[] payload) {
+        long id = nextId++;
+        ByteBuffer record = ByteBuffer.allocate(PUT_HEADER_SIZE + payload.length);
+        record.put(RECORD_PUT).putLong(id).putInt(attempt).putInt(priority).putLong(availableAt).put(payload);
+        return new Job(id, attempt, priority, availableAt, payload, record.array());
+    }
+
+    private static byte[] doneRecord(long id) {
+        return ByteBuffer.allocate(1 + 8).put(RECORD_DONE).putLong(id).array();
+    }
+
+    private void replay(ByteBuffer record) {
+        byte type = record.get(0);
+        long id = record.getLong(1);
+        nextId = Math.max(nextId, id + 1);
+        if (type == RECORD_DONE) {
+            jobs.remove(id);
+            return;
+        }
+        byte[] bytes = new byte[record.remaining()];
+        record.duplicate().get(bytes);
+        byte[] payload = new byte[bytes.length - PUT_HEADER_SIZE];
+        System.arraycopy(bytes, PUT_HEADER_SIZE, payload, 0, payload.length);
+        jobs.put(id, new Job(id, record.getInt(9), record.getInt(13), record.getLong(17), payload, bytes));
+    }
+
+    private List<byte[]> liveRecords() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong(Job::id))
+                .map(Job::record)
+                .toList();
+    }
+
+    private record Job(long id, int attempt, int priority, long availableAt, byte[] payload, byte[] record) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.utils.Mp4Faststart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Servis za periodično prebacivanje moov box-a na početak postojećih transkodiranih MP4 fajlova (faststart).
+ * Novi transkodirani fajlovi se već prave sa -movflags +faststart, a ovaj posao obrađuje izlaze napravljene
+ * pre uvođenja te opcije. Originali se ne diraju: oni su adresirani sadržajem, pa se faststart radi pri
+ * upload-u, pre računanja hash-a (VideoUploadService.faststart).
+ */
+@Service
+public class FaststartBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FaststartBatchService.class);
+
+    private static final Set<String> MP4_EXTENSIONS = Set.of(".mp4", ".m4v", ".mov");
+
+    /**
+     * Direktorijum transkodiranih izlaza; obrađuju se samo fajlovi direktno u njemu.
+     */
+    @Value("${faststart.batch.directory:${transcoding.output.directory}}")
+    private String directory;
+
+    /**
+     * Fajlovi mlađi od ovoga se preskaču jer ih FFmpeg ili upload možda još pišu.
+     */
+    @Value("${faststart.batch.min-age-minutes:10}")
+    private long minAgeMinutes;
+
+    @Value("${faststart.batch.max-files-per-run:500}")
+    private int maxFilesPerRun;
+
+    private final PerformanceMetricsService performanceMetricsService;
+
+    public FaststartBatchService(PerformanceMetricsService performanceMetricsService) {
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Cron izraz: "0 30 3 * * ?" - svaki dan u 03:30:00
+     */
+    @Scheduled(cron = "${faststart.batch.cron:0 30 3 * * ?}")
+    public void relocateMoovAtoms() {
+        logger.info("Starting scheduled faststart job");
+        Instant cutoff = Instant.now().minus(minAgeMinutes, ChronoUnit.MINUTES);
+
+        int checked = 0;
+        int rewritten = 0;
+        int failed = 0;
+        for (Path file : candidates(cutoff)) {
+            checked++;
+            long startTime = System.currentTimeMillis();
+            try {
+                if (Mp4Faststart.relocateMoov(file)) {
+                    rewritten++;
+                    performanceMetricsService.recordMetric("FASTSTART_REWRITE",
+                            System.currentTimeMillis() - startTime, 1);
+                    logger.debug("Moved moov to the front of {}", file);
+                }
+            } catch (IOException e) {
+                // E.g. the file is open for streaming on Windows - it is retried on the next run
+                failed++;
+                logger.warn("Failed to rewrite {}: {}", file, e.getMessage());
+            } catch (RuntimeException e) {
+                // A file the parser does not handle must not stop the rest of the batch
+                failed++;
+                logger.warn("Skipping {}: {}", file, e.toString());
+            }
+        }
+
+        logger.info("Faststart job completed. Checked: {}, Rewritten: {}, Failed: {}", checked, rewritten, failed);
+    }
+
+    private List<Path> candidates(Instant cutoff) {
+        return listFiles(Paths.get(directory))
+                .filter(file -> isMp4(file) && isOlderThan(file, cutoff))
+                .limit(maxFilesPerRun)
+                .toList();
+    }
+
+    /**
+     * Samo fajlovi direktno u direktorijumu - HLS i privremeni direktorijumi segmenata se ne diraju.
+     */
+    private static Stream<Path> listFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return Stream.empty();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isRegularFile).toList().stream();
+        } catch (IOException e) {
+            logger.warn("Failed to list {}: {}", directory, e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    private static boolean isMp4(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && MP4_EXTENSIONS.contains(name.substring(dot));
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.UserProfileDto;
+import com.example.jutjubic.dto.VideoSummaryDto;
+import com.example.jutjubic.repositories.UserRepository;
+import com.example.jutjubic.repositories.VideoRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Service for exporting whole tables as NDJSON (one JSON document per line).
+ *
+ * Rows are read through a forward-only JDBC cursor and written to the response as they arrive,
+ * and the persistence context is cleared after every batch of written entities.
+ * Memory use therefore stays constant regardless of the number of rows,
+ * unlike the List-based getAllVideos/getAllUsers endpoints.
+ */
+@Service
+public class NdjsonExportService {
+    private static final Logger logger = LoggerFactory.getLogger(NdjsonExportService.class);
+
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+    // Every N rows the servlet buffer is flushed and the persistence context cleared
+    private static final int BATCH_ROWS = 100;
+    private static final byte NEWLINE = '\n';
+
+    private final VideoRepository videoRepository;
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final JsonMapper jsonMapper;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    public NdjsonExportService(VideoRepository videoRepository, UserRepository userRepository,
+                               EntityManager entityManager, JsonMapper jsonMapper,
+                               PerformanceMetricsService performanceMetricsService) {
+        this.videoRepository = videoRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.jsonMapper = jsonMapper;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Writes all publicly available videos to the output stream as NDJSON, newest first.
+     * Only the creator's id and username are selected, not the user entity.
+     *
+     * @return Number of exported rows
+     */
+    @Transactional(readOnly = true)
+    public long exportVideos(OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long count;
+        try (Stream<VideoSummaryDto> videos = videoRepository.streamAllPubliclyAvailable(LocalDateTime.now())) {
+            count = writeNdjson(videos, out);
+        }
+        recordExport("VIDEO_EXPORT", startTime, count);
+        return count;
+    }
+
+    /**
+     * Writes the public profile of all users (as in /users/{id}/profile) to the output stream as NDJSON,
+     * oldest first. Passwords and other private fields are not selected.
+     *
+     * @return Number of exported rows
+     */
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long count;
+        try (Stream<UserProfileDto> users = userRepository.streamAllProfiles()) {
+            count = writeNdjson(users, out);
+        }
+        recordExport("USER_EXPORT", startTime, count);
+        return count;
+    }
+
+    private <T> long writeNdjson(Stream<T> rows, OutputStream out) throws IOException {
+        long count = 0;
+        Iterator<T> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            out.write(jsonMapper.writeValueAsBytes(iterator.next()));
+            out.write(NEWLINE);
+
+            if (++count % BATCH_ROWS == 0) {
+                out.flush();
+                // Drop written entities (and their eagerly fetched associations) from the persistence context
+                entityManager.clear();
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    private void recordExport(String operationType, long startTime, long count) {
+        long responseTime = System.currentTimeMillis() - startTime;
+        performanceMetricsService.recordMetric(operationType, responseTime, (int) Math.min(count, Integer.MAX_VALUE));
+        logger.info("{} streamed {} rows in {}ms", operationType, count, responseTime);
+    }
+}
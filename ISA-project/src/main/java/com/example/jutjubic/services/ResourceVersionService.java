@@ -0,0 +1,151 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.repositories.VideoRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Servis za praćenje verzija resursa radi uslovnih GET zahteva (ETag / Last-Modified).
+ *
+ * Svaki resurs (jedan video, komentari jednog videa, lista videa) ima brojač verzije u memoriji
+ * koji se povećava pri svakoj izmeni. Na osnovu njega se pravi ETag, pa se If-None-Match
+ * može odgovoriti sa 304 bez upita ka bazi i bez serijalizacije.
+ *
+ * ETag sadrži i identifikator pokretanja aplikacije, tako da restart poništava sve stare ETag-ove.
+ */
+@Service
+public class ResourceVersionService {
+    private static final Logger logger = LoggerFactory.getLogger(ResourceVersionService.class);
+
+    public static final String VIDEO_LIST_KEY = "videos";
+    private static final String VIDEO_KEY_PREFIX = "video:";
+    private static final String COMMENTS_KEY_PREFIX = "comments:";
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final Instant bootTime = Instant.now();
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Zakazane objave koje još nisu postale javne. Kada njihovo vreme prođe,
+     * lista videa se menja bez ikakvog upisa u bazu, pa verziju liste treba povećati.
+     */
+    private final ConcurrentSkipListSet<LocalDateTime> pendingPublications = new ConcurrentSkipListSet<>();
+
+    private final VideoRepository videoRepository;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    public ResourceVersionService(VideoRepository videoRepository, PerformanceMetricsService performanceMetricsService) {
+        this.videoRepository = videoRepository;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    @PostConstruct
+    public void loadPendingPublications() {
+        try {
+            pendingPublications.addAll(videoRepository.findScheduledAtAfter(LocalDateTime.now()));
+            logger.info("Tracking {} pending scheduled publications for ETag versioning", pendingPublications.size());
+        } catch (Exception e) {
+            logger.warn("Could not load pending scheduled publications: {}", e.getMessage());
+        }
+    }
+
+    public static String videoKey(UUID videoId) {
+        return VIDEO_KEY_PREFIX + videoId;
+    }
+
+    public static String commentsKey(UUID videoId) {
+        return COMMENTS_KEY_PREFIX + videoId;
+    }
+
+    /**
+     * Povećava verziju resursa. Ako je transakcija aktivna, povećanje se odlaže do commit-a,
+     * kako klijent ne bi dobio novi ETag za podatke koji još nisu vidljivi.
+     */
+    public void bump(String... keys) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpNow(keys);
+                }
+            });
+        } else {
+            bumpNow(keys);
+        }
+    }
+
+    /**
+     * Registruje zakazano vreme objave kako bi se lista videa invalidirala kada ono prođe.
+     */
+    public void registerScheduledPublication(LocalDateTime scheduledAt) {
+        if (scheduledAt != null && scheduledAt.isAfter(LocalDateTime.now())) {
+            pendingPublications.add(scheduledAt);
+        }
+    }
+
+    /**
+     * Proverava If-None-Match / If-Modified-Since zaglavlja za dati resurs.
+     * Uvek postavlja ETag i Last-Modified na odgovor; ako se verzija nije promenila
+     * postavlja status 304 i vraća true - kontroler tada treba da vrati null.
+     */
+    public boolean checkNotModified(WebRequest request, String key) {
+        long startTime = System.nanoTime();
+        Version version = current(key);
+        String etag = "\"" + bootId + "-" + version.counter + "\"";
+
+        boolean notModified = request.checkNotModified(etag, version.lastModified.toEpochMilli());
+
+        long responseTimeMs = (System.nanoTime() - startTime) / 1_000_000;
+        performanceMetricsService.recordMetric("CONDITIONAL_GET", responseTimeMs, notModified ? 0 : 1,
+                notModified ? "HIT" : "MISS", key, 0);
+        return notModified;
+    }
+
+    private Version current(String key) {
+        if (VIDEO_LIST_KEY.equals(key)) {
+            publishDueScheduledVideos();
+        }
+        return versions.getOrDefault(key, new Version(0, bootTime));
+    }
+
+    private void publishDueScheduledVideos() {
+        LocalDateTime now = LocalDateTime.now();
+        boolean published = false;
+        LocalDateTime next;
+        while ((next = pendingPublications.isEmpty() ? null : pendingPublications.first()) != null && !next.isAfter(now)) {
+            published |= pendingPublications.remove(next);
+        }
+        if (published) {
+            bumpNow(VIDEO_LIST_KEY);
+        }
+    }
+
+    private void bumpNow(String... keys) {
+        Instant now = Instant.now();
+        for (String key : keys) {
+            versions.compute(key, (k, old) -> new Version(old == null ? 1 : old.counter + 1, now));
+        }
+    }
+
+    private static final class Version {
+        private final long counter;
+        private final Instant lastModified;
+
+        private Version(long counter, Instant lastModified) {
+            this.counter = counter;
+            this.lastModified = lastModified;
+        }
+    }
+}
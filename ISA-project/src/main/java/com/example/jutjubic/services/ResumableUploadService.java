@@ -0,0 +1,241 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.UploadResultDto;
+import com.example.jutjubic.dto.UploadSessionDto;
+import com.example.jutjubic.exceptions.UploadOffsetMismatchException;
+import com.example.jutjubic.models.UploadSession;
+import com.example.jutjubic.repositories.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servis za resumable (chunked) upload video fajlova.
+ *
+ * Protokol: kreiranje sesije sa ukupnom veličinom, PATCH chunk-ova sa offsetom,
+ * upit za trenutni offset i finalizacija. Fajl se prealocira na punu veličinu i
+ * chunk-ovi se upisuju pozicionim upisima, pa prekinuta konekcija gubi samo
+ * neupisani deo poslednjeg chunk-a. Stanje sesije je u bazi i preživljava restart.
+ */
+@Service
+public class ResumableUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private static final String MEDIA_PATH = "media/";
+    private static final String VIDEOS_DIR = "videos";
+    private static final String PART_SUFFIX = ".part";
+
+    @Value("${upload.session.ttl-hours:24}")
+    private long sessionTtlHours;
+
+    // Sessions with a chunk currently being written; a session is claimed before any byte hits the file
+    private final Set<UUID> activeChunks = ConcurrentHashMap.newKeySet();
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final VideoUploadService videoUploadService;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    public ResumableUploadService(UploadSessionRepository uploadSessionRepository,
+                                  VideoUploadService videoUploadService,
+                                  PerformanceMetricsService performanceMetricsService) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.videoUploadService = videoUploadService;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Kreira sesiju i prealocira fajl na punu veličinu.
+     *
+     * @throws IllegalArgumentException ako veličina nije u dozvoljenom opsegu
+     */
+    public UploadSessionDto createSession(UUID userId, String originalFilename, long totalSize) throws IOException {
+        if (totalSize <= 0) {
+            throw new IllegalArgumentException("Upload size must be positive");
+        }
+        if (totalSize > VideoService.MAX_VIDEO_SIZE) {
+            throw new IllegalArgumentException("Video file size exceeds maximum allowed size of 200MB");
+        }
+
+        String filename = VideoUploadService.generateFilename(originalFilename);
+        String videoPath = MEDIA_PATH + VIDEOS_DIR + "/" + filename;
+        Path partFile = partFile(videoPath);
+
+        try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw")) {
+            file.setLength(totalSize);
+        }
+
+        UploadSession session = uploadSessionRepository.save(new UploadSession(userId, videoPath, totalSize));
+        logger.info("Created upload session {} for user {} ({} bytes)", session.getId(), userId, totalSize);
+        return toDto(session);
+    }
+
+    /**
+     * Vraća trenutno stanje sesije.
+     *
+     * @throws IllegalArgumentException ako sesija ne postoji ili ne pripada korisniku
+     */
+    public UploadSessionDto getSession(UUID sessionId, UUID userId) {
+        return toDto(loadSession(sessionId, userId));
+    }
+
+    /**
+     * Upisuje chunk koji počinje na zadatom offsetu. Offset mora biti jednak trenutnom
+     * offsetu sesije. Ako se konekcija prekine usred chunk-a, upisani deo se zadržava
+     * i offset se pomera do njega.
+     * Sesija se zauzima pre upisa, pa drugi PATCH za istu sesiju dok traje upis dobija
+     * neslaganje offseta umesto da upisuje isti opseg bajtova.
+     *
+     * @return Novi offset sesije
+     * @throws UploadOffsetMismatchException ako offset ne odgovara stanju sesije
+     * @throws IllegalArgumentException ako chunk prelazi deklarisanu veličinu fajla
+     */
+    public long appendChunk(UUID sessionId, UUID userId, long offset, InputStream input) throws IOException {
+        UploadSession session = loadSession(sessionId, userId);
+        if (!activeChunks.add(sessionId)) {
+            throw new UploadOffsetMismatchException(offset, session.getReceivedBytes());
+        }
+        try {
+            // Re-read under the claim: a chunk that finished since the first read has moved the offset
+            session = loadSession(sessionId, userId);
+            if (offset != session.getReceivedBytes()) {
+                throw new UploadOffsetMismatchException(offset, session.getReceivedBytes());
+            }
+            return writeChunk(session, offset, input);
+        } finally {
+            activeChunks.remove(sessionId);
+        }
+    }
+
+    private long writeChunk(UploadSession session, long offset, InputStream input) throws IOException {
+        UUID sessionId = session.getId();
+        long startTime = System.currentTimeMillis();
+        long position = offset;
+        ByteBuffer buffer = videoUploadService.acquireBuffer();
+        IOException interrupted = null;
+
+        try (ReadableByteChannel source = Channels.newChannel(input);
+             FileChannel out = FileChannel.open(partFile(session.getVideoPath()), StandardOpenOption.WRITE)) {
+            try {
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    if (position + buffer.remaining() > session.getTotalSize()) {
+                        throw new IllegalArgumentException("Chunk exceeds declared upload size of "
+                                + session.getTotalSize() + " bytes");
+                    }
+                    while (buffer.hasRemaining()) {
+                        position += out.write(buffer, position);
+                    }
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // Client dropped the connection - keep what was written so it can resume from there
+                interrupted = e;
+            }
+            out.force(false);
+        } finally {
+            videoUploadService.releaseBuffer(buffer);
+        }
+
+        if (position > offset
+                && uploadSessionRepository.advanceOffset(sessionId, offset, position, LocalDateTime.now()) == 0) {
+            long current = uploadSessionRepository.findById(sessionId)
+                    .map(UploadSession::getReceivedBytes)
+                    .orElse(offset);
+            throw new UploadOffsetMismatchException(offset, current);
+        }
+
+        performanceMetricsService.recordMetric("VIDEO_UPLOAD_CHUNK", System.currentTimeMillis() - startTime, 1);
+        logger.debug("Upload session {}: wrote {} bytes at offset {}", sessionId, position - offset, offset);
+
+        if (interrupted != null) {
+            throw interrupted;
+        }
+        return position;
+    }
+
+    /**
+     * Završava sesiju: prebacuje moov na početak fajla, računa SHA-256, premešta fajl u skladište adresirano sadržajem i registruje ga
+     * kao završen upload spreman za kreiranje videa.
+     *
+     * @throws IllegalArgumentException ako nisu primljeni svi bajtovi
+     */
+    public UploadResultDto finalizeSession(UUID sessionId, UUID userId) throws IOException {
+        UploadSession session = loadSession(sessionId, userId);
+        if (!session.isComplete()) {
+            throw new IllegalArgumentException("Upload is incomplete: received " + session.getReceivedBytes()
+                    + " of " + session.getTotalSize() + " bytes");
+        }
+
+        Path partFile = partFile(session.getVideoPath());
+        videoUploadService.faststart(partFile);
+        String sha256 = videoUploadService.sha256(partFile);
+        String videoPath = videoUploadService.promoteContentAddressed(partFile, sha256,
+                VideoUploadService.extensionOf(session.getVideoPath()));
+        try {
+            uploadSessionRepository.delete(session);
+
+            logger.info("Upload session {} finalized as {} ({} bytes)", sessionId, videoPath, session.getTotalSize());
+            return videoUploadService.registerCompletedUpload(userId, videoPath, session.getTotalSize(), sha256);
+        } finally {
+            videoUploadService.releaseReference(videoPath);
+        }
+    }
+
+    /**
+     * Briše sesije bez aktivnosti duže od upload.session.ttl-hours zajedno sa njihovim fajlovima.
+     */
+    @Scheduled(fixedDelayString = "${upload.session.gc-interval-ms:3600000}")
+    public void cleanupStaleSessions() {
+        List<UploadSession> stale = uploadSessionRepository
+                .findByUpdatedAtBefore(LocalDateTime.now().minusHours(sessionTtlHours));
+
+        for (UploadSession session : stale) {
+            if (!activeChunks.add(session.getId())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(partFile(session.getVideoPath()));
+                uploadSessionRepository.delete(session);
+                logger.info("Deleted stale upload session {} ({} of {} bytes received)",
+                        session.getId(), session.getReceivedBytes(), session.getTotalSize());
+            } catch (Exception e) {
+                logger.warn("Failed to delete stale upload session {}: {}", session.getId(), e.getMessage());
+            } finally {
+                activeChunks.remove(session.getId());
+            }
+        }
+    }
+
+    private UploadSession loadSession(UUID sessionId, UUID userId) {
+        return uploadSessionRepository.findById(sessionId)
+                .filter(session -> session.getUserId().equals(userId))
+                .orElseThrow(() -> new IllegalArgumentException("Upload session not found: " + sessionId));
+    }
+
+    private static Path partFile(String videoPath) {
+        return Paths.get(videoPath + PART_SUFFIX);
+    }
+
+    private static UploadSessionDto toDto(UploadSession session) {
+        return new UploadSessionDto(session.getId(), session.getReceivedBytes(), session.getTotalSize());
+    }
+}
@@ -0,0 +1,575 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.HlsRendition;
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import com.example.jutjubic.models.SegmentedTranscode;
+import com.example.jutjubic.models.TranscodingSegment;
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.repositories.SegmentedTranscodeRepository;
+import com.example.jutjubic.repositories.TranscodingSegmentRepository;
+import com.example.jutjubic.repositories.VideoRepository;
+import net.bramp.ffmpeg.FFmpeg;
+import net.bramp.ffmpeg.FFmpegExecutor;
+import net.bramp.ffmpeg.FFprobe;
+import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ Segmentirano transkodiranje dugih videa.
+ Izvor se bez ponovnog kodiranja seče na keyframe-ovima na delove od ~segment-seconds sekundi i za svaki
+ deo se u red šalje zaseban posao, pa jedan dug video obrađuju svi slobodni potrošači paralelno.
+ Delovi sadrže samo video; audio se pri deljenju kodira jednom iz celog izvora, pa na granicama delova
+ nema praznina ni pomeranja zvuka. Radnik koji završi poslednji deo spaja izlaze concat demuxer-om
+ (-c copy), dodaje im audio i od spojenih rendicija pakuje HLS bez ponovnog kodiranja.
+ Završeni delovi su trajno zabeleženi (fsync izlaza pa done u bazi), pa ponovljeni posao posle pada
+ radnika kodira samo delove koji nedostaju, a spajanje koje je prekinuto padom preuzima se posle isteka zakupa.
+ */
+@Service
+public class SegmentedTranscodingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedTranscodingService.class);
+
+    private final SegmentedTranscodeRepository segmentedTranscodeRepository;
+    private final TranscodingSegmentRepository transcodingSegmentRepository;
+    private final TranscodingProducerService transcodingProducerService;
+    private final PerformanceMetricsService performanceMetricsService;
+    private final TranscodingProgressPublisher progressPublisher;
+    private final TranscodingAutoscaler autoscaler;
+    private final VideoRepository videoRepository;
+
+    @Value("${ffmpeg.path}")
+    private String ffmpegPath;
+
+    @Value("${ffprobe.path}")
+    private String ffprobePath;
+
+    @Value("${transcoding.output.directory}")
+    private String outputDirectory;
+
+    @Value("${transcoding.segmented.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Kraći videi se transkoduju jednim poslom - deljenje i spajanje se ne isplate.
+     */
+    @Value("${transcoding.segmented.min-duration-seconds:300}")
+    private double minDurationSeconds;
+
+    @Value("${transcoding.segmented.segment-seconds:60}")
+    private int segmentSeconds;
+
+    /**
+     * Koliko dugo spajanje pripada radniku koji ga je preuzeo; posle toga se smatra da je radnik pao.
+     */
+    @Value("${transcoding.segmented.concat-lease-minutes:30}")
+    private long concatLeaseMinutes;
+
+    @Value("${transcoding.segmented.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    private FFmpeg ffmpeg;
+    private FFprobe ffprobe;
+
+    public SegmentedTranscodingService(SegmentedTranscodeRepository segmentedTranscodeRepository,
+                                       TranscodingSegmentRepository transcodingSegmentRepository,
+                                       TranscodingProducerService transcodingProducerService,
+                                       PerformanceMetricsService performanceMetricsService,
+                                       TranscodingProgressPublisher progressPublisher,
+                                       TranscodingAutoscaler autoscaler,
+                                       VideoRepository videoRepository) {
+        this.segmentedTranscodeRepository = segmentedTranscodeRepository;
+        this.transcodingSegmentRepository = transcodingSegmentRepository;
+        this.transcodingProducerService = transcodingProducerService;
+        this.performanceMetricsService = performanceMetricsService;
+        this.progressPublisher = progressPublisher;
+        this.autoscaler = autoscaler;
+        this.videoRepository = videoRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            ffmpeg = new FFmpeg(ffmpegPath);
+            ffprobe = new FFprobe(ffprobePath);
+        } catch (IOException e) {
+            logger.warn("FFmpeg is not available, segmented transcoding disabled: {}", e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     Da li posao treba podeliti na delove: samo celi (ne-segmentni) poslovi dovoljno dugih videa.
+     */
+    public boolean shouldSegment(TranscodingJobMessage message, FFmpegProbeResult probeResult) {
+        if (!enabled || message.getSegmentIndex() != null || probeResult.getFormat() == null) {
+            return false;
+        }
+        double duration = probeResult.getFormat().duration;
+        return duration >= minDurationSeconds && duration >= 2.0 * segmentSeconds;
+    }
+
+    /**
+     Da li je segmentirano transkodiranje videa još u toku, uključujući spojen video koji još nije
+     upisan kao transkodiran. Ponovljena isporuka dela nakon što je video upisan nema šta da radi.
+     */
+    public boolean isActive(UUID videoId) {
+        return segmentedTranscodeRepository.existsById(videoId);
+    }
+
+    /**
+     Seče video izvora na keyframe-ovima (stream copy) i šalje po jedan posao za svaki deo. Istim FFmpeg
+     pokretanjem se audio celog izvora kodira u po jedan fajl za MP4 izlaz i za svaku HLS rendiciju.
+     Redovi delova se upisuju pre roditeljskog reda, a roditeljski red pre slanja poslova, pa ponovljena
+     isporuka celog posla posle uspešnog deljenja ne deli izvor ponovo.
+     */
+    public void splitAndPublish(TranscodingJobMessage message, FFmpegProbeResult probeResult,
+                                TranscodingConsumerService.HlsPlan plan) throws IOException {
+        UUID videoId = message.getVideoId();
+        if (segmentedTranscodeRepository.existsById(videoId)) {
+            logger.info("Video {} is already split into segments, skipping", videoId);
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Path directory = segmentDirectory(videoId);
+        deleteRecursively(directory);
+        Files.createDirectories(directory);
+
+        FFmpegBuilder builder = new FFmpegBuilder()
+                .setInput(message.getSourcePath())
+                .overrideOutputFiles(true)
+                .addOutput(directory.resolve("src_%04d.mp4").toString())
+                .setFormat("segment")
+                .addExtraArgs("-map", "0:v:0")
+                .addExtraArgs("-c", "copy")
+                .addExtraArgs("-segment_time", String.valueOf(segmentSeconds))
+                .addExtraArgs("-reset_timestamps", "1")
+                .done();
+        if (hasAudio(probeResult)) {
+            builder = addAudioOutput(builder, message, audioOutput(directory, null), message.getAudioBitrate());
+            if (plan != null) {
+                for (HlsRendition rendition : plan.renditions()) {
+                    builder = addAudioOutput(builder, message, audioOutput(directory, rendition.getName()),
+                            rendition.getAudioBitrate());
+                }
+            }
+        }
+        new FFmpegExecutor(ffmpeg, ffprobe).createJob(builder).run();
+
+        List<Path> parts;
+        try (Stream<Path> files = Files.list(directory)) {
+            parts = files.filter(path -> path.getFileName().toString().startsWith("src_"))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+        if (parts.isEmpty()) {
+            throw new IOException("Splitting produced no segments for video " + videoId);
+        }
+
+        List<TranscodingSegment> segments = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            segments.add(new TranscodingSegment(videoId, i));
+        }
+        transcodingSegmentRepository.saveAll(segments);
+        SegmentedTranscode state = new SegmentedTranscode(videoId, parts.size());
+        state.setX264Preset(message.getX264Preset());
+        state.setCrf(message.getCrf());
+        segmentedTranscodeRepository.save(state);
+
+        List<TranscodingJobMessage> jobs = new ArrayList<>();
+        List<String> correlationIds = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            jobs.add(transcodingProducerService.buildSegmentJob(message, i, parts.size(), parts.get(i).toString()));
+            correlationIds.add("segment-" + videoId + "-" + i);
+        }
+
+        try {
+            // Svi delovi idu u jednoj grupi; roditeljski posao se potvrđuje tek kada red primi svaki deo
+            List<String> failures = transcodingProducerService.awaitConfirms(
+                    transcodingProducerService.publishBatch(jobs, correlationIds), confirmTimeoutMs);
+            for (String failure : failures) {
+                if (failure != null) {
+                    throw new IOException("Publishing segment jobs for video " + videoId + " failed: " + failure);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Posao se ponavlja preko DLQ-a, pa deljenje mora da krene ispočetka
+            discardState(videoId);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            discardState(videoId);
+            throw new IOException("Interrupted while waiting for segment job confirms", e);
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        performanceMetricsService.recordMetric("TRANSCODING_SPLIT", duration, parts.size());
+        logger.info("Video {} split into {} segments in {}ms", videoId, parts.size(), duration);
+    }
+
+    /**
+     Transkoduje video jednog dela u MP4 izlaz i u po jedan MP4 deo za svaku HLS rendiciju (deo nema audio).
+     Ako je ovo poslednji završen deo, spaja sve izlaze i vraća konačne putanje.
+
+     @return rezultat spajanja ili prazno ako drugi delovi još nisu gotovi
+     */
+    public Optional<SegmentedResult> transcodeSegment(TranscodingJobMessage message, TranscodingConsumerService.HlsPlan plan)
+            throws IOException {
+        UUID videoId = message.getVideoId();
+        int index = message.getSegmentIndex();
+        long startTime = System.currentTimeMillis();
+        Path directory = segmentDirectory(videoId);
+        int outputs = plan != null ? plan.renditions().size() + 1 : 1;
+        int threads = autoscaler.ffmpegThreads() > 0 ? Math.max(1, autoscaler.ffmpegThreads() / outputs) : 0;
+
+        Optional<SegmentedTranscode> current = segmentedTranscodeRepository.findById(videoId);
+        if (current.isPresent() && current.get().getState() == SegmentedTranscode.State.CONCATENATED) {
+            if (Files.isRegularFile(Paths.get(message.getOutputPath()))) {
+                // Spajanje je završeno, ali video nije upisan kao transkodiran (pad radnika ili greška baze)
+                logger.info("Video {} is already concatenated, completing it", videoId);
+                return Optional.of(new SegmentedResult(message.getOutputPath(), concatenatedMasterPath(plan)));
+            }
+            // Izlaz je izgubljen, a delovi su još na disku - spajanje se ponavlja
+            segmentedTranscodeRepository.transitionState(videoId, SegmentedTranscode.State.CONCATENATED,
+                    SegmentedTranscode.State.TRANSCODING);
+        }
+
+        List<Path> outputPaths = new ArrayList<>();
+        outputPaths.add(partOutput(directory, index, null));
+        if (plan != null) {
+            for (HlsRendition rendition : plan.renditions()) {
+                outputPaths.add(partOutput(directory, index, rendition.getName()));
+            }
+        }
+
+        if (isCheckpointed(videoId, index, outputPaths)) {
+            // Retry after a crash: this part was finished before, only the remaining work is redone
+            performanceMetricsService.recordMetric("TRANSCODING_SEGMENT_CHECKPOINT_HIT", 0, 1);
+            logger.info("Segment {} of video {} is already checkpointed, skipping FFmpeg", index, videoId);
+        } else {
+            FFmpegBuilder builder = TranscodingConsumerService.addMp4Output(new FFmpegBuilder()
+                    .setInput(message.getSourcePath())
+                    .overrideOutputFiles(true), message, outputPaths.get(0).toString(), threads);
+            if (plan != null) {
+                for (int i = 0; i < plan.renditions().size(); i++) {
+                    builder = addRenditionPartOutput(builder, message, plan.renditions().get(i), plan,
+                            outputPaths.get(i + 1), threads);
+                }
+            }
+            new FFmpegExecutor(ffmpeg, ffprobe).createJob(builder).run();
+
+            // The outputs must be on disk before the part is recorded as done
+            for (Path output : outputPaths) {
+                fsync(output);
+            }
+            performanceMetricsService.recordMetric("TRANSCODING_SEGMENT", System.currentTimeMillis() - startTime, 1);
+            if (transcodingSegmentRepository.markDone(videoId, index) == 0) {
+                logger.debug("Segment {} of video {} was already done (redelivery)", index, videoId);
+            }
+        }
+
+        Optional<SegmentedTranscode> state = segmentedTranscodeRepository.findById(videoId);
+        if (state.isEmpty()) {
+            return Optional.empty();
+        }
+        long done = transcodingSegmentRepository.countByIdVideoIdAndDoneTrue(videoId);
+        logger.info("Segment {}/{} of video {} transcoded ({} done)",
+                index + 1, state.get().getTotalSegments(), videoId, done);
+        progressPublisher.publishSegmentProgress(videoId, done, state.get().getTotalSegments());
+        LocalDateTime now = LocalDateTime.now();
+        if (done < state.get().getTotalSegments()
+                || segmentedTranscodeRepository.claimConcatenation(videoId, now,
+                now.minusMinutes(concatLeaseMinutes)) == 0) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(concatenate(message, plan, state.get().getTotalSegments()));
+        } catch (IOException | RuntimeException e) {
+            // Vraća se stanje kako bi ponovljeni posao ovog dela ponovo pokušao spajanje
+            segmentedTranscodeRepository.transitionState(videoId, SegmentedTranscode.State.CONCATENATING,
+                    SegmentedTranscode.State.TRANSCODING);
+            throw e;
+        }
+    }
+
+    /**
+     Spaja MP4 delove u konačni izlaz uz audio kodiran pri deljenju i svaku rendiciju pakuje u HLS. Greška u HLS delu nije fatalna,
+     kao i kod transkodiranja u jednom poslu. Stanje prelazi u CONCATENATED, a delovi ostaju na disku
+     dok pozivalac ne upiše video kao transkodiran i pozove finishConcatenation.
+     */
+    private SegmentedResult concatenate(TranscodingJobMessage message, TranscodingConsumerService.HlsPlan plan,
+                                        int totalSegments) throws IOException {
+        UUID videoId = message.getVideoId();
+        long startTime = System.currentTimeMillis();
+        Path directory = segmentDirectory(videoId);
+
+        concat(directory, totalSegments, null, message.getOutputPath());
+
+        String hlsMasterPath = null;
+        if (plan != null) {
+            try {
+                for (HlsRendition rendition : plan.renditions()) {
+                    Path joined = directory.resolve("joined_" + rendition.getName() + ".mp4");
+                    concat(directory, totalSegments, rendition.getName(), joined.toString());
+                    packageHls(joined, rendition, plan);
+                }
+                hlsMasterPath = TranscodingConsumerService.writeMasterPlaylist(plan).toString().replace('\\', '/');
+            } catch (Exception e) {
+                logger.error("HLS packaging failed for segmented video {}: {}", videoId, e.getMessage(), e);
+            }
+        }
+
+        segmentedTranscodeRepository.transitionState(videoId, SegmentedTranscode.State.CONCATENATING,
+                SegmentedTranscode.State.CONCATENATED);
+
+        long duration = System.currentTimeMillis() - startTime;
+        performanceMetricsService.recordMetric("TRANSCODING_CONCAT", duration, totalSegments);
+        logger.info("Concatenated {} segments of video {} in {}ms", totalSegments, videoId, duration);
+        return new SegmentedResult(message.getOutputPath(), hlsMasterPath);
+    }
+
+    /**
+     Master playlista spojenog videa ako je HLS pakovanje uspelo, inače null.
+     */
+    private static String concatenatedMasterPath(TranscodingConsumerService.HlsPlan plan) {
+        if (plan == null) {
+            return null;
+        }
+        Path masterPath = plan.directory().resolve("master.m3u8");
+        return Files.isRegularFile(masterPath) ? masterPath.toString().replace('\\', '/') : null;
+    }
+
+    /**
+     Briše stanje i delove spojenog videa. Poziva se tek kada je video upisan kao transkodiran,
+     kako bi ponovljeni posao dela do tada mogao da završi video.
+     */
+    public void finishConcatenation(UUID videoId) {
+        discardState(videoId);
+        deleteRecursively(segmentDirectory(videoId));
+    }
+
+    /**
+     Ponovo pokreće spajanje koje je radnik preuzeo pa pao (zakup je istekao, a poruka je već potvrđena
+     jer je zakup u trenutku ponovne isporuke još važio). Šalje se posao poslednjeg dela: on je već
+     zabeležen, pa samo preuzima spajanje. Isto važi za spojen video koji nije upisan kao transkodiran;
+     ako jeste, preostaje samo brisanje stanja. Stanje videa koji su u međuvremenu označeni kao FAILED se briše.
+     */
+    @Scheduled(fixedDelayString = "${transcoding.segmented.recovery-interval-ms:300000}")
+    public void recoverStalledConcatenations() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(concatLeaseMinutes);
+
+        List<SegmentedTranscode> stalledStates = new ArrayList<>(segmentedTranscodeRepository
+                .findByStateAndConcatStartedAtBefore(SegmentedTranscode.State.CONCATENATING, cutoff));
+        stalledStates.addAll(segmentedTranscodeRepository
+                .findByStateAndConcatStartedAtBefore(SegmentedTranscode.State.CONCATENATED, cutoff));
+        for (SegmentedTranscode stalled : stalledStates) {
+            UUID videoId = stalled.getVideoId();
+            Optional<Video> video = videoRepository.findVideoById(videoId);
+            if (video.isEmpty() || video.get().getProcessingState() == Video.ProcessingState.FAILED
+                    || video.get().isTranscoded()) {
+                finishConcatenation(videoId);
+                continue;
+            }
+
+            int last = stalled.getTotalSegments() - 1;
+            Path partSource = segmentDirectory(videoId).resolve(String.format("src_%04d.mp4", last));
+            TranscodingJobMessage parent = transcodingProducerService.buildTranscodingJob(video.get());
+            parent.setX264Preset(stalled.getX264Preset());
+            parent.setCrf(stalled.getCrf());
+            transcodingProducerService.sendSegmentJob(parent, last, stalled.getTotalSegments(), partSource.toString());
+            logger.warn("Concatenation of video {} stalled since {}, re-queued", videoId, stalled.getConcatStartedAt());
+        }
+
+        // Segments that exhausted their retries leave the video FAILED - nothing will finish them
+        for (SegmentedTranscode abandoned : segmentedTranscodeRepository.findByStateAndCreatedAtBefore(
+                SegmentedTranscode.State.TRANSCODING, cutoff)) {
+            UUID videoId = abandoned.getVideoId();
+            boolean failed = videoRepository.findVideoById(videoId)
+                    .map(video -> video.getProcessingState() == Video.ProcessingState.FAILED)
+                    .orElse(true);
+            if (failed) {
+                discardState(videoId);
+                deleteRecursively(segmentDirectory(videoId));
+                logger.info("Discarded segmented transcoding state of failed video {}", videoId);
+            }
+        }
+    }
+
+    /**
+     Deo je zabeležen kao završen i svi njegovi izlazi postoje na disku.
+     */
+    private boolean isCheckpointed(UUID videoId, int index, List<Path> outputPaths) {
+        if (!transcodingSegmentRepository.existsByIdVideoIdAndIdSegmentIndexAndDoneTrue(videoId, index)) {
+            return false;
+        }
+        for (Path output : outputPaths) {
+            if (!Files.isRegularFile(output)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void fsync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private void concat(Path directory, int totalSegments, String renditionName, String outputPath) throws IOException {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < totalSegments; i++) {
+            // Putanje u listi su relativne u odnosu na sam fajl liste
+            list.append("file '").append(partOutput(directory, i, renditionName).getFileName()).append("'\n");
+        }
+        Path listFile = directory.resolve("concat_" + (renditionName != null ? renditionName : "main") + ".txt");
+        Files.writeString(listFile, list.toString(), StandardCharsets.UTF_8);
+
+        // -f concat applies to the first input only; the audio track (if the source has one) is the second
+        Path audio = audioOutput(directory, renditionName);
+        boolean withAudio = Files.isRegularFile(audio);
+        FFmpegBuilder builder = new FFmpegBuilder()
+                .setFormat("concat")
+                .setInput(listFile.toString());
+        if (withAudio) {
+            builder.addInput(audio.toString());
+        }
+        FFmpegOutputBuilder output = builder
+                .overrideOutputFiles(true)
+                .addOutput(outputPath)
+                .setFormat("mp4");
+        if (withAudio) {
+            output.addExtraArgs("-map", "0:v:0", "-map", "1:a:0");
+        }
+        builder = output
+                .addExtraArgs("-c", "copy")
+                .addExtraArgs("-movflags", "+faststart")
+                .done();
+        new FFmpegExecutor(ffmpeg, ffprobe).createJob(builder).run();
+    }
+
+    /**
+     Pakuje spojenu rendiciju u HLS bez ponovnog kodiranja. Keyframe-ovi su forsirani na istim
+     vremenima u svim rendicijama, pa se segmenti seku na istim mestima.
+     */
+    private void packageHls(Path joined, HlsRendition rendition, TranscodingConsumerService.HlsPlan plan)
+            throws IOException {
+        Path renditionDirectory = plan.directory().resolve(rendition.getName());
+        Files.createDirectories(renditionDirectory);
+
+        FFmpegBuilder builder = new FFmpegBuilder()
+                .setInput(joined.toString())
+                .overrideOutputFiles(true)
+                .addOutput(renditionDirectory.resolve("index.m3u8").toString())
+                .setFormat("hls")
+                .addExtraArgs("-c", "copy")
+                .addExtraArgs("-hls_time", String.valueOf(plan.segmentSeconds()))
+                .addExtraArgs("-hls_playlist_type", "vod")
+                .addExtraArgs("-hls_segment_filename", renditionDirectory.resolve("seg_%05d.ts").toString())
+                .done();
+        new FFmpegExecutor(ffmpeg, ffprobe).createJob(builder).run();
+    }
+
+    private static FFmpegBuilder addRenditionPartOutput(FFmpegBuilder builder, TranscodingJobMessage message,
+                                                        HlsRendition rendition, TranscodingConsumerService.HlsPlan plan,
+                                                        Path outputPath, int threads) {
+        FFmpegOutputBuilder output = builder
+                .addOutput(outputPath.toString())
+                .setFormat("mp4")
+                .setVideoCodec(message.getVideoCodec())
+                .setVideoFilter("scale=-2:" + rendition.getHeight())
+                .disableAudio()
+                .addExtraArgs("-force_key_frames", "expr:gte(t,n_forced*" + plan.segmentSeconds() + ")")
+                .addExtraArgs("-sc_threshold", "0")
+                .addExtraArgs("-threads", String.valueOf(threads));
+        return TranscodingConsumerService.withRateControl(output, message, rendition.getVideoBitrate()).done();
+    }
+
+    /**
+     Dodaje audio izlaz (bez videa) kodiran iz celog izvora, koji se pri spajanju dodaje spojenom videu.
+     */
+    private static FFmpegBuilder addAudioOutput(FFmpegBuilder builder, TranscodingJobMessage message,
+                                                Path outputPath, Long bitrate) {
+        return builder
+                .addOutput(outputPath.toString())
+                .setFormat("mp4")
+                .disableVideo()
+                .setAudioCodec(message.getAudioCodec())
+                .setAudioBitRate(bitrate)
+                .setAudioChannels(2)
+                .setAudioSampleRate(44100)
+                .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL)
+                .addExtraArgs("-map", "0:a:0")
+                .done();
+    }
+
+    private static boolean hasAudio(FFmpegProbeResult probeResult) {
+        return probeResult.getStreams() != null && probeResult.getStreams().stream()
+                .anyMatch(stream -> stream.codec_type == FFmpegStream.CodecType.AUDIO);
+    }
+
+    private Path segmentDirectory(UUID videoId) {
+        return Paths.get(outputDirectory, "segments", videoId.toString());
+    }
+
+    private static Path partOutput(Path directory, int index, String renditionName) {
+        String suffix = renditionName != null ? "_" + renditionName : "";
+        return directory.resolve(String.format("out_%04d%s.mp4", index, suffix));
+    }
+
+    private static Path audioOutput(Path directory, String renditionName) {
+        return directory.resolve("audio_" + (renditionName != null ? renditionName : "main") + ".m4a");
+    }
+
+    private void discardState(UUID videoId) {
+        transcodingSegmentRepository.deleteByVideoId(videoId);
+        segmentedTranscodeRepository.deleteById(videoId);
+    }
+
+    private static void deleteRecursively(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete {}: {}", path, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to clean up {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     Konačni izlaz segmentiranog transkodiranja.
+     */
+    public record SegmentedResult(String transcodedPath, String hlsMasterPath) {
+    }
+}
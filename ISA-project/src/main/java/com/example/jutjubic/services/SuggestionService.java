@@ -0,0 +1,120 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.SuggestionDto;
+import com.example.jutjubic.repositories.VideoRepository;
+import com.example.jutjubic.utils.SuggestionTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Servis za typeahead predloge nad naslovima i tagovima videa.
+ *
+ * Predlozi se služe iz {@link SuggestionTrie} u memoriji, tako da pretraga po svakom
+ * pritisku tastera ne ide u bazu. Trie se periodično gradi u pozadini iz baze
+ * i atomično zamenjuje - čitaoci uvek vide ili staru ili novu verziju, nikada polovičnu.
+ */
+@Service
+public class SuggestionService {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionService.class);
+
+    private static final String TYPE_TITLE = "TITLE";
+    private static final String TYPE_TAG = "TAG";
+
+    @Value("${suggest.top-k:10}")
+    private int topK;
+
+    @Value("${suggest.min-prefix-length:1}")
+    private int minPrefixLength;
+
+    private final VideoRepository videoRepository;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    private final AtomicReference<SuggestionTrie> index = new AtomicReference<>(SuggestionTrie.empty());
+
+    public SuggestionService(VideoRepository videoRepository, PerformanceMetricsService performanceMetricsService) {
+        this.videoRepository = videoRepository;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Vraća predloge za dati prefiks, sortirane po broju pregleda.
+     *
+     * @param query Prefiks koji je korisnik uneo
+     * @param limit Maksimalan broj predloga (ograničen na suggest.top-k)
+     */
+    public List<SuggestionDto> suggest(String query, int limit) {
+        String prefix = SuggestionTrie.normalize(query);
+        if (prefix.length() < minPrefixLength) {
+            return List.of();
+        }
+        int validLimit = Math.min(Math.max(1, limit), topK);
+
+        long startTime = System.nanoTime();
+        List<SuggestionDto> suggestions = index.get().suggest(prefix, validLimit);
+        long responseTimeMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        performanceMetricsService.recordMetric("SUGGEST", responseTimeMs, suggestions.size());
+        return suggestions;
+    }
+
+    /**
+     * Periodično gradi novi trie iz baze i zamenjuje aktivni.
+     * Prvi build se pokreće odmah po startu aplikacije.
+     */
+    @Scheduled(initialDelayString = "${suggest.initial-delay-ms:0}",
+            fixedDelayString = "${suggest.rebuild-interval-ms:300000}")
+    public void rebuildIndex() {
+        long startTime = System.currentTimeMillis();
+        try {
+            SuggestionTrie rebuilt = buildIndex();
+            index.set(rebuilt);
+
+            long responseTime = System.currentTimeMillis() - startTime;
+            performanceMetricsService.recordMetric("SUGGEST_REBUILD", responseTime, rebuilt.size());
+            logger.info("Suggestion index rebuilt in {}ms with {} suggestions", responseTime, rebuilt.size());
+        } catch (Exception e) {
+            // Stari indeks ostaje aktivan
+            logger.error("Failed to rebuild suggestion index", e);
+        }
+    }
+
+    private SuggestionTrie buildIndex() {
+        SuggestionTrie.Builder builder = new SuggestionTrie.Builder(topK);
+        Map<String, Long> tagWeights = new HashMap<>();
+
+        for (Object[] row : videoRepository.findSuggestionSource(LocalDateTime.now())) {
+            UUID videoId = (UUID) row[0];
+            String title = (String) row[1];
+            String tags = (String) row[2];
+            long viewCount = row[3] != null ? ((Number) row[3]).longValue() : 0L;
+
+            if (title != null && !title.isBlank()) {
+                int id = builder.addSuggestion(title.trim(), TYPE_TITLE, videoId, viewCount);
+                // Naslov je dostupan i preko svake reči, ne samo od početka
+                String normalizedTitle = SuggestionTrie.normalize(title);
+                builder.addKey(normalizedTitle, id);
+                for (int i = normalizedTitle.indexOf(' '); i >= 0; i = normalizedTitle.indexOf(' ', i + 1)) {
+                    builder.addKey(normalizedTitle.substring(i + 1), id);
+                }
+            }
+
+            // +1 po videu kako bi se tagovi bez pregleda i dalje rangirali po broju videa
+            for (String tag : TagService.parseTags(tags)) {
+                tagWeights.merge(tag, viewCount + 1, Long::sum);
+            }
+        }
+
+        tagWeights.forEach((tag, weight) -> builder.addKey(tag, builder.addSuggestion(tag, TYPE_TAG, null, weight)));
+        return builder.build();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.config.CacheConfig;
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.models.VideoTag;
+import com.example.jutjubic.repositories.VideoTagRepository;
+import com.example.jutjubic.utils.CursorPageResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servis za normalizovane tagove videa (tabela video_tags).
+ *
+ * Brojači po tagu drže se u memoriji i ažuriraju inkrementalno pri svakom novom videu,
+ * tako da top-tags upit nikada ne radi GROUP BY nad celom tabelom, osim jednom pri prvom pozivu.
+ */
+@Service
+public class TagService {
+    private static final Logger logger = LoggerFactory.getLogger(TagService.class);
+
+    public static final int MAX_TAG_LENGTH = 64;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_TOP_TAGS = 100;
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private final VideoTagRepository videoTagRepository;
+    private final CacheManager cacheManager;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    /**
+     * tag -> broj videa. Null dok se ne učita iz baze pri prvom pristupu.
+     */
+    private volatile Map<String, LongAdder> tagCounts;
+
+    public TagService(VideoTagRepository videoTagRepository, CacheManager cacheManager,
+                      PerformanceMetricsService performanceMetricsService) {
+        this.videoTagRepository = videoTagRepository;
+        this.cacheManager = cacheManager;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Normalizuje comma-separated tagove: trim, lowercase, bez vodećeg '#', bez duplikata.
+     * Redosled pojavljivanja se čuva.
+     */
+    public static List<String> parseTags(String rawTags) {
+        if (rawTags == null || rawTags.isBlank()) {
+            return List.of();
+        }
+        Set<String> tags = new LinkedHashSet<>();
+        for (String part : rawTags.split(",")) {
+            String tag = normalizeTag(part);
+            if (!tag.isEmpty()) {
+                tags.add(tag);
+            }
+        }
+        return new ArrayList<>(tags);
+    }
+
+    public static String normalizeTag(String tag) {
+        if (tag == null) {
+            return "";
+        }
+        String normalized = tag.trim().toLowerCase(Locale.ROOT);
+        while (normalized.startsWith("#")) {
+            normalized = normalized.substring(1).trim();
+        }
+        return normalized.length() > MAX_TAG_LENGTH ? normalized.substring(0, MAX_TAG_LENGTH) : normalized;
+    }
+
+    /**
+     * Upisuje tagove sačuvanog videa u video_tags.
+     * Mora se pozvati unutar transakcije koja čuva video; brojači se ažuriraju tek posle commit-a.
+     */
+    @Transactional
+    public void indexTags(Video video) {
+        List<String> tags = parseTags(video.getTags());
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        List<VideoTag> videoTags = tags.stream()
+                .map(tag -> new VideoTag(tag, video))
+                .toList();
+        videoTagRepository.saveAll(videoTags);
+        logger.debug("Indexed {} tags for video {}", tags.size(), video.getId());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    incrementCounts(tags);
+                }
+            });
+        } else {
+            incrementCounts(tags);
+        }
+    }
+
+    /**
+     * Dobija stranicu videa sa datim tagom, najnoviji prvi, koristeći keyset paginaciju.
+     *
+     * @param tag Tag (normalizuje se pre pretrage)
+     * @param cursor Kursor iz prethodnog odgovora ili null za prvu stranicu
+     * @param size Veličina stranice
+     * @throws IllegalArgumentException ako kursor nije validan
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<Video> getVideosByTag(String tag, String cursor, int size) {
+        long startTime = System.currentTimeMillis();
+        String normalizedTag = normalizeTag(tag);
+        int validSize = Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+
+        // Učitavamo jedan više da bismo znali da li postoji sledeća stranica
+        Pageable limit = PageRequest.of(0, validSize + 1);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<VideoTag> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = videoTagRepository.findPageByTag(normalizedTag, now, limit);
+        } else {
+            String[] parts = decodeCursor(cursor);
+            LocalDateTime cursorCreatedAt;
+            UUID cursorVideoId;
+            try {
+                cursorCreatedAt = LocalDateTime.parse(parts[0]);
+                cursorVideoId = UUID.fromString(parts[1]);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+            rows = videoTagRepository.findPageByTagAfter(normalizedTag,
+                    cursorCreatedAt, cursorVideoId, now, limit);
+        }
+
+        boolean hasNext = rows.size() > validSize;
+        List<VideoTag> page = hasNext ? rows.subList(0, validSize) : rows;
+        List<Video> content = page.stream().map(VideoTag::getVideo).toList();
+        // Kursor se pravi iz zapisa taga (po kome se i sortira), ne iz videa čiji created_at može biti NULL
+        String nextCursor = hasNext ? encodeCursor(page.get(page.size() - 1)) : null;
+
+        performanceMetricsService.recordMetric("TAG_BROWSE", System.currentTimeMillis() - startTime, content.size());
+        return new CursorPageResponse<>(content, validSize, hasNext, nextCursor);
+    }
+
+    /**
+     * Vraća najpopularnije tagove sa brojem videa, sortirano opadajuće.
+     * Rezultat se kešira po limitu i briše pri svakoj promeni brojača.
+     */
+    @Cacheable(value = CacheConfig.TOP_TAGS_CACHE, key = "#limit")
+    public List<Map<String, Object>> getTopTags(int limit) {
+        int validLimit = Math.min(Math.max(1, limit), MAX_TOP_TAGS);
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        getTagCounts().entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(validLimit)
+                .forEach(e -> {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("tag", e.getKey());
+                    entry.put("count", e.getValue());
+                    result.add(entry);
+                });
+        return result;
+    }
+
+    private Map<String, LongAdder> getTagCounts() {
+        Map<String, LongAdder> counts = tagCounts;
+        if (counts == null) {
+            synchronized (this) {
+                counts = tagCounts;
+                if (counts == null) {
+                    counts = new ConcurrentHashMap<>();
+                    for (Object[] row : videoTagRepository.countVideosPerTag()) {
+                        LongAdder adder = new LongAdder();
+                        adder.add(((Number) row[1]).longValue());
+                        counts.put((String) row[0], adder);
+                    }
+                    tagCounts = counts;
+                    logger.info("Loaded video counts for {} tags", counts.size());
+                }
+            }
+        }
+        return counts;
+    }
+
+    private void incrementCounts(List<String> tags) {
+        Map<String, LongAdder> counts = tagCounts;
+        if (counts != null) {
+            tags.forEach(tag -> counts.computeIfAbsent(tag, k -> new LongAdder()).increment());
+        }
+        // Ako brojači još nisu učitani, prvo učitavanje će ionako pročitati novo stanje iz baze
+        Cache cache = cacheManager.getCache(CacheConfig.TOP_TAGS_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static String encodeCursor(VideoTag row) {
+        String raw = row.getCreatedAt() + CURSOR_SEPARATOR + row.getId().getVideoId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + CURSOR_SEPARATOR, 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
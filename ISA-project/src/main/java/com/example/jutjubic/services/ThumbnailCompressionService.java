@@ -49,9 +49,11 @@ public class ThumbnailCompressionService {
     private int maxHeight;
 
     private final VideoRepository videoRepository;
+    private final ResourceVersionService resourceVersionService;
 
-    public ThumbnailCompressionService(VideoRepository videoRepository) {
+    public ThumbnailCompressionService(VideoRepository videoRepository, ResourceVersionService resourceVersionService) {
         this.videoRepository = videoRepository;
+        this.resourceVersionService = resourceVersionService;
 
         // Ensure compressed directory exists
         try {
@@ -93,6 +95,7 @@ public class ThumbnailCompressionService {
                 if (compressedPath != null) {
                     video.setThumbnailCompressedPath(compressedPath);
                     videoRepository.save(video);
+                    resourceVersionService.bump(ResourceVersionService.videoKey(video.getId()), ResourceVersionService.VIDEO_LIST_KEY);
                     successCount++;
                     logger.debug("Successfully compressed thumbnail for video: {}", video.getId());
                 } else {
@@ -176,6 +179,7 @@ public class ThumbnailCompressionService {
                 if (compressedPath != null) {
                     video.setThumbnailCompressedPath(compressedPath);
                     videoRepository.save(video);
+                    resourceVersionService.bump(ResourceVersionService.videoKey(video.getId()), ResourceVersionService.VIDEO_LIST_KEY);
                     successCount++;
                 }
             } catch (Exception e) {
@@ -208,6 +212,7 @@ public class ThumbnailCompressionService {
         if (compressedPath != null) {
             video.setThumbnailCompressedPath(compressedPath);
             videoRepository.save(video);
+            resourceVersionService.bump(ResourceVersionService.videoKey(videoId), ResourceVersionService.VIDEO_LIST_KEY);
             return true;
         }
 
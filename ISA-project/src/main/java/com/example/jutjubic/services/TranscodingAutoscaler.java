@@ -0,0 +1,172 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.config.ApiLatencyFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+
+/**
+ Prilagođava broj potrošača transkodiranja i broj FFmpeg niti opterećenju servera.
+ Na svakom koraku se gledaju dubina reda, load average po jezgru i p99 API zahteva:
+ - ako je p99 iznad budžeta ili je mašina preopterećena, uklanja se jedan potrošač i FFmpeg dobija manje niti
+ - ako u redu čeka više poslova nego što ima potrošača, a ima prostora, dodaje se jedan potrošač
+ - prazan red uklanja jedan potrošač, do minimuma
+ Ako dubina reda nije poznata (broker nije dostupan), korak se preskače.
+ Broj potrošača se menja za najviše jedan po koraku, kako bi se izbeglo oscilovanje.
+ */
+@Service
+public class TranscodingAutoscaler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscodingAutoscaler.class);
+
+    // Scale up only with headroom below the limits, so one step up does not immediately trigger a step down
+    private static final double SCALE_UP_HEADROOM = 0.7;
+
+    private final TranscodingJobQueue transcodingJobQueue;
+    private final ApiLatencyFilter apiLatencyFilter;
+    private final PerformanceMetricsService performanceMetricsService;
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    @Value("${transcoding.autoscaler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transcoding.autoscaler.min-consumers:1}")
+    private int minConsumers;
+
+    @Value("${transcoding.autoscaler.max-consumers:4}")
+    private int maxConsumers;
+
+    @Value("${transcoding.autoscaler.api-p99-budget-ms:500}")
+    private long apiP99BudgetMs;
+
+    @Value("${transcoding.autoscaler.max-load-per-core:0.9}")
+    private double maxLoadPerCore;
+
+    /**
+     * Jezgra koja se ne dele FFmpeg-u, kako bi web niti uvek imale procesor.
+     */
+    @Value("${transcoding.autoscaler.reserved-cores:1}")
+    private int reservedCores;
+
+    private volatile int ffmpegThreads;
+
+    /**
+     * Broj potrošača zadat ručno (benchmark); null - broj određuje autoscaler.
+     */
+    private volatile Integer pinnedConsumers;
+
+    /**
+     * Kada fiksiran broj potrošača ističe (epoch ms), kako zaboravljen benchmark ne bi trajno isključio autoscaler.
+     */
+    private volatile long pinnedUntil;
+
+    public TranscodingAutoscaler(TranscodingJobQueue transcodingJobQueue, ApiLatencyFilter apiLatencyFilter,
+                                 PerformanceMetricsService performanceMetricsService) {
+        this.transcodingJobQueue = transcodingJobQueue;
+        this.apiLatencyFilter = apiLatencyFilter;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     Broj niti za sledeći FFmpeg posao (-threads). 0 znači da FFmpeg sam bira (autoscaler isključen).
+     */
+    public int ffmpegThreads() {
+        return enabled ? ffmpegThreads : 0;
+    }
+
+    public int maxConsumers() {
+        return maxConsumers;
+    }
+
+    /**
+     Fiksira broj potrošača i FFmpeg niti na zadato vreme, kako bi merenja bila uporediva.
+     Broj se ograničava na [1, max-consumers]; po isteku odluku ponovo donosi autoscaler.
+     */
+    public void pinConsumers(int consumers, Duration duration) {
+        consumers = Math.max(1, Math.min(maxConsumers, consumers));
+        pinnedUntil = System.currentTimeMillis() + duration.toMillis();
+        pinnedConsumers = consumers;
+        transcodingJobQueue.setConsumers(consumers);
+        ffmpegThreads = Math.max(1, (cores - reservedCores) / consumers);
+        logger.info("Transcoding consumers pinned to {} for {} min, FFmpeg threads {}",
+                consumers, duration.toMinutes(), ffmpegThreads);
+    }
+
+    /**
+     Vraća odluku o broju potrošača autoscaler-u.
+     */
+    public void releaseConsumers() {
+        pinnedConsumers = null;
+        logger.info("Transcoding consumers released to the autoscaler");
+    }
+
+    @Scheduled(fixedDelayString = "${transcoding.autoscaler.interval-ms:15000}",
+            initialDelayString = "${transcoding.autoscaler.interval-ms:15000}")
+    public void adjust() {
+        if (pinnedConsumers != null && System.currentTimeMillis() >= pinnedUntil) {
+            logger.warn("Pin of {} transcoding consumers expired", pinnedConsumers);
+            releaseConsumers();
+        }
+        if (!enabled || pinnedConsumers != null) {
+            return;
+        }
+        int current = transcodingJobQueue.activeConsumers();
+        if (current < 0) {
+            return;
+        }
+
+        long queueDepth = transcodingJobQueue.depth();
+        if (queueDepth < 0) {
+            logger.debug("Transcoding queue depth unknown, skipping autoscaler step");
+            return;
+        }
+        double loadPerCore = loadPerCore();
+        long apiP99 = apiLatencyFilter.p99Millis();
+        int target = Math.max(minConsumers, Math.min(maxConsumers, current));
+
+        boolean latencyExceeded = apiP99 > apiP99BudgetMs;
+        boolean overloaded = loadPerCore > maxLoadPerCore;
+        boolean hasHeadroom = (loadPerCore < 0 || loadPerCore < maxLoadPerCore * SCALE_UP_HEADROOM)
+                && apiP99 < apiP99BudgetMs * SCALE_UP_HEADROOM;
+
+        if (latencyExceeded || overloaded) {
+            target = Math.max(minConsumers, target - 1);
+        } else if (queueDepth > current && hasHeadroom) {
+            target = Math.min(maxConsumers, target + 1);
+        } else if (queueDepth == 0) {
+            target = Math.max(minConsumers, target - 1);
+        }
+
+        int threads = Math.max(1, (cores - reservedCores) / target);
+        if (latencyExceeded || overloaded) {
+            // Under pressure FFmpeg gets half its share, so the web threads get the rest
+            threads = Math.max(1, threads / 2);
+        }
+
+        if (target != current) {
+            transcodingJobQueue.setConsumers(target);
+            logger.info("Transcoding consumers {} -> {} (queue depth {}, load/core {}, API p99 {}ms), FFmpeg threads {}",
+                    current, target, queueDepth, String.format("%.2f", loadPerCore), apiP99, threads);
+        }
+        if (threads != ffmpegThreads) {
+            logger.debug("FFmpeg threads per job {} -> {}", ffmpegThreads, threads);
+            ffmpegThreads = threads;
+        }
+        performanceMetricsService.recordMetric("TRANSCODING_AUTOSCALE", apiP99 < 0 ? 0 : apiP99, target);
+    }
+
+    /**
+     Load average po jezgru, ili -1 ako ga platforma ne daje (Windows).
+     */
+    private double loadPerCore() {
+        double load = operatingSystem.getSystemLoadAverage();
+        return load < 0 ? -1 : load / cores;
+    }
+}
@@ -1,34 +1,37 @@
 package com.example.jutjubic.services;
 
+import com.example.jutjubic.dto.HlsRendition;
 import com.example.jutjubic.dto.TranscodingJobMessage;
 import com.example.jutjubic.models.Video;
 import com.example.jutjubic.repositories.VideoRepository;
-import com.rabbitmq.client.Channel;
 import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
+import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
- Servis je zadužen za preuzimanje poslova za video transkodiranje iz RabbitMQ reda poruka.
+ Servis je zadužen za obradu poslova za video transkodiranje preuzetih iz reda (TranscodingJobQueue).
  Servis može da radi sa više potrošača istovremeno (broj se podešava u application.properties) što
  omogućava paralelnu obradu više video zapisa koristeći FFmpeg biblioteku.
- Manualno potvrđivanje poruka se koristi kako bi se osiguralo da se poruke ne gube u slučaju grešaka tokom obrade.
+ Posao se potvrđuje tek kada je obrada završena, kako bi se osiguralo da se poslovi ne gube u slučaju grešaka tokom obrade.
  */
 @Service
 public class TranscodingConsumerService {
@@ -36,6 +39,12 @@ public class TranscodingConsumerService {
     private static final Logger logger = LoggerFactory.getLogger(TranscodingConsumerService.class);
 
     private final VideoRepository videoRepository;
+    private final ResourceVersionService resourceVersionService;
+    private final SegmentedTranscodingService segmentedTranscodingService;
+    private final PerformanceMetricsService performanceMetricsService;
+    private final TranscodingProgressPublisher progressPublisher;
+    private final TranscodingAutoscaler autoscaler;
+    private final TranscodingPresetPolicy presetPolicy;
 
     @Value("${ffmpeg.path}")
     private String ffmpegPath;
@@ -46,11 +55,40 @@ public class TranscodingConsumerService {
     @Value("${transcoding.output.directory}")
     private String outputDirectory;
 
+    /**
+     * Ako je true, MP4 i sve HLS rendicije se prave jednim FFmpeg poslom (izvor se dekodira jednom).
+     */
+    @Value("${transcoding.hls.single-decode:true}")
+    private boolean singleDecode;
+
+    /**
+     * Ako izvor već odgovara ciljnom profilu (kodeci, rezolucija, bitrate), MP4 izlaz se pravi
+     * remux-om (stream copy + faststart) umesto ponovnog kodiranja.
+     */
+    @Value("${transcoding.remux.enabled:true}")
+    private boolean remuxEnabled;
+
+    /**
+     * Koliko bitrate izvora sme da pređe ciljni, a da se izvor i dalje smatra usklađenim.
+     */
+    @Value("${transcoding.remux.bitrate-tolerance:1.1}")
+    private double remuxBitrateTolerance;
+
     private FFmpeg ffmpeg;
     private FFprobe ffprobe;
 
-    public TranscodingConsumerService(VideoRepository videoRepository) {
+    public TranscodingConsumerService(VideoRepository videoRepository, ResourceVersionService resourceVersionService,
+                                      SegmentedTranscodingService segmentedTranscodingService,
+                                      PerformanceMetricsService performanceMetricsService,
+                                      TranscodingProgressPublisher progressPublisher,
+                                      TranscodingAutoscaler autoscaler, TranscodingPresetPolicy presetPolicy) {
         this.videoRepository = videoRepository;
+        this.resourceVersionService = resourceVersionService;
+        this.segmentedTranscodingService = segmentedTranscodingService;
+        this.performanceMetricsService = performanceMetricsService;
+        this.progressPublisher = progressPublisher;
+        this.autoscaler = autoscaler;
+        this.presetPolicy = presetPolicy;
     }
 
     /**
@@ -80,28 +118,17 @@ public class TranscodingConsumerService {
     private static final int MAX_RETRY_COUNT = 3;
 
     /**
-     Metoda sluša poruke iz reda koje predstavljaju poslove za video transkodiranje.
-     Koristi se ručna potvrda poruka kako bi se obezbedila pouzdana obrada.
-     Broj potrošača koji rade paralelno podešava se preko parametra ${transcoding.consumer.concurrency}, pri čemu su uvek aktivna najmanje dva potrošača.
-     Poruke koje ne mogu uspešno da se obrade šalju se u Dead Letter Queue (DLQ) i ponovo se pokušavaju obraditi najviše MAX_RETRY_COUNT puta.
+     Obrađuje jedan posao za video transkodiranje preuzet iz reda (AmqpTranscodingJobListener ili EmbeddedTranscodingJobQueue).
+     Posao koji ne uspe se ponavlja (Outcome.RETRY) najviše MAX_RETRY_COUNT puta, a zatim se video označava kao FAILED.
      Parametri metode:
      message – poruka sa podacima o video fajlu i parametrima za transkodiranje
-     channel – RabbitMQ kanal koji se koristi za ručnu potvrdu poruka
-        deliveryTag – jedinstveni identifikator poruke koji se koristi za potvrdu
-     */
-    @RabbitListener(
-            queues = "${transcoding.queue.name}",
-            concurrency = "${transcoding.consumer.concurrency}"
-    )
-    public void processTranscodingJob(TranscodingJobMessage message,
-                                       Channel channel,
-                                       @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
-                                       @Header(name = "x-death", required = false) java.util.List<java.util.Map<String, Object>> xDeath) {
+     retryCount – broj prethodnih neuspešnih pokušaja
+     */
+    public TranscodingJobQueue.Outcome process(TranscodingJobMessage message, int retryCount) {
         String consumerThread = Thread.currentThread().getName();
-        int retryCount = getRetryCount(xDeath);
-
         logger.info("[{}] Received transcoding job for video: {} (attempt {}/{})",
                 consumerThread, message.getVideoId(), retryCount + 1, MAX_RETRY_COUNT);
+        recordQueueWait(message, retryCount);
 
         try {
             // Validate FFmpeg is available
@@ -109,77 +136,283 @@ public class TranscodingConsumerService {
                 throw new IllegalStateException("FFmpeg is not properly initialized");
             }
 
+            // Segment of a video that was already concatenated and recorded (redelivery) - nothing left to do
+            boolean segmentJob = message.getSegmentIndex() != null;
+            if (segmentJob && !segmentedTranscodingService.isActive(message.getVideoId())) {
+                Optional<Video> video = videoRepository.findVideoById(message.getVideoId());
+                if (video.isEmpty() || video.get().isTranscoded()
+                        || video.get().getProcessingState() == Video.ProcessingState.FAILED) {
+                    logger.info("[{}] Segmented transcoding of video {} is no longer active, skipping segment {}",
+                            consumerThread, message.getVideoId(), message.getSegmentIndex());
+                    return TranscodingJobQueue.Outcome.ACK;
+                }
+                // State is gone but the video is not done (e.g. the split is being retried) - retry later
+                throw new IllegalStateException("Segmented transcoding of video " + message.getVideoId()
+                        + " is not active and the video is not transcoded");
+            }
+
             // Validate source file exists
             Path sourcePath = Paths.get(message.getSourcePath());
             if (!Files.exists(sourcePath)) {
                 throw new IOException("Source video file not found: " + message.getSourcePath());
             }
 
+            // Content-addressed storage: another video with the same file may already be transcoded
+            Optional<Video> existingOutput = segmentJob ? Optional.empty()
+                    : findExistingTranscodedOutput(message.getSourcePath());
+            if (existingOutput.isPresent()) {
+                logger.info("[{}] Reusing transcoded output {} for video {}, skipping FFmpeg",
+                        consumerThread, existingOutput.get().getTranscodedVideoPath(), message.getVideoId());
+                Video existing = existingOutput.get();
+                updateVideoTranscodedStatus(message.getVideoId(), existing.getTranscodedVideoPath(),
+                        existing.getHlsMasterPath(), existing.getTranscodingPreset(), existing.getTranscodingCrf());
+                return TranscodingJobQueue.Outcome.ACK;
+            }
+
             // Perform transcoding
-            transcodeVideo(message);
+            FFmpegProbeResult probeResult = ffprobe.probe(message.getSourcePath());
+            HlsPlan hlsPlan = planHls(message, probeResult);
+
+            // x264 preset and CRF follow the backlog; segment jobs carry the choice of the whole video
+            boolean segmented = segmentedTranscodingService.shouldSegment(message, probeResult);
+            if (!segmentJob && probeResult.getFormat() != null) {
+                presetPolicy.apply(message, probeResult.getFormat().duration, segmented);
+            }
+
+            // Long videos: split into parts that all consumers transcode in parallel
+            if (segmented) {
+                segmentedTranscodingService.splitAndPublish(message, probeResult, hlsPlan);
+                performanceMetricsService.recordMetric("TRANSCODING_PATH_SEGMENTED", 0, 1);
+                logger.info("[{}] Video {} split into segment jobs", consumerThread, message.getVideoId());
+                return TranscodingJobQueue.Outcome.ACK;
+            }
+            if (segmentJob) {
+                Optional<SegmentedTranscodingService.SegmentedResult> result =
+                        segmentedTranscodingService.transcodeSegment(message, hlsPlan);
+                if (result.isPresent()) {
+                    updateVideoTranscodedStatus(message.getVideoId(), result.get().transcodedPath(),
+                            result.get().hlsMasterPath(), message.getX264Preset(), message.getCrf());
+                    // Parts are kept until the video row is saved, so a failure above is retried from CONCATENATED
+                    segmentedTranscodingService.finishConcatenation(message.getVideoId());
+                }
+                return TranscodingJobQueue.Outcome.ACK;
+            }
+
+            // Source already matches the target profile: copy the streams into the MP4 instead of re-encoding.
+            // HLS renditions are still encoded, from the same decode as the copy
+            if (canRemux(message, probeResult)) {
+                String hlsMasterPath = null;
+                if (hlsPlan == null) {
+                    remuxVideo(message);
+                } else {
+                    long remuxStart = System.currentTimeMillis();
+                    hlsMasterPath = transcodeSingleDecode(message, hlsPlan, probeResult, true);
+                    performanceMetricsService.recordMetric("TRANSCODING_PATH_REMUX",
+                            System.currentTimeMillis() - remuxStart, 1);
+                }
+                // The MP4 is a stream copy, so it has no preset or CRF of its own
+                updateVideoTranscodedStatus(message.getVideoId(), message.getOutputPath(), hlsMasterPath, null, null);
+                recordQueueToDone(message);
+                logger.info("[{}] Successfully remuxed video: {}", consumerThread, message.getVideoId());
+                return TranscodingJobQueue.Outcome.ACK;
+            }
+
+            long encodeStart = System.currentTimeMillis();
+            String hlsMasterPath;
+            if (singleDecode && hlsPlan != null) {
+                hlsMasterPath = transcodeSingleDecode(message, hlsPlan, probeResult, false);
+            } else {
+                transcodeVideo(message, probeResult);
+                hlsMasterPath = transcodeHlsLadder(message, hlsPlan);
+            }
+            long encodeMs = System.currentTimeMillis() - encodeStart;
+            performanceMetricsService.recordMetric("TRANSCODING_PATH_REENCODE", encodeMs, 1);
+            // Whole job (MP4 + HLS) in both modes, matching the realtime factors of the preset ladder
+            presetPolicy.recordResult(message, probeResult.getFormat().duration, encodeMs);
 
             // Update video entity to mark as transcoded
-            updateVideoTranscodedStatus(message.getVideoId(), message.getOutputPath());
+            updateVideoTranscodedStatus(message.getVideoId(), message.getOutputPath(), hlsMasterPath,
+                    message.getX264Preset(), message.getCrf());
+            recordQueueToDone(message);
 
-            // Acknowledge successful processing
-            channel.basicAck(deliveryTag, false);
             logger.info("[{}] Successfully transcoded video: {}", consumerThread, message.getVideoId());
+            return TranscodingJobQueue.Outcome.ACK;
 
         } catch (Exception e) {
             logger.error("[{}] Failed to transcode video {}: {}",
                     consumerThread, message.getVideoId(), e.getMessage(), e);
 
-            try {
-                if (retryCount >= MAX_RETRY_COUNT - 1) {
-                    // Max retries reached - acknowledge to prevent further processing
-                    channel.basicAck(deliveryTag, false);
-                    logger.error("[{}] Max retries ({}) reached for video: {}. Giving up.",
-                            consumerThread, MAX_RETRY_COUNT, message.getVideoId());
-                } else {
-                    // Reject message - it will be sent to DLQ and retried after TTL
-                    channel.basicNack(deliveryTag, false, false);
-                    logger.warn("[{}] Message sent to DLQ for retry. Video: {}, Attempt: {}/{}",
-                            consumerThread, message.getVideoId(), retryCount + 1, MAX_RETRY_COUNT);
-                }
-            } catch (IOException ioException) {
-                logger.error("[{}] Failed to ack/nack message: {}", consumerThread, ioException.getMessage());
+            if (retryCount >= MAX_RETRY_COUNT - 1) {
+                // Max retries reached - acknowledge to prevent further processing
+                videoRepository.transitionProcessingState(message.getVideoId(),
+                        Video.ProcessingState.TRANSCODING_QUEUED, Video.ProcessingState.FAILED,
+                        java.time.LocalDateTime.now());
+                progressPublisher.publishFailed(message.getVideoId());
+                logger.error("[{}] Max retries ({}) reached for video: {}. Giving up.",
+                        consumerThread, MAX_RETRY_COUNT, message.getVideoId());
+                return TranscodingJobQueue.Outcome.ACK;
             }
+            logger.warn("[{}] Job scheduled for retry. Video: {}, Attempt: {}/{}",
+                    consumerThread, message.getVideoId(), retryCount + 1, MAX_RETRY_COUNT);
+            return TranscodingJobQueue.Outcome.RETRY;
         }
     }
 
     /**
-     Izvlači broj pokušaja ponovne obrade poruke iz x-death zaglavlja.
-     xDeath – lista zapisa iz x-death zaglavlja
+     Beleži koliko je posao čekao u redu, po klasi prioriteta. Ponovni pokušaji se ne računaju
+     jer uključuju i TTL kašnjenje DLQ-a.
      */
-    private int getRetryCount(java.util.List<java.util.Map<String, Object>> xDeath) {
-        if (xDeath == null || xDeath.isEmpty()) {
-            return 0;
+    private void recordQueueWait(TranscodingJobMessage message, int retryCount) {
+        if (retryCount > 0 || message.getEnqueuedAt() == null) {
+            return;
         }
-        try {
-            // Get count from first death record
-            Object count = xDeath.get(0).get("count");
-            if (count instanceof Number) {
-                return ((Number) count).intValue();
-            }
-        } catch (Exception e) {
-            logger.debug("Could not parse x-death header: {}", e.getMessage());
+        long waitMs = Math.max(0, System.currentTimeMillis() - message.getEnqueuedAt());
+        performanceMetricsService.recordMetric(
+                "TRANSCODING_QUEUE_WAIT_" + TranscodingProducerService.priorityClass(message.getPriority()), waitMs, 1);
+    }
+
+    /**
+     Beleži vreme od slanja posla do završenog transkodiranja, uključujući ponovne pokušaje.
+     Segmentirani poslovi se ne računaju, jer svaki deo ima sopstveno vreme slanja.
+     */
+    private void recordQueueToDone(TranscodingJobMessage message) {
+        if (message.getEnqueuedAt() != null) {
+            performanceMetricsService.recordMetric("TRANSCODING_QUEUE_TO_DONE",
+                    Math.max(0, System.currentTimeMillis() - message.getEnqueuedAt()), 1);
         }
-        return 0;
     }
 
     /**
      Izvršava stvarni proces transkodiranja videa korišćenjem FFmpeg alata.
      message – poruka sa svim parametrima potrebnim za transkodiranje
+     probeResult – rezultat ffprobe analize izvora
      IOException – baca se u slučaju da transkodiranje ne uspe
      */
-    private void transcodeVideo(TranscodingJobMessage message) throws IOException {
+    private void transcodeVideo(TranscodingJobMessage message, FFmpegProbeResult probeResult) throws IOException {
         logger.info("Starting FFmpeg transcoding for: {}", message.getSourcePath());
-
-        // Probe source video to get information
-        FFmpegProbeResult probeResult = ffprobe.probe(message.getSourcePath());
         logger.debug("Source video duration: {} seconds", probeResult.getFormat().duration);
+        long startTime = System.currentTimeMillis();
+        double durationSeconds = probeResult.getFormat().duration;
+        int threads = autoscaler.ffmpegThreads();
+
+        // Build FFmpeg command
+        FFmpegBuilder builder = addMp4Output(new FFmpegBuilder()
+                .setInput(message.getSourcePath())
+                .overrideOutputFiles(true), message, message.getOutputPath(), threads);
+
+        // Execute transcoding
+        FFmpegExecutor executor = new FFmpegExecutor(ffmpeg, ffprobe);
 
-        // Parse resolution
+        logger.info("Executing FFmpeg transcoding...");
+        executor.createJob(builder, progressPublisher.listener(message.getVideoId(), durationSeconds)).run();
+
+        logger.info("Transcoding completed successfully. Output: {}", message.getOutputPath());
+        recordThroughput(message, durationSeconds, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     Proverava da li izvor već zadovoljava ciljni profil: isti video i audio kodek, rezolucija ne veća od
+     ciljne i bitrate u okviru tolerancije. Izvor bez audio stream-a je prihvatljiv.
+     */
+    private boolean canRemux(TranscodingJobMessage message, FFmpegProbeResult probeResult) {
+        if (!remuxEnabled || probeResult.getStreams() == null) {
+            return false;
+        }
+        FFmpegStream video = null;
+        FFmpegStream audio = null;
+        for (FFmpegStream stream : probeResult.getStreams()) {
+            if (stream.codec_type == FFmpegStream.CodecType.VIDEO && video == null) {
+                video = stream;
+            } else if (stream.codec_type == FFmpegStream.CodecType.AUDIO && audio == null) {
+                audio = stream;
+            }
+        }
+        if (video == null) {
+            return false;
+        }
+
+        int[] target = targetDimensions(message);
+        boolean videoConforms = codecName(message.getVideoCodec()).equals(video.codec_name)
+                // Players expect 8-bit 4:2:0 for H.264 in MP4
+                && (video.pix_fmt == null || "yuv420p".equals(video.pix_fmt))
+                && video.width > 0 && video.width <= target[0]
+                && video.height > 0 && video.height <= target[1]
+                && withinBitrate(videoBitrate(video, audio, probeResult), message.getVideoBitrate());
+        boolean audioConforms = audio == null
+                || (codecName(message.getAudioCodec()).equals(audio.codec_name)
+                && withinBitrate(audio.bit_rate, message.getAudioBitrate()));
+
+        if (!videoConforms || !audioConforms) {
+            logger.debug("Video {} needs re-encoding: video {} {}x{}, audio {}", message.getVideoId(),
+                    video.codec_name, video.width, video.height, audio != null ? audio.codec_name : "none");
+        }
+        return videoConforms && audioConforms;
+    }
+
+    /**
+     Bitrate video stream-a; ako ga kontejner ne navodi (npr. MKV), procenjuje se iz ukupnog bitrate-a.
+     */
+    private static long videoBitrate(FFmpegStream video, FFmpegStream audio, FFmpegProbeResult probeResult) {
+        if (video.bit_rate > 0) {
+            return video.bit_rate;
+        }
+        long total = probeResult.getFormat() != null ? probeResult.getFormat().bit_rate : 0;
+        return total > 0 && audio != null ? total - Math.max(0, audio.bit_rate) : total;
+    }
+
+    private boolean withinBitrate(long actual, Long target) {
+        // Unknown bitrate cannot be shown to conform
+        return target == null || (actual > 0 && actual <= target * remuxBitrateTolerance);
+    }
+
+    /**
+     Stream copy u ciljni kontejner sa moov box-om na početku (faststart), bez dekodiranja.
+     */
+    private void remuxVideo(TranscodingJobMessage message) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        FFmpegBuilder builder = addRemuxOutput(new FFmpegBuilder()
+                .setInput(message.getSourcePath())
+                .overrideOutputFiles(true), message);
+        new FFmpegExecutor(ffmpeg, ffprobe).createJob(builder).run();
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        performanceMetricsService.recordMetric("TRANSCODING_PATH_REMUX", elapsed, 1);
+        logger.info("Remuxed video {} without re-encoding in {}ms", message.getVideoId(), elapsed);
+    }
+
+    /**
+     Dodaje MP4 izlaz koji kopira prvi video i audio stream izvora (-c copy) sa moov box-om na početku.
+     */
+    private static FFmpegBuilder addRemuxOutput(FFmpegBuilder builder, TranscodingJobMessage message) {
+        return builder
+                .addOutput(message.getOutputPath())
+                .setFormat(message.getFormat())
+                .addExtraArgs("-map", "0:v:0", "-map", "0:a:0?")
+                .addExtraArgs("-c", "copy")
+                .addExtraArgs("-movflags", "+faststart")
+                .done();
+    }
+
+    /**
+     Naziv kodeka kako ga prijavljuje ffprobe za dati FFmpeg enkoder (libx264 -> h264).
+     */
+    private static String codecName(String encoder) {
+        if (encoder == null) {
+            return "";
+        }
+        return switch (encoder) {
+            case "libx264", "h264_nvenc", "h264_qsv" -> "h264";
+            case "libx265", "hevc_nvenc" -> "hevc";
+            case "libfdk_aac" -> "aac";
+            default -> encoder;
+        };
+    }
+
+    /**
+     Ciljna rezolucija iz poruke (npr. "1280x720"), podrazumevano 1280x720.
+     */
+    private static int[] targetDimensions(TranscodingJobMessage message) {
         int width = 1280;
         int height = 720;
         if (message.getResolution() != null && message.getResolution().contains("x")) {
@@ -187,50 +420,301 @@ public class TranscodingConsumerService {
             width = Integer.parseInt(dimensions[0]);
             height = Integer.parseInt(dimensions[1]);
         }
+        return new int[]{width, height};
+    }
 
-        // Build FFmpeg command
-        FFmpegBuilder builder = new FFmpegBuilder()
+    /**
+     Pravi HLS lestvicu zasebnim FFmpeg pokretanjem za svaku rendiciju (izvor se dekodira za svaku posebno).
+     Greška u HLS izlazu ne obara posao - MP4 izlaz je već spreman, pa se samo vraća null.
+     */
+    private String transcodeHlsLadder(TranscodingJobMessage message, HlsPlan plan) {
+        if (plan == null) {
+            return null;
+        }
+
+        int threads = autoscaler.ffmpegThreads();
+        try {
+            for (HlsRendition rendition : plan.renditions()) {
+                FFmpegBuilder builder = addHlsOutput(new FFmpegBuilder()
+                        .setInput(message.getSourcePath())
+                        .overrideOutputFiles(true), message, rendition, plan, threads);
+
+                logger.info("Executing FFmpeg HLS rendition {} for video {}", rendition.getName(), message.getVideoId());
+                new FFmpegExecutor(ffmpeg, ffprobe).createJob(builder).run();
+            }
+
+            Path masterPath = writeMasterPlaylist(plan);
+            logger.info("HLS ladder completed for video {}: {} renditions", message.getVideoId(), plan.renditions().size());
+            return masterPath.toString().replace('\\', '/');
+        } catch (Exception e) {
+            logger.error("HLS transcoding failed for video {}: {}", message.getVideoId(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     Jedan FFmpeg posao za MP4 izlaz i sve HLS rendicije: izvor se dekodira jednom, a dekodirani
+     frejmovi se skaliraju i enkoduju za svaki izlaz posebno. Kako je sve jedan proces, greška
+     bilo kog izlaza obara ceo posao, koji se onda ponavlja preko DLQ-a.
+     remux – MP4 izlaz je stream copy izvora (canRemux), a enkoduju se samo HLS rendicije
+     */
+    private String transcodeSingleDecode(TranscodingJobMessage message, HlsPlan plan, FFmpegProbeResult probeResult,
+                                         boolean remux) throws IOException {
+        long startTime = System.currentTimeMillis();
+        double durationSeconds = probeResult.getFormat().duration;
+        // The job's thread budget is shared by all encoders of the single process
+        int encoders = plan.renditions().size() + (remux ? 0 : 1);
+        int threads = autoscaler.ffmpegThreads() > 0 ? Math.max(1, autoscaler.ffmpegThreads() / encoders) : 0;
+
+        FFmpegBuilder input = new FFmpegBuilder()
                 .setInput(message.getSourcePath())
-                .overrideOutputFiles(true)
-                .addOutput(message.getOutputPath())
+                .overrideOutputFiles(true);
+        FFmpegBuilder builder = remux ? addRemuxOutput(input, message)
+                : addMp4Output(input, message, message.getOutputPath(), threads);
+        for (HlsRendition rendition : plan.renditions()) {
+            builder = addHlsOutput(builder, message, rendition, plan, threads);
+        }
+
+        logger.info("Executing single-decode FFmpeg job for video {}: {} MP4 + {} HLS renditions",
+                message.getVideoId(), remux ? "remuxed" : "encoded", plan.renditions().size());
+        new FFmpegExecutor(ffmpeg, ffprobe)
+                .createJob(builder, progressPublisher.listener(message.getVideoId(), durationSeconds))
+                .run();
+
+        Path masterPath = writeMasterPlaylist(plan);
+        logger.info("Single-decode transcoding completed for video {} in {}ms",
+                message.getVideoId(), System.currentTimeMillis() - startTime);
+        if (!remux) {
+            // A copied MP4 would overstate the encode speed
+            recordThroughput(message, durationSeconds, System.currentTimeMillis() - startTime);
+        }
+        return masterPath.toString().replace('\\', '/');
+    }
+
+    /**
+     Beleži propusnost posla: responseTimeMs je trajanje kodiranja, a resultCount broj sekundi
+     obrađenog videa, pa je brzina u odnosu na realno vreme resultCount * 1000 / responseTimeMs.
+     */
+    private void recordThroughput(TranscodingJobMessage message, double durationSeconds, long elapsedMs) {
+        int mediaSeconds = (int) Math.round(durationSeconds);
+        performanceMetricsService.recordMetric("TRANSCODING_THROUGHPUT", elapsedMs, mediaSeconds);
+        if (elapsedMs > 0) {
+            logger.info("Video {}: {}s of media in {}ms ({}x realtime)", message.getVideoId(), mediaSeconds,
+                    elapsedMs, String.format("%.2f", durationSeconds * 1000.0 / elapsedMs));
+        }
+    }
+
+    /**
+     Dodaje MP4 izlaz sa parametrima iz poruke na zadatu putanju.
+     threads – broj niti enkodera koji određuje TranscodingAutoscaler (0 - FFmpeg bira sam)
+     */
+    static FFmpegBuilder addMp4Output(FFmpegBuilder builder, TranscodingJobMessage message, String outputPath,
+                                      int threads) {
+        int[] dimensions = targetDimensions(message);
+
+        FFmpegOutputBuilder output = builder
+                .addOutput(outputPath)
                 .setFormat(message.getFormat())
                 .setVideoCodec(message.getVideoCodec())
-                .setVideoResolution(width, height)
-                .setVideoBitRate(message.getVideoBitrate())
+                .setVideoResolution(dimensions[0], dimensions[1])
                 .setAudioCodec(message.getAudioCodec())
                 .setAudioBitRate(message.getAudioBitrate())
                 .setAudioChannels(2)
                 .setAudioSampleRate(44100)
                 .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL)
-                .done();
+                .addExtraArgs("-threads", String.valueOf(threads))
+                // moov before mdat, so playback starts without fetching the end of the file
+                .addExtraArgs("-movflags", "+faststart");
+        return withRateControl(output, message, message.getVideoBitrate()).done();
+    }
 
-        // Execute transcoding
-        FFmpegExecutor executor = new FFmpegExecutor(ffmpeg, ffprobe);
+    /**
+     Kontrola protoka videa: sa preset-om koji je izabrao TranscodingPresetPolicy kodira se sa CRF-om, a ciljni
+     bitrate ostaje gornja granica (maxrate, bafer od dve sekunde); bez preset-a se kodira na ciljni bitrate.
+     */
+    static FFmpegOutputBuilder withRateControl(FFmpegOutputBuilder output, TranscodingJobMessage message,
+                                               Long bitrate) {
+        if (message.getX264Preset() == null) {
+            return output.setVideoBitRate(bitrate);
+        }
+        output.addExtraArgs("-preset", message.getX264Preset())
+                .addExtraArgs("-crf", String.valueOf(message.getCrf()));
+        if (bitrate != null) {
+            output.addExtraArgs("-maxrate", String.valueOf(bitrate))
+                    .addExtraArgs("-bufsize", String.valueOf(bitrate * 2));
+        }
+        return output;
+    }
 
-        logger.info("Executing FFmpeg transcoding...");
-        executor.createJob(builder).run();
+    /**
+     Dodaje segmentirani HLS izlaz jedne rendicije (index.m3u8 + .ts segmenti u sopstvenom poddirektorijumu).
+     Keyframe-ovi se forsiraju na granicama segmenata kako bi plejer mogao da menja rendiciju na svakom segmentu.
+     */
+    private static FFmpegBuilder addHlsOutput(FFmpegBuilder builder, TranscodingJobMessage message,
+                                              HlsRendition rendition, HlsPlan plan, int threads) throws IOException {
+        Path renditionDirectory = plan.directory().resolve(rendition.getName());
+        Files.createDirectories(renditionDirectory);
+
+        FFmpegOutputBuilder output = builder
+                .addOutput(renditionDirectory.resolve("index.m3u8").toString())
+                .setFormat("hls")
+                .setVideoCodec(message.getVideoCodec())
+                .setVideoFilter("scale=-2:" + rendition.getHeight())
+                .setAudioCodec(message.getAudioCodec())
+                .setAudioBitRate(rendition.getAudioBitrate())
+                .setAudioChannels(2)
+                .setAudioSampleRate(44100)
+                .setStrict(FFmpegBuilder.Strict.EXPERIMENTAL)
+                .addExtraArgs("-force_key_frames", "expr:gte(t,n_forced*" + plan.segmentSeconds() + ")")
+                .addExtraArgs("-sc_threshold", "0")
+                .addExtraArgs("-threads", String.valueOf(threads))
+                .addExtraArgs("-hls_time", String.valueOf(plan.segmentSeconds()))
+                .addExtraArgs("-hls_playlist_type", "vod")
+                .addExtraArgs("-hls_segment_filename", renditionDirectory.resolve("seg_%05d.ts").toString());
+        return withRateControl(output, message, rendition.getVideoBitrate()).done();
+    }
 
-        logger.info("Transcoding completed successfully. Output: {}", message.getOutputPath());
+    /**
+     Određuje HLS izlaz za posao: rendicije koje ne prelaze visinu izvora, direktorijum i trajanje segmenta.
+     Vraća null ako HLS nije zatražen ili izvor nema video stream.
+     */
+    private HlsPlan planHls(TranscodingJobMessage message, FFmpegProbeResult probeResult) {
+        if (message.getHlsOutputDirectory() == null || message.getHlsRenditions() == null
+                || message.getHlsRenditions().isEmpty()) {
+            return null;
+        }
+
+        FFmpegStream sourceVideo = probeResult.getStreams().stream()
+                .filter(stream -> stream.codec_type == FFmpegStream.CodecType.VIDEO)
+                .findFirst()
+                .orElse(null);
+        if (sourceVideo == null) {
+            logger.warn("No video stream in {}, skipping HLS output", message.getSourcePath());
+            return null;
+        }
+
+        return new HlsPlan(
+                selectRenditions(message.getHlsRenditions(), sourceVideo.height),
+                Paths.get(message.getHlsOutputDirectory()),
+                message.getHlsSegmentSeconds() != null ? message.getHlsSegmentSeconds() : 6,
+                sourceVideo.width,
+                sourceVideo.height
+        );
+    }
+
+    /**
+     Bira rendicije čija visina ne prelazi visinu izvora (bez povećavanja rezolucije); ako je izvor manji
+     od najniže rendicije, zadržava se samo najniža.
+     */
+    private static List<HlsRendition> selectRenditions(List<HlsRendition> ladder, int sourceHeight) {
+        List<HlsRendition> selected = new ArrayList<>();
+        for (HlsRendition rendition : ladder) {
+            if (sourceHeight <= 0 || rendition.getHeight() <= sourceHeight) {
+                selected.add(rendition);
+            }
+        }
+        if (selected.isEmpty()) {
+            selected.add(ladder.get(0));
+        }
+        return selected;
     }
 
     /**
-     Ažurira video entitet tako da označi da je video uspešno transkodiran i čuva putanju do transkodiranog video fajla.
+     Upisuje master playlistu. Fajl se upisuje privremeno pa premešta, kako bi se master pojavio tek
+     kada su sve rendicije spremne.
      */
-    private void updateVideoTranscodedStatus(java.util.UUID videoId, String transcodedPath) {
+    static Path writeMasterPlaylist(HlsPlan plan) throws IOException {
+        int sourceWidth = plan.sourceWidth();
+        int sourceHeight = plan.sourceHeight();
+        Path hlsDirectory = plan.directory();
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+        for (HlsRendition rendition : plan.renditions()) {
+            // Peak bandwidth estimate: nominal bitrate plus container overhead
+            long bandwidth = (long) ((rendition.getVideoBitrate() + rendition.getAudioBitrate()) * 1.1);
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bandwidth);
+            if (sourceWidth > 0 && sourceHeight > 0) {
+                int width = (int) Math.round((double) sourceWidth * rendition.getHeight() / sourceHeight / 2) * 2;
+                playlist.append(",RESOLUTION=").append(width).append('x').append(rendition.getHeight());
+            }
+            playlist.append('\n').append(rendition.getName()).append("/index.m3u8\n");
+        }
+
+        Path masterPath = hlsDirectory.resolve("master.m3u8");
+        Path tempPath = hlsDirectory.resolve("master.m3u8.tmp");
+        Files.writeString(tempPath, playlist.toString(), StandardCharsets.UTF_8);
+        Files.move(tempPath, masterPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return masterPath;
+    }
+
+    /**
+     Vraća drugi video sa istim izvornim fajlom čiji transkodirani izlaz postoji na disku.
+     */
+    private Optional<Video> findExistingTranscodedOutput(String sourcePath) {
+        return videoRepository.findFirstByVideoPathAndTranscodedTrue(sourcePath)
+                .filter(video -> video.getTranscodedVideoPath() != null
+                        && Files.exists(Paths.get(video.getTranscodedVideoPath())));
+    }
+
+    /**
+     Ažurira video entitet tako da označi da je video uspešno transkodiran i čuva putanju do transkodiranog video fajla,
+     preset i CRF sa kojima je kodiran (null - ciljni bitrate ili remux) i veličinu izlaza.
+     Isti izlaz dobijaju i ostali netranskodirani videi sa istim izvornim fajlom, pa njihovi poslovi ne pokreću FFmpeg.
+     */
+    private void updateVideoTranscodedStatus(java.util.UUID videoId, String transcodedPath, String hlsMasterPath,
+                                             String preset, Integer crf) {
         Optional<Video> optionalVideo = videoRepository.findVideoById(videoId);
+        String sourcePath = optionalVideo.map(Video::getVideoPath).orElse(null);
+        Long transcodedFileSize = fileSize(transcodedPath);
 
         if (optionalVideo.isPresent()) {
             Video video = optionalVideo.get();
             video.setTranscoded(true);
             video.setTranscodedVideoPath(transcodedPath);
+            video.setHlsMasterPath(hlsMasterPath);
+            video.setTranscodingPreset(preset);
+            video.setTranscodingCrf(crf);
+            video.setTranscodedFileSize(transcodedFileSize);
+            video.setProcessingState(Video.ProcessingState.READY);
             videoRepository.save(video);
+            resourceVersionService.bump(ResourceVersionService.videoKey(videoId), ResourceVersionService.VIDEO_LIST_KEY);
+            progressPublisher.publishCompleted(videoId);
             logger.info("Updated video {} transcoded status to true, path: {}", videoId, transcodedPath);
         } else {
             logger.warn("Video not found with ID: {}. Cannot update transcoded status.", videoId);
         }
-    }
-}
-
 
+        if (sourcePath == null) {
+            return;
+        }
+        for (Video sibling : videoRepository.findByVideoPathAndTranscodedFalse(sourcePath)) {
+            sibling.setTranscoded(true);
+            sibling.setTranscodedVideoPath(transcodedPath);
+            sibling.setHlsMasterPath(hlsMasterPath);
+            sibling.setTranscodingPreset(preset);
+            sibling.setTranscodingCrf(crf);
+            sibling.setTranscodedFileSize(transcodedFileSize);
+            if (sibling.getProcessingState() == Video.ProcessingState.TRANSCODING_QUEUED) {
+                sibling.setProcessingState(Video.ProcessingState.READY);
+            }
+            videoRepository.save(sibling);
+            resourceVersionService.bump(ResourceVersionService.videoKey(sibling.getId()));
+            logger.info("Video {} shares source {}, marked as transcoded", sibling.getId(), sourcePath);
+        }
+    }
 
+    private static Long fileSize(String path) {
+        try {
+            return path != null ? Files.size(Paths.get(path)) : null;
+        } catch (IOException e) {
+            logger.debug("Could not read size of {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
 
+    /**
+     HLS izlaz jednog posla: izabrane rendicije, direktorijum, trajanje segmenta i dimenzije izvora.
+     */
+    record HlsPlan(List<HlsRendition> renditions, Path directory, int segmentSeconds,
+                           int sourceWidth, int sourceHeight) {
+    }
+}
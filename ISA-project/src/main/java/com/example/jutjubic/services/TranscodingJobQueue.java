@@ -0,0 +1,46 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Red poslova za transkodiranje. Implementacija se bira preko transcoding.queue.mode:
+ * amqp (RabbitMQ, podrazumevano) ili embedded (trajni red na disku unutar aplikacije, za jedan čvor).
+ *
+ * Obe implementacije imaju istu semantiku: posao se isporučuje najmanje jednom, veći prioritet se
+ * preuzima prvi, posao koji nije potvrđen (pad radnika) se ponovo isporučuje, a Outcome.RETRY
+ * vraća posao u red posle kašnjenja, sa uvećanim brojem pokušaja.
+ */
+public interface TranscodingJobQueue {
+
+    /**
+     * Ishod obrade jednog posla koji vraća TranscodingConsumerService.process.
+     */
+    enum Outcome {
+        /** Posao je završen (uspešno ili konačno odbačen) i uklanja se iz reda. */
+        ACK,
+        /** Posao se ponavlja posle kašnjenja (DLQ sa TTL-om kod RabbitMQ-a). */
+        RETRY
+    }
+
+    /**
+     * Šalje grupu poslova. Metoda ne baca izuzetak; za svaku poruku vraća future koji se završava
+     * kada je posao trajno prihvaćen (publisher confirm, odnosno upis na disk), ili izuzetkom.
+     */
+    List<CompletableFuture<Void>> publish(List<TranscodingJobMessage> messages, List<String> correlationIds);
+
+    /**
+     * Broj poslova koji čekaju na preuzimanje (bez poslova koji čekaju ponovni pokušaj),
+     * ili -1 ako broj nije poznat (broker nije dostupan).
+     */
+    long depth();
+
+    /**
+     * Broj aktivnih potrošača, ili -1 ako potrošači još nisu pokrenuti.
+     */
+    int activeConsumers();
+
+    void setConsumers(int consumers);
+}
@@ -0,0 +1,160 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import com.example.jutjubic.models.TranscodingOutboxEntry;
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.repositories.TranscodingOutboxRepository;
+import com.example.jutjubic.repositories.VideoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Objavljuje poslove iz outbox-a u red za transkodiranje (RabbitMQ ili ugrađeni red).
+ *
+ * Unosi se šalju u grupama na jednom kanalu (TranscodingProducerService.publishBatch): sve poruke grupe
+ * se pošalju, pa se tek onda čeka na publisher confirm-e, tako da grupa košta jedan round trip do
+ * broker-a umesto jednog po poruci. Unos se briše tek posle
+ * potvrde; neuspeh (nack, vraćena poruka, istek čekanja) pomera sledeći pokušaj unapred (backoff).
+ * Isporuka je "najmanje jednom" - pad posle slanja a pre brisanja može da pošalje posao ponovo,
+ * što consumer podnosi jer preuzima već postojeći izlaz istog izvora.
+ *
+ * Relay radi na sopstvenoj niti, a ne na zajedničkom @Scheduled scheduler-u, pa ga dugi poslovi
+ * (faststart batch, kompresija thumbnail-ova) ne mogu zadržati.
+ */
+@Service
+public class TranscodingOutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(TranscodingOutboxRelay.class);
+
+    private static final long MAX_BACKOFF_SECONDS = 300;
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    private final TranscodingOutboxRepository transcodingOutboxRepository;
+    private final VideoRepository videoRepository;
+    private final TranscodingProducerService transcodingProducerService;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    @Value("${transcoding.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${transcoding.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${transcoding.outbox.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    private ScheduledExecutorService relayExecutor;
+
+    public TranscodingOutboxRelay(TranscodingOutboxRepository transcodingOutboxRepository,
+                                  VideoRepository videoRepository,
+                                  TranscodingProducerService transcodingProducerService,
+                                  PerformanceMetricsService performanceMetricsService) {
+        this.transcodingOutboxRepository = transcodingOutboxRepository;
+        this.videoRepository = videoRepository;
+        this.transcodingProducerService = transcodingProducerService;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    @PostConstruct
+    public void init() {
+        relayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relayExecutor.scheduleWithFixedDelay(this::relaySafely, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unpublished entries stay in the outbox and are picked up after restart
+        relayExecutor.shutdownNow();
+    }
+
+    private void relaySafely() {
+        try {
+            relay();
+        } catch (Exception e) {
+            // An exception would cancel the periodic task
+            logger.error("Outbox relay failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public void relay() {
+        List<TranscodingOutboxEntry> batch = transcodingOutboxRepository.findReady(LocalDateTime.now(),
+                PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<Long> completed = new ArrayList<>();
+        List<TranscodingOutboxEntry> pending = new ArrayList<>();
+        List<TranscodingJobMessage> messages = new ArrayList<>();
+        List<String> correlationIds = new ArrayList<>();
+
+        for (TranscodingOutboxEntry entry : batch) {
+            Optional<Video> video = videoRepository.findVideoById(entry.getVideoId());
+            if (video.isEmpty() || video.get().getProcessingState() != Video.ProcessingState.TRANSCODING_QUEUED) {
+                // Deleted, or finished through another path - nothing to publish
+                completed.add(entry.getId());
+                continue;
+            }
+            pending.add(entry);
+            messages.add(transcodingProducerService.buildTranscodingJob(video.get()));
+            correlationIds.add("outbox-" + entry.getId());
+        }
+
+        if (!pending.isEmpty()) {
+            try {
+                // A broker that is unreachable fails every future of the batch, so the whole batch backs off
+                List<CompletableFuture<Void>> confirms = transcodingProducerService.publishBatch(messages,
+                        correlationIds);
+                List<String> failures = transcodingProducerService.awaitConfirms(confirms, confirmTimeoutMs);
+                for (int i = 0; i < pending.size(); i++) {
+                    TranscodingOutboxEntry entry = pending.get(i);
+                    if (failures.get(i) != null) {
+                        recordFailure(entry, failures.get(i));
+                        continue;
+                    }
+                    completed.add(entry.getId());
+                    performanceMetricsService.recordMetric("OUTBOX_PUBLISH_LAG",
+                            Duration.between(entry.getCreatedAt(), LocalDateTime.now()).toMillis(), 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (!completed.isEmpty()) {
+            transcodingOutboxRepository.deleteAllByIdInBatch(completed);
+        }
+        performanceMetricsService.recordMetric("OUTBOX_RELAY", System.currentTimeMillis() - startTime, pending.size());
+        logger.debug("Outbox relay: {} published, {} completed, batch of {}", pending.size(), completed.size(),
+                batch.size());
+    }
+
+    private void recordFailure(TranscodingOutboxEntry entry, String error) {
+        long backoffSeconds = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(entry.getAttempts(), 16));
+        String message = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        transcodingOutboxRepository.recordFailure(entry.getId(), message,
+                LocalDateTime.now().plusSeconds(backoffSeconds));
+        logger.warn("Failed to publish transcoding job for video {} (attempt {}): {}",
+                entry.getVideoId(), entry.getAttempts() + 1, error);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.models.TranscodingOutboxEntry;
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.repositories.TranscodingOutboxRepository;
+import com.example.jutjubic.repositories.VideoRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Upis posla za transkodiranje u outbox. Objavu u red za transkodiranje radi TranscodingOutboxRelay.
+ */
+@Service
+public class TranscodingOutboxService {
+
+    private final VideoRepository videoRepository;
+    private final TranscodingOutboxRepository transcodingOutboxRepository;
+
+    public TranscodingOutboxService(VideoRepository videoRepository,
+                                    TranscodingOutboxRepository transcodingOutboxRepository) {
+        this.videoRepository = videoRepository;
+        this.transcodingOutboxRepository = transcodingOutboxRepository;
+    }
+
+    /**
+     * Prebacuje video iz THUMBNAIL_PROCESSED u TRANSCODING_QUEUED i u istoj transakciji upisuje posao
+     * u outbox. Ako je stanje već promenjeno (faza je izvršena ranije), ništa se ne upisuje.
+     *
+     * @return true ako je posao upisan
+     */
+    @Transactional
+    public boolean enqueue(UUID videoId) {
+        int changed = videoRepository.transitionProcessingState(videoId, Video.ProcessingState.THUMBNAIL_PROCESSED,
+                Video.ProcessingState.TRANSCODING_QUEUED, LocalDateTime.now());
+        if (changed == 0) {
+            return false;
+        }
+        transcodingOutboxRepository.save(new TranscodingOutboxEntry(videoId));
+        return true;
+    }
+}
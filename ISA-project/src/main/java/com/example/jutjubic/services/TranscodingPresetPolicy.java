@@ -0,0 +1,224 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ Bira x264 preset i CRF za svaki posao prema dubini reda, trajanju videa i ciljnom roku završetka (SLA).
+ Lestvica ide od najbolje kompresije (najsporiji preset) ka najbržem; bira se najsporiji preset za koji
+ procena završetka staje u preostali deo SLA-a, a ako nijedan ne staje, najbrži. Tako prazan red dobija
+ manje fajlove, a zagušen red brže kodiranje.
+ Brzina svakog preset-a (sekundi videa po sekundi kodiranja) počinje od vrednosti iz konfiguracije i
+ koriguje se eksponencijalnim prosekom izmerenih poslova.
+ Za benchmark se preset može fiksirati na zadato vreme (pinPreset), pa sva merenja koriste isti preset.
+ */
+@Service
+public class TranscodingPresetPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscodingPresetPolicy.class);
+
+    // Weight of the newest measurement in the realtime factor average
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final TranscodingJobQueue transcodingJobQueue;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    @Value("${transcoding.preset-policy.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transcoding.preset-policy.sla-minutes:30}")
+    private double slaMinutes;
+
+    /**
+     * Lestvica kao lista "preset:crf:realtime-factor", od najbolje kompresije ka najbržem kodiranju.
+     * realtime-factor je početna procena brzine celog posla (MP4 + HLS) na ovom serveru.
+     */
+    @Value("${transcoding.preset-policy.ladder:slow:21:0.5,medium:22:1.0,fast:23:1.4,veryfast:24:2.5,ultrafast:26:5.0}")
+    private List<String> ladderSpecs;
+
+    private List<Step> ladder;
+
+    // Preset fixed for a benchmark until pinnedUntil (epoch ms); null - chosen per job
+    private volatile Step pinnedStep;
+    private volatile long pinnedUntil;
+
+    public TranscodingPresetPolicy(TranscodingJobQueue transcodingJobQueue,
+                                   PerformanceMetricsService performanceMetricsService) {
+        this.transcodingJobQueue = transcodingJobQueue;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Parsira lestvicu iz konfiguracije; neispravan unos zaustavlja pokretanje aplikacije.
+     */
+    @PostConstruct
+    public void init() {
+        ladder = ladderSpecs.stream()
+                .map(String::trim)
+                .filter(spec -> !spec.isEmpty())
+                .map(TranscodingPresetPolicy::parseStep)
+                .toList();
+        if (ladder.isEmpty()) {
+            throw new IllegalStateException("transcoding.preset-policy.ladder is empty");
+        }
+        logger.info("x264 preset ladder: {}", ladder.stream().map(step -> step.preset + "/crf" + step.crf).toList());
+    }
+
+    private static Step parseStep(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 3) {
+            throw new IllegalStateException("Invalid preset ladder entry '" + spec + "', expected preset:crf:realtime-factor");
+        }
+        double realtimeFactor = Double.parseDouble(parts[2]);
+        if (realtimeFactor <= 0) {
+            throw new IllegalStateException("Realtime factor of preset " + parts[0] + " must be positive");
+        }
+        return new Step(parts[0], Integer.parseInt(parts[1]), realtimeFactor);
+    }
+
+    /**
+     Upisuje izabrani preset i CRF u poruku. Poruka koja ih već ima (deo segmentiranog posla) i
+     enkoderi koji nisu libx264 ostaju na ciljnom bitrate-u.
+
+     Procena završetka je kodiranje ovog posla plus posao koji čeka u redu, podeljen na sve potrošače,
+     uz pretpostavku da su poslovi u redu slične dužine i da će dobiti isti preset. Deo segmentiranog
+     posla se kodira na svim potrošačima paralelno, pa se i njegovo kodiranje deli brojem potrošača.
+     Rok se računa od slanja posla, pa posao koji je dugo čekao dobija brži preset.
+     */
+    public void apply(TranscodingJobMessage message, double durationSeconds, boolean segmented) {
+        if (message.getX264Preset() != null || !"libx264".equals(message.getVideoCodec())) {
+            return;
+        }
+        Step pinned = pinnedStep();
+        if (pinned != null) {
+            message.setX264Preset(pinned.preset);
+            message.setCrf(pinned.crf);
+            performanceMetricsService.recordMetric("TRANSCODING_PRESET_CHOSEN_" + metricName(pinned.preset), 0, 1);
+            logger.info("Video {}: pinned preset {} crf {}", message.getVideoId(), pinned.preset, pinned.crf);
+            return;
+        }
+        if (!enabled || durationSeconds <= 0) {
+            return;
+        }
+        // Unknown depth (broker unreachable) is treated as an empty queue
+        long depth = Math.max(0, transcodingJobQueue.depth());
+        int consumers = Math.max(1, transcodingJobQueue.activeConsumers());
+        double waitedSeconds = message.getEnqueuedAt() != null
+                ? Math.max(0, System.currentTimeMillis() - message.getEnqueuedAt()) / 1000.0 : 0;
+        double budgetSeconds = slaMinutes * 60 - waitedSeconds;
+
+        Step chosen = ladder.get(ladder.size() - 1);
+        double estimateSeconds = 0;
+        for (Step step : ladder) {
+            double encodeSeconds = durationSeconds / step.realtimeFactor;
+            estimateSeconds = (segmented ? encodeSeconds / consumers : encodeSeconds)
+                    + depth * encodeSeconds / consumers;
+            if (estimateSeconds <= budgetSeconds) {
+                chosen = step;
+                break;
+            }
+        }
+
+        message.setX264Preset(chosen.preset);
+        message.setCrf(chosen.crf);
+        performanceMetricsService.recordMetric("TRANSCODING_PRESET_CHOSEN_" + metricName(chosen.preset), 0, 1);
+        logger.info("Video {}: preset {} crf {} ({}s of media, {} queued, {} consumers, estimate {}s, budget {}s)",
+                message.getVideoId(), chosen.preset, chosen.crf, Math.round(durationSeconds), depth, consumers,
+                Math.round(estimateSeconds), Math.round(budgetSeconds));
+    }
+
+    /**
+     Beleži rezultat kodiranja celog videa (MP4 i HLS lestvica, u oba režima): koriguje brzinu preset-a i beleži metrike
+     TRANSCODING_PRESET_* (trajanje kodiranja, sekunde videa) i TRANSCODING_OUTPUT_KBPS_*
+     (postignuti prosečni bitrate MP4 izlaza u resultCount), po preset-u.
+     */
+    public void recordResult(TranscodingJobMessage message, double durationSeconds, long elapsedMs) {
+        Step step = step(message.getX264Preset());
+        if (step == null || durationSeconds <= 0 || elapsedMs <= 0) {
+            return;
+        }
+        double measured = durationSeconds * 1000.0 / elapsedMs;
+        synchronized (step) {
+            step.realtimeFactor = EWMA_ALPHA * measured + (1 - EWMA_ALPHA) * step.realtimeFactor;
+        }
+        String name = metricName(step.preset);
+        performanceMetricsService.recordMetric("TRANSCODING_PRESET_" + name, elapsedMs,
+                (int) Math.round(durationSeconds));
+
+        try {
+            long bytes = Files.size(Paths.get(message.getOutputPath()));
+            long kbps = Math.round(bytes * 8 / durationSeconds / 1000);
+            performanceMetricsService.recordMetric("TRANSCODING_OUTPUT_KBPS_" + name, 0, (int) kbps);
+            logger.info("Video {}: preset {} crf {} produced {} bytes ({} kbps), realtime factor now {}",
+                    message.getVideoId(), step.preset, message.getCrf(), bytes, kbps,
+                    String.format("%.2f", step.realtimeFactor));
+        } catch (IOException e) {
+            logger.debug("Could not read size of {}: {}", message.getOutputPath(), e.getMessage());
+        }
+    }
+
+    /**
+     Fiksira preset iz lestvice (sa njegovim CRF-om) za sve nove poslove na zadato vreme, i kada je politika isključena.
+     */
+    public void pinPreset(String preset, Duration duration) {
+        Step step = step(preset);
+        if (step == null) {
+            throw new IllegalArgumentException("Unknown x264 preset " + preset + ", expected one of "
+                    + ladder.stream().map(s -> s.preset).toList());
+        }
+        pinnedUntil = System.currentTimeMillis() + duration.toMillis();
+        pinnedStep = step;
+        logger.info("x264 preset pinned to {} crf {} for {} min", step.preset, step.crf, duration.toMinutes());
+    }
+
+    public void releasePreset() {
+        if (pinnedStep != null) {
+            pinnedStep = null;
+            logger.info("x264 preset released to the preset policy");
+        }
+    }
+
+    private Step pinnedStep() {
+        Step pinned = pinnedStep;
+        if (pinned != null && System.currentTimeMillis() >= pinnedUntil) {
+            logger.warn("Pin of x264 preset {} expired", pinned.preset);
+            pinnedStep = null;
+            return null;
+        }
+        return pinned;
+    }
+
+    private Step step(String preset) {
+        if (preset == null) {
+            return null;
+        }
+        return ladder.stream().filter(step -> step.preset.equals(preset)).findFirst().orElse(null);
+    }
+
+    private static String metricName(String preset) {
+        return preset.toUpperCase(Locale.ROOT);
+    }
+
+    private static final class Step {
+        private final String preset;
+        private final int crf;
+        private volatile double realtimeFactor;
+
+        private Step(String preset, int crf, double realtimeFactor) {
+            this.preset = preset;
+            this.crf = crf;
+            this.realtimeFactor = realtimeFactor;
+        }
+    }
+}
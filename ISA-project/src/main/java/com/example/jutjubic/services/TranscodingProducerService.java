@@ -1,17 +1,28 @@
 package com.example.jutjubic.services;
 
+import com.example.jutjubic.dto.HlsRendition;
 import com.example.jutjubic.dto.TranscodingJobMessage;
+import com.example.jutjubic.models.Video;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
 import java.nio.file.Paths;
+import java.sql.Time;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Service responsible for sending video transcoding jobs to the RabbitMQ queue.
+ * Service responsible for sending video transcoding jobs to the transcoding queue (RabbitMQ or embedded).
  * This is the producer side of the transcoding pipeline.
  */
 @Service
@@ -19,13 +30,7 @@ public class TranscodingProducerService {
 
     private static final Logger logger = LoggerFactory.getLogger(TranscodingProducerService.class);
 
-    private final RabbitTemplate rabbitTemplate;
-
-    @Value("${transcoding.exchange.name}")
-    private String exchangeName;
-
-    @Value("${transcoding.routing.key}")
-    private String routingKey;
+    private final TranscodingJobQueue transcodingJobQueue;
 
     @Value("${transcoding.output.directory}")
     private String outputDirectory;
@@ -49,21 +54,138 @@ public class TranscodingProducerService {
     @Value("${transcoding.params.format}")
     private String format;
 
-    public TranscodingProducerService(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    @Value("${transcoding.hls.enabled:true}")
+    private boolean hlsEnabled;
+
+    @Value("${transcoding.hls.output.directory:media/videos/hls/}")
+    private String hlsOutputDirectory;
+
+    @Value("${transcoding.hls.segment-seconds:6}")
+    private int hlsSegmentSeconds;
+
+    /**
+     * HLS lestvica kao lista "naziv:visina:video-bitrate:audio-bitrate", od najniže do najviše rendicije.
+     * Rendicije iznad rezolucije izvora se preskaču u consumer-u.
+     */
+    @Value("${transcoding.hls.renditions:240p:240:400000:64000,480p:480:1000000:96000,720p:720:2500000:128000,1080p:1080:5000000:192000}")
+    private List<String> hlsRenditionSpecs;
+
+    private List<HlsRendition> hlsRenditions;
+
+    // Priority thresholds: premieres close to going live first, then short jobs, long uploads last
+    @Value("${transcoding.priority.premiere-window-minutes:60}")
+    private long premiereWindowMinutes;
+
+    @Value("${transcoding.priority.short-duration-seconds:600}")
+    private long shortDurationSeconds;
+
+    @Value("${transcoding.priority.long-duration-seconds:3600}")
+    private long longDurationSeconds;
+
+    /**
+     * Prag velikog fajla; mora biti ispod VideoService.MAX_VIDEO_SIZE (200MB), inače veličina ne utiče na prioritet.
+     * Podrazumevano tri četvrtine maksimuma.
+     */
+    @Value("${transcoding.priority.large-file-bytes:157286400}")
+    private long largeFileBytes;
+
+    public static final int PRIORITY_HIGH = 9;
+    public static final int PRIORITY_NORMAL_SHORT = 6;
+    public static final int PRIORITY_NORMAL = 4;
+    public static final int PRIORITY_LOW = 2;
+
+    public TranscodingProducerService(TranscodingJobQueue transcodingJobQueue) {
+        this.transcodingJobQueue = transcodingJobQueue;
+    }
+
+    /**
+     * Parsira HLS lestvicu iz konfiguracije; neispravan unos zaustavlja pokretanje aplikacije.
+     */
+    @PostConstruct
+    public void init() {
+        hlsRenditions = hlsRenditionSpecs.stream()
+                .map(String::trim)
+                .filter(spec -> !spec.isEmpty())
+                .map(TranscodingProducerService::parseRendition)
+                .sorted(Comparator.comparingInt(HlsRendition::getHeight))
+                .toList();
+        logger.info("HLS ladder: {}", hlsRenditions.stream().map(HlsRendition::getName).toList());
+        if (largeFileBytes > VideoService.MAX_VIDEO_SIZE) {
+            logger.warn("transcoding.priority.large-file-bytes ({}) is above the upload limit ({}), "
+                    + "file size will never lower the priority", largeFileBytes, VideoService.MAX_VIDEO_SIZE);
+        }
+    }
+
+    static HlsRendition parseRendition(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length != 4) {
+            throw new IllegalStateException("Invalid HLS rendition '" + spec
+                    + "', expected name:height:video-bitrate:audio-bitrate");
+        }
+        try {
+            return new HlsRendition(parts[0], Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid HLS rendition '" + spec + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Šalje grupu poslova u red (TranscodingJobQueue), bez čekanja između poruka.
+     * Svaka poruka ima svoj correlationId; ishod (publisher confirm, odnosno upis na disk)
+     * stiže asinhrono i čita se preko awaitConfirms.
+     */
+    public List<CompletableFuture<Void>> publishBatch(List<TranscodingJobMessage> messages,
+                                                      List<String> correlationIds) {
+        long enqueuedAt = System.currentTimeMillis();
+        for (TranscodingJobMessage message : messages) {
+            message.setEnqueuedAt(enqueuedAt);
+            logger.debug("Sending transcoding job for video: {} (priority {}, {})", message.getVideoId(),
+                    message.getPriority(), priorityClass(message.getPriority()));
+        }
+        List<CompletableFuture<Void>> confirms = transcodingJobQueue.publish(messages, correlationIds);
+        logger.info("Sent batch of {} transcoding jobs", messages.size());
+        return confirms;
+    }
+
+    /**
+     * Čeka potvrde grupe sa zajedničkim rokom.
+     *
+     * @return za svaku poruku null ako je potvrđena, inače razlog neuspeha (nack, vraćena poruka, istek roka)
+     */
+    public List<String> awaitConfirms(List<CompletableFuture<Void>> confirms, long timeoutMs)
+            throws InterruptedException {
+        List<String> failures = new ArrayList<>(confirms.size());
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (CompletableFuture<Void> confirm : confirms) {
+            try {
+                long remaining = Math.max(1, deadline - System.currentTimeMillis());
+                confirm.get(remaining, TimeUnit.MILLISECONDS);
+                failures.add(null);
+            } catch (TimeoutException e) {
+                failures.add("No publisher confirm within " + timeoutMs + "ms");
+            } catch (ExecutionException e) {
+                failures.add(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        return failures;
     }
 
     /**
-     * Sends a transcoding job to the message queue.
-     * Video ID koji se transkodira i izvori direktorijum /media/videos/
+     * Pravi poruku celog posla sa parametrima iz konfiguracije, bez slanja.
      */
-    public void sendTranscodingJob(UUID videoId, String sourcePath) {
+    public TranscodingJobMessage buildTranscodingJob(Video video) {
+        UUID videoId = video.getId();
+        String sourcePath = video.getVideoPath();
+        int priority = computePriority(video.getScheduledAt(), video.getFileSize(), video.getDuration(),
+                LocalDateTime.now());
+
         // Generate output path for transcoded video
         String outputFileName = "transcoded_" + videoId.toString() + "." + format;
         String outputPath = Paths.get(outputDirectory, outputFileName).toString();
 
         // Create transcoding job message with predefined parameters
-        TranscodingJobMessage message = new TranscodingJobMessage(
+        return new TranscodingJobMessage(
                 videoId,
                 sourcePath,
                 outputPath,
@@ -72,17 +194,87 @@ public class TranscodingProducerService {
                 resolution,
                 videoBitrate,
                 audioBitrate,
-                format
+                format,
+                hlsEnabled ? Paths.get(hlsOutputDirectory, videoId.toString()).toString() : null,
+                hlsEnabled && !hlsRenditions.isEmpty() ? hlsRenditions : null,
+                hlsSegmentSeconds,
+                null,
+                null,
+                priority,
+                null,
+                null,
+                null
         );
+    }
 
-        logger.info("Sending transcoding job to queue for video: {}", videoId);
-        logger.debug("Transcoding job details: {}", message);
+    /**
+     * Šalje posao za jedan deo segmentiranog izvora bez čekanja na confirm (ponovno slanje pri oporavku).
+     */
+    public void sendSegmentJob(TranscodingJobMessage parent, int segmentIndex, int segmentCount, String partPath) {
+        publishBatch(List.of(buildSegmentJob(parent, segmentIndex, segmentCount, partPath)),
+                List.of("segment-" + parent.getVideoId() + "-" + segmentIndex));
+        logger.debug("Segment job {}/{} sent for video: {}", segmentIndex + 1, segmentCount, parent.getVideoId());
+    }
 
-        // Send message to exchange with routing key
-        rabbitTemplate.convertAndSend(exchangeName, routingKey, message);
+    /**
+     * Posao za jedan deo segmentiranog izvora. Parametri kodiranja (i izabrani preset) i izlazne putanje
+     * ostaju kao u roditeljskom poslu, pa radnik koji spaja delove zna gde ide konačni izlaz.
+     */
+    public TranscodingJobMessage buildSegmentJob(TranscodingJobMessage parent, int segmentIndex, int segmentCount,
+                                                 String partPath) {
+        return new TranscodingJobMessage(
+                parent.getVideoId(),
+                partPath,
+                parent.getOutputPath(),
+                parent.getVideoCodec(),
+                parent.getAudioCodec(),
+                parent.getResolution(),
+                parent.getVideoBitrate(),
+                parent.getAudioBitrate(),
+                parent.getFormat(),
+                parent.getHlsOutputDirectory(),
+                parent.getHlsRenditions(),
+                parent.getHlsSegmentSeconds(),
+                segmentIndex,
+                segmentCount,
+                parent.getPriority(),
+                null,
+                parent.getX264Preset(),
+                parent.getCrf()
+        );
+    }
 
-        logger.info("Transcoding job sent successfully for video: {}", videoId);
+    /**
+     * Prioritet posla (veći se preuzima prvi):
+     * premijera zakazana u narednih premiere-window-minutes (ili već objavljena) - HIGH,
+     * kratak video - viši NORMAL, dug ili veoma veliki video - LOW, sve ostalo - NORMAL.
+     * Kada trajanje nije poznato, procena se radi samo po veličini fajla.
+     */
+    int computePriority(LocalDateTime scheduledAt, long fileSize, Time duration, LocalDateTime now) {
+        if (scheduledAt != null && !scheduledAt.isAfter(now.plusMinutes(premiereWindowMinutes))) {
+            return PRIORITY_HIGH;
+        }
+
+        long durationSeconds = duration != null ? duration.toLocalTime().toSecondOfDay() : -1;
+        if (durationSeconds >= longDurationSeconds || fileSize >= largeFileBytes) {
+            return PRIORITY_LOW;
+        }
+        if (durationSeconds >= 0 && durationSeconds <= shortDurationSeconds) {
+            return PRIORITY_NORMAL_SHORT;
+        }
+        return PRIORITY_NORMAL;
     }
 
+    /**
+     * Klasa prioriteta za metrike (TRANSCODING_QUEUE_WAIT_HIGH/NORMAL/LOW).
+     */
+    public static String priorityClass(Integer priority) {
+        if (priority == null) {
+            return "NORMAL";
+        }
+        if (priority >= PRIORITY_HIGH) {
+            return "HIGH";
+        }
+        return priority >= PRIORITY_NORMAL ? "NORMAL" : "LOW";
+    }
 }
-
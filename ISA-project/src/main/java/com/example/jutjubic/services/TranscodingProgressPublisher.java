@@ -0,0 +1,95 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingProgressDto;
+import net.bramp.ffmpeg.progress.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Šalje napredak transkodiranja preko STOMP broker-a na /topic/transcoding/{videoId},
+ * pa klijenti ne moraju da proveravaju /api/videos/{id} dok video ne postane transkodiran.
+ * FFmpeg izveštava nekoliko puta u sekundi - događaji se prosleđuju najviše jednom u min-interval-ms.
+ */
+@Service
+public class TranscodingProgressPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(TranscodingProgressPublisher.class);
+
+    private static final String TOPIC_PREFIX = "/topic/transcoding/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${transcoding.progress.min-interval-ms:1000}")
+    private long minIntervalMs;
+
+    public TranscodingProgressPublisher(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * FFmpeg ProgressListener za jedan posao. Procenat i ETA se računaju iz trajanja izvora;
+     * ako ono nije poznato (0), šalju se samo fps i brzina.
+     */
+    public ProgressListener listener(UUID videoId, double durationSeconds) {
+        AtomicLong lastSent = new AtomicLong();
+        return progress -> {
+            if (progress.isEnd()) {
+                // Završetak se javlja tek kada je video označen kao transkodiran
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long last = lastSent.get();
+            if (now - last < minIntervalMs || !lastSent.compareAndSet(last, now)) {
+                return;
+            }
+
+            double outSeconds = progress.out_time_ns / 1_000_000_000.0;
+            double speed = progress.speed;
+            Double percent = null;
+            Long etaSeconds = null;
+            if (durationSeconds > 0) {
+                percent = Math.min(100.0, outSeconds * 100.0 / durationSeconds);
+                if (speed > 0) {
+                    etaSeconds = Math.max(0, Math.round((durationSeconds - outSeconds) / speed));
+                }
+            }
+            Double fps = progress.fps != null ? progress.fps.doubleValue() : null;
+
+            publish(new TranscodingProgressDto(videoId, TranscodingProgressDto.Status.RUNNING,
+                    percent, fps, speed > 0 ? (double) speed : null, etaSeconds, now));
+        };
+    }
+
+    /**
+     * Napredak segmentiranog transkodiranja: procenat završenih delova.
+     */
+    public void publishSegmentProgress(UUID videoId, long completedSegments, int totalSegments) {
+        double percent = totalSegments > 0 ? completedSegments * 100.0 / totalSegments : 0;
+        publish(new TranscodingProgressDto(videoId, TranscodingProgressDto.Status.RUNNING,
+                percent, null, null, null, System.currentTimeMillis()));
+    }
+
+    public void publishCompleted(UUID videoId) {
+        publish(new TranscodingProgressDto(videoId, TranscodingProgressDto.Status.COMPLETED,
+                100.0, null, null, 0L, System.currentTimeMillis()));
+    }
+
+    public void publishFailed(UUID videoId) {
+        publish(new TranscodingProgressDto(videoId, TranscodingProgressDto.Status.FAILED,
+                null, null, null, null, System.currentTimeMillis()));
+    }
+
+    private void publish(TranscodingProgressDto event) {
+        try {
+            messagingTemplate.convertAndSend(TOPIC_PREFIX + event.getVideoId(), event);
+        } catch (Exception e) {
+            // Napredak je informativan - greška slanja ne sme da obori transkodiranje
+            logger.debug("Failed to publish transcoding progress for video {}: {}", event.getVideoId(), e.getMessage());
+        }
+    }
+}
@@ -1,15 +1,62 @@
 package com.example.jutjubic.services;
 
+import com.example.jutjubic.utils.Mp4BoxParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 import java.sql.Time;
 
+/**
+ * Čitanje metapodataka video fajla pri upload-u.
+ * MP4/MOV fajlovi se parsiraju direktno u Javi (samo moov box), a ffprobe se
+ * pokreće samo za ostale kontejnere ili kada moov ne sadrži trajanje.
+ */
 @Service
 public class VideoMetadataService {
+    private static final Logger logger = LoggerFactory.getLogger(VideoMetadataService.class);
+
+    private final PerformanceMetricsService performanceMetricsService;
+
+    public VideoMetadataService(PerformanceMetricsService performanceMetricsService) {
+        this.performanceMetricsService = performanceMetricsService;
+    }
 
     public Time getVideoDuration(String videoPath) throws Exception {
+        long startTime = System.currentTimeMillis();
+
+        Mp4BoxParser.Mp4Metadata metadata = getMp4Metadata(videoPath);
+        if (metadata != null && metadata.getDurationSeconds() != null) {
+            performanceMetricsService.recordMetric("VIDEO_METADATA_MP4", System.currentTimeMillis() - startTime, 1);
+            logger.debug("Parsed {}: {}s, {}x{}, video={}, audio={}", videoPath, metadata.getDurationSeconds(),
+                    metadata.getWidth(), metadata.getHeight(), metadata.getVideoCodec(), metadata.getAudioCodec());
+            return toTime(metadata.getDurationSeconds());
+        }
+
+        Time duration = toTime(probeDurationWithFfprobe(videoPath));
+        performanceMetricsService.recordMetric("VIDEO_METADATA_FFPROBE", System.currentTimeMillis() - startTime, 1);
+        return duration;
+    }
+
+    /**
+     * Parsira moov box MP4/MOV fajla.
+     *
+     * @return metapodaci ili null ako fajl nije ISO-BMFF ili ne može da se pročita
+     */
+    public Mp4BoxParser.Mp4Metadata getMp4Metadata(String videoPath) {
+        try {
+            return Mp4BoxParser.parse(Paths.get(videoPath));
+        } catch (IOException e) {
+            logger.warn("Failed to parse MP4 boxes of {}: {}", videoPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private double probeDurationWithFfprobe(String videoPath) throws Exception {
         ProcessBuilder pb = new ProcessBuilder(
                 "ffprobe",
                 "-v", "error",
@@ -27,7 +74,10 @@ public class VideoMetadataService {
         String durationStr = reader.readLine();
         process.waitFor();
 
-        double totalSeconds = Double.parseDouble(durationStr);
+        return Double.parseDouble(durationStr);
+    }
+
+    private static Time toTime(double totalSeconds) {
         int hours = (int) (totalSeconds / 3600);
         int minutes = (int) ((totalSeconds % 3600) / 60);
         int seconds = (int) (totalSeconds % 60);
@@ -0,0 +1,306 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.repositories.VideoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Time;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asinhrona obrada videa posle upload-a.
+ *
+ * Upload transakcija samo upisuje red videa u stanju PROCESSING. Posle commit-a video prolazi
+ * kroz faze: čitanje metapodataka, obrada thumbnail-a i slanje posla za transkodiranje.
+ * Svaka faza ima sopstveni ograničeni executor, pa spora faza (npr. ffprobe) ne blokira ostale,
+ * a pun red odbija nove zadatke umesto da gomila memoriju.
+ *
+ * Stanje se čuva u bazi i menja uslovnim update-om (from -> to), pa je ponovno izvršavanje faze
+ * bezbedno. Videi zaglavljeni u međufazi (restart, odbijen zadatak) se periodično ponovo pokreću;
+ * video čija faza već čeka u redu ili se izvršava ne predaje se ponovo.
+ *
+ * Promena stanja menja i verziju liste videa, jer lista sadrži trajanje i stanje obrade.
+ */
+@Service
+public class VideoProcessingPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(VideoProcessingPipeline.class);
+
+    private static final List<Video.ProcessingState> INTERMEDIATE_STATES = List.of(
+            Video.ProcessingState.PROCESSING,
+            Video.ProcessingState.METADATA_EXTRACTED,
+            Video.ProcessingState.THUMBNAIL_PROCESSED
+    );
+
+    @Value("${video.pipeline.metadata.threads:2}")
+    private int metadataThreads;
+
+    @Value("${video.pipeline.metadata.queue-capacity:200}")
+    private int metadataQueueCapacity;
+
+    @Value("${video.pipeline.thumbnail.threads:1}")
+    private int thumbnailThreads;
+
+    @Value("${video.pipeline.thumbnail.queue-capacity:200}")
+    private int thumbnailQueueCapacity;
+
+    @Value("${video.pipeline.dispatch.threads:1}")
+    private int dispatchThreads;
+
+    @Value("${video.pipeline.dispatch.queue-capacity:500}")
+    private int dispatchQueueCapacity;
+
+    @Value("${video.pipeline.stall-minutes:10}")
+    private long stallMinutes;
+
+    private final VideoRepository videoRepository;
+    private final VideoMetadataService videoMetadataService;
+    private final TranscodingOutboxService transcodingOutboxService;
+    private final ResourceVersionService resourceVersionService;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    private ThreadPoolExecutor metadataExecutor;
+    private ThreadPoolExecutor thumbnailExecutor;
+    private ThreadPoolExecutor dispatchExecutor;
+
+    /**
+     * Faze koje su predate executor-u a nisu završene, kao "faza:videoId".
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public VideoProcessingPipeline(VideoRepository videoRepository, VideoMetadataService videoMetadataService,
+                                   TranscodingOutboxService transcodingOutboxService,
+                                   ResourceVersionService resourceVersionService,
+                                   PerformanceMetricsService performanceMetricsService) {
+        this.videoRepository = videoRepository;
+        this.videoMetadataService = videoMetadataService;
+        this.transcodingOutboxService = transcodingOutboxService;
+        this.resourceVersionService = resourceVersionService;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    @PostConstruct
+    public void init() {
+        metadataExecutor = newStageExecutor("pipeline-metadata", metadataThreads, metadataQueueCapacity);
+        thumbnailExecutor = newStageExecutor("pipeline-thumbnail", thumbnailThreads, thumbnailQueueCapacity);
+        dispatchExecutor = newStageExecutor("pipeline-dispatch", dispatchThreads, dispatchQueueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Unfinished videos keep their state and are resumed by recoverStalledVideos after restart
+        metadataExecutor.shutdownNow();
+        thumbnailExecutor.shutdownNow();
+        dispatchExecutor.shutdownNow();
+    }
+
+    /**
+     * Pokreće obradu videa. Ako je transakcija aktivna, obrada počinje tek posle commit-a,
+     * kako bi faze videle upisan red.
+     */
+    public void start(UUID videoId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(metadataExecutor, "metadata", videoId, () -> extractMetadata(videoId));
+                }
+            });
+        } else {
+            submit(metadataExecutor, "metadata", videoId, () -> extractMetadata(videoId));
+        }
+    }
+
+    /**
+     * Faza 1: trajanje videa (MP4 parser, ffprobe kao rezerva).
+     * Greška ovde je trajna (oštećen fajl), pa video prelazi u FAILED.
+     */
+    void extractMetadata(UUID videoId) {
+        long startTime = System.currentTimeMillis();
+        Optional<Video> optionalVideo = videoRepository.findVideoById(videoId);
+        if (optionalVideo.isEmpty() || optionalVideo.get().getProcessingState() != Video.ProcessingState.PROCESSING) {
+            return;
+        }
+        Video video = optionalVideo.get();
+
+        try {
+            if (video.getDuration() == null) {
+                Time duration = videoMetadataService.getVideoDuration(video.getVideoPath());
+                videoRepository.updateDuration(videoId, duration);
+            }
+        } catch (Exception e) {
+            logger.error("Metadata extraction failed for video {}: {}", videoId, e.getMessage());
+            transition(videoId, Video.ProcessingState.PROCESSING, Video.ProcessingState.FAILED);
+            return;
+        }
+
+        performanceMetricsService.recordMetric("PIPELINE_METADATA", System.currentTimeMillis() - startTime, 1);
+        if (transition(videoId, Video.ProcessingState.PROCESSING, Video.ProcessingState.METADATA_EXTRACTED)) {
+            submit(thumbnailExecutor, "thumbnail", videoId, () -> processThumbnail(videoId));
+        }
+    }
+
+    /**
+     * Faza 2: provera da je thumbnail čitljiva slika (čita se samo zaglavlje).
+     * Neispravan thumbnail se samo beleži - video i dalje može da se gleda.
+     */
+    void processThumbnail(UUID videoId) {
+        long startTime = System.currentTimeMillis();
+        Optional<Video> optionalVideo = videoRepository.findVideoById(videoId);
+        if (optionalVideo.isEmpty()) {
+            return;
+        }
+
+        String thumbnailPath = optionalVideo.get().getThumbnailPath();
+        if (thumbnailPath == null || !isReadableImage(Paths.get(thumbnailPath))) {
+            logger.warn("Thumbnail of video {} is missing or not a readable image: {}", videoId, thumbnailPath);
+        }
+
+        performanceMetricsService.recordMetric("PIPELINE_THUMBNAIL", System.currentTimeMillis() - startTime, 1);
+        if (transition(videoId, Video.ProcessingState.METADATA_EXTRACTED, Video.ProcessingState.THUMBNAIL_PROCESSED)) {
+            submit(dispatchExecutor, "dispatch", videoId, () -> dispatchTranscoding(videoId));
+        }
+    }
+
+    /**
+     * Faza 3: upis posla za transkodiranje u outbox, u istoj transakciji sa prelaskom u TRANSCODING_QUEUED.
+     * Objava u broker ne utiče na ovu fazu - TranscodingOutboxRelay šalje posao i ponavlja slanje dok ga
+     * broker ne potvrdi. Duplikat čiji je izlaz već transkodiran odmah postaje READY.
+     */
+    void dispatchTranscoding(UUID videoId) {
+        long startTime = System.currentTimeMillis();
+        Optional<Video> optionalVideo = videoRepository.findVideoById(videoId);
+        if (optionalVideo.isEmpty()
+                || optionalVideo.get().getProcessingState() != Video.ProcessingState.THUMBNAIL_PROCESSED) {
+            return;
+        }
+        Video video = optionalVideo.get();
+
+        if (video.isTranscoded()) {
+            logger.info("Video {} reuses transcoded output {}, no transcoding job needed",
+                    videoId, video.getTranscodedVideoPath());
+            performanceMetricsService.recordMetric("TRANSCODING_DEDUP_SKIP", 0, 1);
+            transition(videoId, Video.ProcessingState.THUMBNAIL_PROCESSED, Video.ProcessingState.READY);
+            return;
+        }
+
+        if (transcodingOutboxService.enqueue(videoId)) {
+            resourceVersionService.bump(ResourceVersionService.videoKey(videoId), ResourceVersionService.VIDEO_LIST_KEY);
+            performanceMetricsService.recordMetric("PIPELINE_DISPATCH", System.currentTimeMillis() - startTime, 1);
+        }
+    }
+
+    /**
+     * Ponovo pokreće fazu za videe koji predugo stoje u međustanju.
+     */
+    @Scheduled(fixedDelayString = "${video.pipeline.recovery-interval-ms:60000}")
+    public void recoverStalledVideos() {
+        List<UUID> stalled = videoRepository.findStalledInStates(INTERMEDIATE_STATES,
+                LocalDateTime.now().minusMinutes(stallMinutes));
+
+        for (UUID videoId : stalled) {
+            videoRepository.findVideoById(videoId).ifPresent(video -> {
+                logger.info("Resuming stalled video {} in state {}", videoId, video.getProcessingState());
+                switch (video.getProcessingState()) {
+                    case PROCESSING -> submit(metadataExecutor, "metadata", videoId, () -> extractMetadata(videoId));
+                    case METADATA_EXTRACTED -> submit(thumbnailExecutor, "thumbnail", videoId, () -> processThumbnail(videoId));
+                    case THUMBNAIL_PROCESSED -> submit(dispatchExecutor, "dispatch", videoId, () -> dispatchTranscoding(videoId));
+                    default -> {
+                        // Finished in the meantime
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean transition(UUID videoId, Video.ProcessingState from, Video.ProcessingState to) {
+        boolean changed = videoRepository.transitionProcessingState(videoId, from, to, LocalDateTime.now()) == 1;
+        if (changed) {
+            resourceVersionService.bump(ResourceVersionService.videoKey(videoId), ResourceVersionService.VIDEO_LIST_KEY);
+            logger.debug("Video {} processing state {} -> {}", videoId, from, to);
+        }
+        return changed;
+    }
+
+    private void submit(ThreadPoolExecutor executor, String stage, UUID videoId, Runnable task) {
+        String key = stage + ":" + videoId;
+        if (!inFlight.add(key)) {
+            // Already queued or running (e.g. a slow backlog seen by recoverStalledVideos)
+            logger.debug("Pipeline stage {} for video {} is already in flight", stage, videoId);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.error("Pipeline stage {} failed for video {}", stage, videoId, e);
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            // Queue is full - the video keeps its state and recoverStalledVideos picks it up later
+            performanceMetricsService.recordMetric("PIPELINE_REJECTED", 0, 1);
+            logger.warn("Pipeline stage {} is saturated, video {} deferred to recovery", stage, videoId);
+        }
+    }
+
+    private static boolean isReadableImage(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+            } finally {
+                reader.dispose();
+            }
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static ThreadPoolExecutor newStageExecutor(String name, int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.jutjubic.services;
 
 import com.example.jutjubic.dto.CreateVideoDto;
+import com.example.jutjubic.dto.VideoSummaryDto;
 import com.example.jutjubic.dto.VideoViewDto;
 import com.example.jutjubic.dto.ViewResponseDto;
 import com.example.jutjubic.models.User;
@@ -29,14 +30,21 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.sql.Time;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class VideoService {
     private static final Logger logger = LoggerFactory.getLogger(VideoService.class);
     private static final int MAX_PAGE_SIZE = 100;
-    private static final long MAX_VIDEO_SIZE = 200L * 1024 * 1024; // 200MB in bytes
+    public static final int MAX_BATCH_SIZE = 100;
+    public static final long MAX_VIDEO_SIZE = 200L * 1024 * 1024; // 200MB in bytes
     private static final String MEDIA_PATH = "media/";
     private static final String VIDEOS_DIR = "videos";
     private static final String THUMBNAILS_DIR = "thumbnails";
@@ -76,18 +84,24 @@ public class VideoService {
     private final VideoViewRepository videoViewRepository;
     private final UserService userService;
     private final PerformanceMetricsService performanceMetricsService;
-    private final TranscodingProducerService transcodingProducerService;
-    private final VideoMetadataService videoMetadataService;
+    private final VideoProcessingPipeline videoProcessingPipeline;
+    private final TagService tagService;
+    private final ResourceVersionService resourceVersionService;
+    private final VideoUploadService videoUploadService;
 
     public VideoService(VideoRepository videoRepository, VideoViewRepository videoViewRepository,
                         UserService userService, PerformanceMetricsService performanceMetricsService,
-                        TranscodingProducerService transcodingProducerService, VideoMetadataService videoMetadataService) {
+                        VideoProcessingPipeline videoProcessingPipeline,
+                        TagService tagService, ResourceVersionService resourceVersionService,
+                        VideoUploadService videoUploadService) {
         this.videoRepository = videoRepository;
         this.videoViewRepository = videoViewRepository;
         this.userService = userService;
         this.performanceMetricsService = performanceMetricsService;
-        this.transcodingProducerService = transcodingProducerService;
-        this.videoMetadataService = videoMetadataService;
+        this.videoProcessingPipeline = videoProcessingPipeline;
+        this.tagService = tagService;
+        this.resourceVersionService = resourceVersionService;
+        this.videoUploadService = videoUploadService;
 
         // Ensure directories exist
         try {
@@ -137,18 +151,59 @@ public class VideoService {
         createVideoDto.setScheduledAt(scheduledAt);
 
         // Save files and set paths
-        String videoPath = saveVideoFile(videoFile);
+        VideoUploadService.StoredFile storedVideo = saveVideoFile(videoFile);
         String thumbnailPath = saveThumbnailFile(thumbnailFile);
 
-        createVideoDto.setVideoPath(videoPath);
+        createVideoDto.setVideoPath(storedVideo.getVideoPath());
+        createVideoDto.setContentHash(storedVideo.getSha256());
         createVideoDto.setThumbnailPath(thumbnailPath);
 
         return createVideo(createVideoDto, user);
     }
 
+    /**
+     * Kreira video iz prethodno završenog streaming upload-a.
+     * Video fajl je već na konačnoj lokaciji, pa se ovde čuva samo thumbnail.
+     * Ako kreiranje ne uspe, upload se vraća u registar da bi klijent mogao da pokuša ponovo.
+     *
+     * @param uploadId ID upload-a dobijen od streaming endpoint-a
+     * @param thumbnailFile Thumbnail image file
+     * @param user Authenticated user creating the video
+     * @return Created Video entity
+     * @throws IllegalArgumentException if the upload does not exist or validation fails
+     */
+    @Transactional(rollbackFor = {Exception.class})
+    public Video createVideoFromUpload(String title, String description, String tags,
+                                       Double latitude, Double longitude,
+                                       UUID uploadId, MultipartFile thumbnailFile,
+                                       User user, LocalDateTime scheduledAt) throws Exception {
+        VideoUploadService.CompletedUpload upload = videoUploadService.claimUpload(uploadId, user.getId());
+
+        try {
+            CreateVideoDto createVideoDto = new CreateVideoDto();
+            createVideoDto.setTitle(title);
+            createVideoDto.setDescription(description);
+            createVideoDto.setTags(tags);
+            createVideoDto.setLatitude(latitude);
+            createVideoDto.setLongitude(longitude);
+            createVideoDto.setFileSize(upload.getSize());
+            createVideoDto.setScheduledAt(scheduledAt);
+            createVideoDto.setVideoPath(upload.getVideoPath());
+            createVideoDto.setContentHash(upload.getSha256());
+            createVideoDto.setThumbnailPath(saveThumbnailFile(thumbnailFile));
+
+            return createVideo(createVideoDto, user);
+        } catch (Exception e) {
+            videoUploadService.releaseUpload(uploadId, upload);
+            throw e;
+        }
+    }
+
     /**
      * Creates a new video transactionally.
      * If any error occurs during the process, the entire transaction will be rolled back.
+     * The video is saved in the PROCESSING state; metadata extraction, thumbnail processing and
+     * the transcoding job are handled by {@link VideoProcessingPipeline} after commit.
      *
      * @param createVideoDto DTO containing video creation data
      * @param user Authenticated user creating the video
@@ -174,6 +229,13 @@ public class VideoService {
             throw new RuntimeException("User not found with id: " + user.getId());
         }
 
+        // Same content uploaded before - reuse its metadata and, if available, its transcoded output
+        Video duplicate = createVideoDto.getContentHash() != null
+                ? videoRepository.findFirstByContentHashOrderByTranscodedDesc(createVideoDto.getContentHash()).orElse(null)
+                : null;
+        // Without a duplicate the duration stays null until the metadata stage of the pipeline fills it in
+        Time duration = duplicate != null ? duplicate.getDuration() : null;
+
         // Create a Video entity
         Video video = new Video(
                 createVideoDto.getTitle(),
@@ -182,7 +244,7 @@ public class VideoService {
                 createVideoDto.getThumbnailPath(),
                 null, // thumbnailCompressedPath - not needed for creation
                 createVideoDto.getFileSize() != null ? createVideoDto.getFileSize() : 0L,
-                videoMetadataService.getVideoDuration(createVideoDto.getVideoPath()),
+                duration,
                 false, // transcoded - default false
                 createVideoDto.getScheduledAt(), // scheduledAt - use value from DTO for scheduling
                 createVideoDto.getTags(),
@@ -190,6 +252,17 @@ public class VideoService {
                 managedUser
         );
 
+        video.setContentHash(createVideoDto.getContentHash());
+        video.setProcessingState(Video.ProcessingState.PROCESSING);
+        boolean reusedTranscode = duplicate != null && duplicate.isTranscoded()
+                && duplicate.getTranscodedVideoPath() != null
+                && Files.exists(Paths.get(duplicate.getTranscodedVideoPath()));
+        if (reusedTranscode) {
+            video.setTranscoded(true);
+            video.setTranscodedVideoPath(duplicate.getTranscodedVideoPath());
+            video.setHlsMasterPath(duplicate.getHlsMasterPath());
+        }
+
         // Set location if provided
         if (createVideoDto.getLatitude() != null && createVideoDto.getLongitude() != null) {
             video.setLatitude(createVideoDto.getLatitude());
@@ -200,20 +273,25 @@ public class VideoService {
         Video savedVideo = videoRepository.save(video);
         logger.debug("Video entity saved with ID: {}", savedVideo.getId());
 
+        // Index tags into video_tags within the same transaction
+        tagService.indexTags(savedVideo);
+
+        // Invalidate list ETags once committed; scheduled videos invalidate them again when they go public
+        resourceVersionService.bump(ResourceVersionService.VIDEO_LIST_KEY);
+        resourceVersionService.registerScheduledPublication(savedVideo.getScheduledAt());
+
         // Flush to ensure immediate persistence within a transaction
         videoRepository.flush();
         logger.debug("Transaction flushed - video will be committed on method completion");
 
-        // Send a transcoding job to the message queue
-        try {
-            transcodingProducerService.sendTranscodingJob(savedVideo.getId(), savedVideo.getVideoPath());
-            logger.info("Transcoding job sent for video: {}", savedVideo.getId());
-        } catch (Exception e) {
-            logger.error("Failed to send transcoding job for video {}: {}", savedVideo.getId(), e.getMessage());
-            // Don't fail the video creation if a transcoding job fails to send
-            // The video will remain with transcoded=false and can be processed later
+        if (reusedTranscode) {
+            logger.info("Video {} is a duplicate of {}, reusing transcoded output {}",
+                    savedVideo.getId(), duplicate.getId(), savedVideo.getTranscodedVideoPath());
         }
 
+        // Metadata, thumbnail and transcoding dispatch run asynchronously once the row is committed
+        videoProcessingPipeline.start(savedVideo.getId());
+
         return savedVideo;
     }
 
@@ -249,6 +327,41 @@ public class VideoService {
         return optionalVideo.orElse(null);
     }
 
+    /**
+     * Dobija više videa odjednom jednim IN upitom.
+     * Rezultat prati redosled traženih ID-eva; duplikati i nepostojeći ID-evi se preskaču.
+     *
+     * @param ids Lista ID-eva (najviše MAX_BATCH_SIZE)
+     * @return Javni prikaz pronađenih videa (kreator samo kao id i korisničko ime) u redosledu zahteva
+     * @throws IllegalArgumentException ako je traženo više od MAX_BATCH_SIZE ID-eva
+     */
+    public List<VideoSummaryDto> getVideosByIds(List<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        Set<UUID> uniqueIds = new LinkedHashSet<>(ids);
+        if (uniqueIds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Too many ids. Maximum allowed is " + MAX_BATCH_SIZE);
+        }
+
+        long startTime = System.currentTimeMillis();
+        Map<UUID, VideoSummaryDto> byId = new HashMap<>();
+        for (VideoSummaryDto video : videoRepository.findSummariesByIds(uniqueIds)) {
+            byId.put(video.getId(), video);
+        }
+
+        List<VideoSummaryDto> result = new ArrayList<>(byId.size());
+        for (UUID id : uniqueIds) {
+            VideoSummaryDto video = byId.get(id);
+            if (video != null) {
+                result.add(video);
+            }
+        }
+
+        performanceMetricsService.recordMetric("VIDEO_BATCH_GET", System.currentTimeMillis() - startTime, result.size());
+        return result;
+    }
+
     /**
      * Dobija paginiranu listu video objava za datog korisnika.
      * Sortira po vremenu kreiranja (najnovije prvo).
@@ -277,37 +390,30 @@ public class VideoService {
         Video video = videoRepository.findVideoById(videoId).get();
         video.setViewCount(videoViews);
         videoRepository.save(video);
+        resourceVersionService.bump(ResourceVersionService.videoKey(videoId), ResourceVersionService.VIDEO_LIST_KEY);
 
         return new ViewResponseDto(true, videoViews);
     }
 
     /**
-     * Saves uploaded video file to the static resources directory.
+     * Saves uploaded video file to the content-addressed video storage.
+     * If a file with the same content already exists, it is reused instead of stored again.
      *
      * @param videoFile MultipartFile containing the video
-     * @return Web-accessible path to the saved video file (e.g., "/media/videos/video_123.mp4")
+     * @return Stored file with its web-accessible path (e.g., "media/videos/&lt;sha256&gt;.mp4") and SHA-256
      * @throws IOException if file cannot be saved
      */
-    public String saveVideoFile(MultipartFile videoFile) throws IOException {
+    public VideoUploadService.StoredFile saveVideoFile(MultipartFile videoFile) throws IOException {
         if (videoFile == null || videoFile.isEmpty()) {
             throw new IllegalArgumentException("Video file is required");
         }
 
-        // Generate unique filename to avoid conflicts
-        String originalFilename = videoFile.getOriginalFilename();
-        String extension = originalFilename != null && originalFilename.contains(".")
-            ? originalFilename.substring(originalFilename.lastIndexOf("."))
-            : ".mp4";
-        String filename = "video_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8) + extension;
-
-        Path videosPath = Paths.get(MEDIA_PATH, VIDEOS_DIR);
-        Path filePath = videosPath.resolve(filename);
-
-        Files.copy(videoFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        logger.info("Video file saved: {}", filePath);
-
-        // Return the web-accessible path so it can be saved in DB and served via /media/** mapping
-        return "media/" + VIDEOS_DIR + "/" + filename;
+        VideoUploadService.StoredFile stored = videoUploadService.writeContentAddressed(
+                videoFile.getInputStream(), videoFile.getOriginalFilename(), videoFile.getSize());
+        // The shared file stays referenced until the video row is committed or rolled back
+        videoUploadService.releaseAfterTransaction(stored.getVideoPath());
+        logger.info("Video file saved: {}", stored.getVideoPath());
+        return stored;
     }
 
     /**
@@ -0,0 +1,323 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.models.Video;
+import com.example.jutjubic.repositories.VideoRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service for serving video files with HTTP Range support (RFC 9110).
+ *
+ * Single ranges and full responses are handed to Tomcat's sendfile when the connector supports it,
+ * so the bytes go from the page cache to the socket without passing through the JVM heap.
+ * Otherwise, and for multi-range responses (multipart/byteranges), the file is copied with
+ * {@link FileChannel#transferTo}.
+ */
+@Service
+public class VideoStreamingService {
+    private static final Logger logger = LoggerFactory.getLogger(VideoStreamingService.class);
+
+    private static final String MEDIA_PATH = "media";
+    private static final int CACHE_PERIOD_SECONDS = 3600;
+    private static final String MULTIPART_BOUNDARY = "JUTJUBIC_BYTERANGES";
+    private static final String CRLF = "\r\n";
+    private static final MediaType HLS_PLAYLIST_TYPE = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final MediaType HLS_SEGMENT_TYPE = MediaType.parseMediaType("video/mp2t");
+
+    // Tomcat sendfile request attributes (see org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // Below this size a plain copy is cheaper than setting up sendfile
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    // Multi-range requests above these limits get the whole file instead (RFC 9110, section 14.2)
+    private static final int MAX_RANGES = 16;
+
+    private final VideoRepository videoRepository;
+    private final PerformanceMetricsService performanceMetricsService;
+
+    public VideoStreamingService(VideoRepository videoRepository, PerformanceMetricsService performanceMetricsService) {
+        this.videoRepository = videoRepository;
+        this.performanceMetricsService = performanceMetricsService;
+    }
+
+    /**
+     * Resolves the file to stream for a video: the transcoded output when it exists,
+     * otherwise the original upload.
+     *
+     * @param videoId Video ID
+     * @param preferOriginal Serve the original upload even if a transcoded file exists
+     * @return Path to the file, or empty if the video or its file does not exist
+     */
+    public Optional<Path> resolveVideoFile(UUID videoId, boolean preferOriginal) {
+        Optional<Video> optionalVideo = videoRepository.findVideoById(videoId);
+        if (optionalVideo.isEmpty()) {
+            return Optional.empty();
+        }
+        Video video = optionalVideo.get();
+
+        if (!preferOriginal && video.isTranscoded()) {
+            Optional<Path> transcoded = toMediaPath(video.getTranscodedVideoPath());
+            if (transcoded.isPresent()) {
+                return transcoded;
+            }
+            logger.warn("Transcoded file missing for video {}, falling back to original", videoId);
+        }
+        return toMediaPath(video.getVideoPath());
+    }
+
+    /**
+     * Resolves a file of the video's HLS output (master playlist, rendition playlist or segment).
+     * The path is relative to the directory of the master playlist and may not escape it.
+     *
+     * @param videoId Video ID
+     * @param relativePath e.g. "master.m3u8", "480p/index.m3u8" or "480p/seg_00001.ts"
+     * @return Path to the file, or empty if the video has no HLS output or the file does not exist
+     */
+    public Optional<Path> resolveHlsFile(UUID videoId, String relativePath) {
+        Optional<Path> master = videoRepository.findVideoById(videoId)
+                .flatMap(video -> toMediaPath(video.getHlsMasterPath()));
+        if (master.isEmpty() || relativePath == null) {
+            return Optional.empty();
+        }
+        Path hlsDirectory = master.get().getParent();
+        String cleanPath = relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
+        Path file = hlsDirectory.resolve(cleanPath).normalize();
+        if (!file.startsWith(hlsDirectory) || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(file);
+    }
+
+    /**
+     * Writes the file to the response, honouring Range, If-Range and If-None-Match headers.
+     */
+    public void streamFile(Path file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        String etag = strongEtag(attributes);
+        MediaType contentType = contentTypeOf(file.getFileName().toString());
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, attributes.lastModifiedTime().toMillis());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + CACHE_PERIOD_SECONDS);
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<long[]> ranges = resolveRanges(request, etag, length);
+        if (ranges == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        long bytesSent;
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType.toString());
+            bytesSent = sendRange(file, 0, length - 1, request, response);
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            bytesSent = sendRange(file, start, end, request, response);
+        } else {
+            bytesSent = sendMultipartRanges(file, ranges, length, contentType, response);
+        }
+
+        performanceMetricsService.recordMetric("VIDEO_STREAM", System.currentTimeMillis() - startTime,
+                (int) Math.min(bytesSent, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the requested ranges as inclusive [start, end] pairs, an empty list for a full response,
+     * or null if the ranges cannot be satisfied.
+     * Ranges starting at or past the end of the file are dropped; if none remain the request is unsatisfiable.
+     * More than MAX_RANGES ranges, or ranges adding up to more than the file itself (overlaps),
+     * are answered with the whole file so a short header cannot multiply the response.
+     */
+    private List<long[]> resolveRanges(HttpServletRequest request, String etag, long length) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return List.of();
+        }
+        // If-Range with a different validator means the client's copy is stale: send the whole file
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return List.of();
+        }
+        try {
+            List<long[]> resolved = new ArrayList<>();
+            long totalBytes = 0;
+            for (HttpRange range : HttpRange.parseRanges(rangeHeader)) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start >= length || start > end) {
+                    continue;
+                }
+                resolved.add(new long[]{start, end});
+                totalBytes += end - start + 1;
+            }
+            if (resolved.isEmpty()) {
+                return null;
+            }
+            if (resolved.size() > MAX_RANGES || totalBytes > length) {
+                logger.debug("Ignoring Range header with {} ranges totalling {} bytes of {}",
+                        resolved.size(), totalBytes, length);
+                return List.of();
+            }
+            return resolved;
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid Range header '{}': {}", rangeHeader, e.getMessage());
+            return null;
+        }
+    }
+
+    private long sendRange(Path file, long start, long end, HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        long count = end - start + 1;
+        if (count <= 0) {
+            response.setContentLengthLong(0);
+            return 0;
+        }
+        response.setContentLengthLong(count);
+
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return count;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            transferFully(channel, start, count, target);
+        }
+        return count;
+    }
+
+    private long sendMultipartRanges(Path file, List<long[]> ranges, long length, MediaType contentType,
+                                     HttpServletResponse response) throws IOException {
+        // Build every part header first so Content-Length can be sent up front
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long[] starts = new long[ranges.size()];
+        long[] ends = new long[ranges.size()];
+        long contentLength = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            starts[i] = ranges.get(i)[0];
+            ends[i] = ranges.get(i)[1];
+            String header = CRLF + "--" + MULTIPART_BOUNDARY + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + starts[i] + "-" + ends[i] + "/" + length + CRLF
+                    + CRLF;
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headerBytes);
+            contentLength += headerBytes.length + (ends[i] - starts[i] + 1);
+        }
+        byte[] closing = (CRLF + "--" + MULTIPART_BOUNDARY + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transferFully(channel, starts[i], ends[i] - starts[i] + 1, target);
+            }
+        }
+        out.write(closing);
+        out.flush();
+        return contentLength;
+    }
+
+    private static void transferFully(FileChannel channel, long position, long count,
+                                      WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = channel.transferTo(position + transferred, count - transferred, target);
+            if (n <= 0) {
+                throw new IOException("Unexpected end of file while streaming at position " + (position + transferred));
+            }
+            transferred += n;
+        }
+    }
+
+    /**
+     * HLS types are not in the default MIME mapping, so they are resolved explicitly.
+     */
+    private static MediaType contentTypeOf(String filename) {
+        if (filename.endsWith(".m3u8")) {
+            return HLS_PLAYLIST_TYPE;
+        }
+        if (filename.endsWith(".ts")) {
+            return HLS_SEGMENT_TYPE;
+        }
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * Strong ETag from size and modification time. Media files are never modified in place
+     * (the faststart job replaces them with a new file), so equal validators mean byte-identical
+     * content and If-Range requests against a rewritten file get the full new file.
+     */
+    private static String strongEtag(BasicFileAttributes attributes) {
+        return "\"" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+    }
+
+    /**
+     * Converts a stored path (e.g. "media/videos/x.mp4" or "/media/...") to a file under the media directory.
+     * Paths that escape the media directory are rejected.
+     */
+    private static Optional<Path> toMediaPath(String storedPath) {
+        if (storedPath == null || storedPath.isBlank()) {
+            return Optional.empty();
+        }
+        String relativePath = storedPath.startsWith("/") ? storedPath.substring(1) : storedPath;
+        Path mediaRoot = Paths.get(MEDIA_PATH).toAbsolutePath().normalize();
+        Path file = Paths.get(relativePath).toAbsolutePath().normalize();
+        if (!file.startsWith(mediaRoot) || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(file);
+    }
+}
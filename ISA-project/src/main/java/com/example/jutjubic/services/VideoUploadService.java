@@ -0,0 +1,525 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.UploadResultDto;
+import com.example.jutjubic.repositories.UploadSessionRepository;
+import com.example.jutjubic.repositories.VideoRepository;
+import com.example.jutjubic.utils.Mp4Faststart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Servis za upload video fajlova bez baferovanja celog fajla.
+ *
+ * Telo zahteva se čita kroz kanal u direktni bafer i upisuje direktno na konačnu lokaciju,
+ * dok se veličina i SHA-256 računaju usput. Za razliku od multipart upload-a, fajl se
+ * na disk upisuje samo jednom (nema privremene kopije multipart resolver-a).
+ *
+ * Fajlovi se čuvaju po sadržaju (media/videos/&lt;sha256&gt;.ext): ponovni upload istog fajla
+ * ne zauzima novi prostor, a više videa deli isti videoPath. Broj referenci je broj
+ * videa (i upload-a na čekanju) sa tim videoPath-om; fajl se briše tek kada ih nema.
+ * Putanja koja je upravo vraćena iz skladišta ili preuzeta iz registra ima privremenu referencu
+ * dok video ne bude upisan u bazu. Provera referenci i brisanje, kao i deduplikacija, rade pod
+ * zaključavanjem po putanji, pa fajl na koji novi video upravo upućuje ne može biti obrisan.
+ * Pre računanja hash-a se moov box prebacuje na početak fajla (faststart), pa se fajl u skladištu
+ * posle toga više ne menja i ime mu uvek odgovara sadržaju.
+ *
+ * Završeni upload-ovi čekaju u memoriji dok ih vlasnik ne iskoristi za kreiranje videa;
+ * oni koji se ne iskoriste u roku brišu se periodično. Registar se gubi pri restartu, pa periodični
+ * pregled direktorijuma briše i fajlove po sadržaju na koje ništa ne upućuje, kao i zaostale .part
+ * fajlove prekinutih upload-a, kada su stariji od UPLOAD_TTL_MINUTES.
+ */
+@Service
+public class VideoUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(VideoUploadService.class);
+
+    private static final String MEDIA_PATH = "media/";
+    private static final String VIDEOS_DIR = "videos";
+    private static final String PART_SUFFIX = ".part";
+    private static final String DEFAULT_EXTENSION = ".mp4";
+    private static final String FASTSTART_TEMP_SUFFIX = ".faststart.tmp";
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9]{1,8}");
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int BUFFER_POOL_SIZE = 16;
+    private static final long UPLOAD_TTL_MINUTES = 60;
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Direktni baferi se skupo alociraju, pa se ponovo koriste između upload-a.
+     */
+    private final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    private final Map<UUID, CompletedUpload> completedUploads = new ConcurrentHashMap<>();
+
+    /**
+     * Privremene reference po putanji: upload-ovi čiji video još nije upisan u bazu.
+     */
+    private final Map<String, Integer> pendingReferences = new ConcurrentHashMap<>();
+    private final Object[] pathLocks = new Object[LOCK_STRIPES];
+
+    private final PerformanceMetricsService performanceMetricsService;
+    private final VideoRepository videoRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+
+    public VideoUploadService(PerformanceMetricsService performanceMetricsService, VideoRepository videoRepository,
+                              UploadSessionRepository uploadSessionRepository) {
+        this.performanceMetricsService = performanceMetricsService;
+        this.videoRepository = videoRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            pathLocks[i] = new Object();
+        }
+
+        try {
+            Files.createDirectories(Paths.get(MEDIA_PATH, VIDEOS_DIR));
+        } catch (IOException e) {
+            logger.error("Failed to create videos directory", e);
+        }
+    }
+
+    /**
+     * Upisuje tok podataka kao završen upload koji čeka kreiranje videa.
+     *
+     * @param input Telo zahteva
+     * @param originalFilename Originalni naziv fajla (za ekstenziju), može biti null
+     * @param declaredLength Content-Length zahteva ili -1 ako nije poznat
+     * @param ownerId Korisnik koji upload-uje
+     * @return Rezultat upload-a sa ID-em, veličinom i SHA-256 hash-om
+     * @throws IllegalArgumentException ako fajl prelazi maksimalnu veličinu ili je prazan
+     */
+    public UploadResultDto storeStream(InputStream input, String originalFilename, long declaredLength,
+                                       UUID ownerId) throws IOException {
+        StoredFile stored = writeContentAddressed(input, originalFilename, declaredLength);
+        try {
+            return registerCompletedUpload(ownerId, stored.getVideoPath(), stored.getSize(), stored.getSha256());
+        } finally {
+            releaseReference(stored.getVideoPath());
+        }
+    }
+
+    /**
+     * Upisuje tok podataka u skladište adresirano sadržajem.
+     * Ako fajl sa istim sadržajem već postoji, novi se odbacuje i vraća se postojeća putanja.
+     * Vraćena putanja ima privremenu referencu (vidi promoteContentAddressed).
+     *
+     * @throws IllegalArgumentException ako fajl prelazi maksimalnu veličinu ili je prazan
+     */
+    public StoredFile writeContentAddressed(InputStream input, String originalFilename,
+                                            long declaredLength) throws IOException {
+        if (declaredLength > VideoService.MAX_VIDEO_SIZE) {
+            throw new IllegalArgumentException("Video file size exceeds maximum allowed size of 200MB");
+        }
+
+        String filename = generateFilename(originalFilename);
+        Path partFile = Paths.get(MEDIA_PATH, VIDEOS_DIR, filename + PART_SUFFIX);
+
+        long startTime = System.currentTimeMillis();
+        MessageDigest digest = newSha256();
+        long size = 0;
+        ByteBuffer buffer = acquireBuffer();
+        boolean completed = false;
+
+        try (ReadableByteChannel source = Channels.newChannel(input);
+             FileChannel out = FileChannel.open(partFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > VideoService.MAX_VIDEO_SIZE) {
+                    throw new IllegalArgumentException("Video file size exceeds maximum allowed size of 200MB");
+                }
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("Video file is required");
+            }
+            out.force(false);
+            completed = true;
+        } finally {
+            releaseBuffer(buffer);
+            if (!completed) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+
+        // The digest computed while streaming is stale if faststart rewrote the file
+        String sha256 = faststart(partFile) ? sha256(partFile) : HexFormat.of().formatHex(digest.digest());
+        String videoPath = promoteContentAddressed(partFile, sha256, extensionOf(filename));
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        performanceMetricsService.recordMetric("VIDEO_STREAM_UPLOAD", elapsed, 1);
+        logger.info("Streamed upload stored at {} ({} bytes, sha256 {}) in {}ms", videoPath, size, sha256, elapsed);
+        return new StoredFile(videoPath, size, sha256);
+    }
+
+    /**
+     * Prebacuje moov box upisanog privremenog fajla ispred media podataka, kako bi se original strimovao
+     * bez preuzimanja kraja fajla dok video nije transkodiran. Poziva se pre računanja hash-a i premeštanja
+     * u skladište. Fajl koji nije MP4 ili ne može da se obradi ostaje nepromenjen.
+     *
+     * @return true ako je fajl prepisan
+     */
+    public boolean faststart(Path partFile) {
+        long startTime = System.currentTimeMillis();
+        try {
+            if (Mp4Faststart.relocateMoov(partFile)) {
+                performanceMetricsService.recordMetric("FASTSTART_UPLOAD", System.currentTimeMillis() - startTime, 1);
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            // The rewrite goes through a temp file, so the upload itself is intact
+            logger.warn("Faststart of {} failed, storing it as uploaded: {}", partFile, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * SHA-256 sadržaja fajla kao heksadecimalni string.
+     */
+    public String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = acquireBuffer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Premešta privremeni fajl na putanju izvedenu iz SHA-256 hash-a sadržaja.
+     * Ako ta putanja već postoji, sadržaj je identičan, pa se privremeni fajl briše.
+     * Putanja dobija privremenu referencu koju pozivalac oslobađa preko releaseReference ili
+     * releaseAfterTransaction, kada je upload registrovan ili video upisan u bazu.
+     *
+     * @return Web putanja fajla (npr. "media/videos/&lt;sha256&gt;.mp4")
+     */
+    public String promoteContentAddressed(Path tempFile, String sha256, String extension) throws IOException {
+        String filename = sha256 + extension;
+        Path target = Paths.get(MEDIA_PATH, VIDEOS_DIR, filename);
+        String videoPath = MEDIA_PATH + VIDEOS_DIR + "/" + filename;
+
+        synchronized (lockFor(videoPath)) {
+            if (Files.exists(target)) {
+                Files.delete(tempFile);
+                performanceMetricsService.recordMetric("VIDEO_UPLOAD_DEDUP", 0, 1);
+                logger.info("Duplicate upload detected (sha256 {}), reusing {}", sha256, target);
+            } else {
+                // Concurrent uploads of the same content may race here; rename over an identical file is harmless
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            pendingReferences.merge(videoPath, 1, Integer::sum);
+        }
+        return videoPath;
+    }
+
+    /**
+     * Oslobađa privremenu referencu putanje.
+     */
+    public void releaseReference(String videoPath) {
+        synchronized (lockFor(videoPath)) {
+            pendingReferences.computeIfPresent(videoPath, (path, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Oslobađa privremenu referencu kada se tekuća transakcija završi (posle commit-a je video vidljiv u bazi,
+     * a posle rollback-a je upload već vraćen u registar). Bez transakcije se referenca oslobađa odmah.
+     */
+    public void releaseAfterTransaction(String videoPath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            releaseReference(videoPath);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                releaseReference(videoPath);
+            }
+        });
+    }
+
+    /**
+     * Da li na putanju i dalje upućuje neki video, upload koji čeka kreiranje videa ili upload čiji
+     * video još nije upisan. Poziva se pod zaključavanjem putanje.
+     */
+    private boolean isReferenced(String videoPath) {
+        if (pendingReferences.containsKey(videoPath) || videoRepository.countByVideoPath(videoPath) > 0) {
+            return true;
+        }
+        return completedUploads.values().stream().anyMatch(upload -> upload.getVideoPath().equals(videoPath));
+    }
+
+    /**
+     * Preuzima završeni upload radi kreiranja videa. Upload se uklanja iz registra,
+     * pa ga nije moguće iskoristiti dva puta. Putanja ostaje referencirana do kraja tekuće transakcije.
+     *
+     * @throws IllegalArgumentException ako upload ne postoji ili ne pripada korisniku
+     */
+    public CompletedUpload claimUpload(UUID uploadId, UUID ownerId) {
+        CompletedUpload upload = completedUploads.get(uploadId);
+        if (upload == null || !upload.getOwnerId().equals(ownerId)) {
+            throw new IllegalArgumentException("Upload not found: " + uploadId);
+        }
+        synchronized (lockFor(upload.getVideoPath())) {
+            if (!completedUploads.remove(uploadId, upload)) {
+                throw new IllegalArgumentException("Upload not found: " + uploadId);
+            }
+            pendingReferences.merge(upload.getVideoPath(), 1, Integer::sum);
+        }
+        releaseAfterTransaction(upload.getVideoPath());
+        return upload;
+    }
+
+    /**
+     * Vraća upload u registar ako kreiranje videa nije uspelo, kako bi klijent mogao da pokuša ponovo.
+     */
+    public void releaseUpload(UUID uploadId, CompletedUpload upload) {
+        completedUploads.put(uploadId, upload);
+    }
+
+    /**
+     * Registruje fajl koji je već upisan na konačnu lokaciju (npr. iz resumable upload-a).
+     */
+    public UploadResultDto registerCompletedUpload(UUID ownerId, String videoPath, long size, String sha256) {
+        UUID uploadId = UUID.randomUUID();
+        completedUploads.put(uploadId, new CompletedUpload(ownerId, videoPath, size, sha256, Instant.now()));
+        return new UploadResultDto(uploadId, size, sha256);
+    }
+
+    /**
+     * Briše upload-ove koji nisu iskorišćeni za kreiranje videa u roku od UPLOAD_TTL_MINUTES.
+     */
+    @Scheduled(fixedDelay = 15 * 60 * 1000)
+    public void cleanupExpiredUploads() {
+        Instant cutoff = Instant.now().minus(UPLOAD_TTL_MINUTES, ChronoUnit.MINUTES);
+        completedUploads.forEach((uploadId, upload) -> {
+            if (!upload.getCompletedAt().isBefore(cutoff)) {
+                return;
+            }
+            // Deduplication and claims of the same path wait, so the check and the delete are atomic
+            synchronized (lockFor(upload.getVideoPath())) {
+                if (!completedUploads.remove(uploadId, upload)) {
+                    return;
+                }
+                if (isReferenced(upload.getVideoPath())) {
+                    logger.info("Expired upload {} shares {} with other videos, keeping file", uploadId,
+                            upload.getVideoPath());
+                    return;
+                }
+                try {
+                    Files.deleteIfExists(Paths.get(upload.getVideoPath()));
+                    logger.info("Deleted unclaimed upload {} ({})", uploadId, upload.getVideoPath());
+                } catch (IOException e) {
+                    logger.warn("Failed to delete unclaimed upload {}: {}", uploadId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Briše fajlove u media/videos koji su ostali bez vlasnika, npr. posle restarta koji je ispraznio registar
+     * završenih upload-a: fajlove po sadržaju na koje ne upućuje nijedan video ni upload, i .part (i faststart .tmp) fajlove
+     * prekinutih upload-a. Briše se samo ono što nije menjano duže od UPLOAD_TTL_MINUTES; .part fajlovi
+     * resumable sesija se preskaču dok sesija postoji (njih briše ResumableUploadService po svom roku).
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 15 * 60 * 1000)
+    public void sweepOrphanedFiles() {
+        Instant cutoff = Instant.now().minus(UPLOAD_TTL_MINUTES, ChronoUnit.MINUTES);
+        long startTime = System.currentTimeMillis();
+        int deleted = 0;
+
+        try (Stream<Path> files = Files.list(Paths.get(MEDIA_PATH, VIDEOS_DIR))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (isOlderThan(file, cutoff) && deleteIfOrphaned(file)) {
+                        deleted++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Failed to sweep {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to list {}: {}", Paths.get(MEDIA_PATH, VIDEOS_DIR), e.getMessage());
+            return;
+        }
+
+        performanceMetricsService.recordMetric("VIDEO_UPLOAD_SWEEP", System.currentTimeMillis() - startTime, deleted);
+        if (deleted > 0) {
+            logger.info("Swept {} orphaned upload files", deleted);
+        }
+    }
+
+    private boolean deleteIfOrphaned(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.endsWith(PART_SUFFIX) || name.endsWith(FASTSTART_TEMP_SUFFIX)) {
+            if (name.endsWith(PART_SUFFIX) && uploadSessionRepository.existsByVideoPath(
+                    MEDIA_PATH + VIDEOS_DIR + "/" + name.substring(0, name.length() - PART_SUFFIX.length()))) {
+                return false;
+            }
+            boolean removed = Files.deleteIfExists(file);
+            if (removed) {
+                logger.info("Deleted abandoned upload file {}", file);
+            }
+            return removed;
+        }
+        if (!CONTENT_ADDRESSED_NAME.matcher(name).matches()) {
+            return false;
+        }
+
+        String videoPath = MEDIA_PATH + VIDEOS_DIR + "/" + name;
+        // Same lock as deduplication and claims, so a path that is being reused cannot be deleted
+        synchronized (lockFor(videoPath)) {
+            if (isReferenced(videoPath)) {
+                return false;
+            }
+            boolean removed = Files.deleteIfExists(file);
+            if (removed) {
+                logger.info("Deleted unreferenced upload {}", videoPath);
+            }
+            return removed;
+        }
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) throws IOException {
+        return Files.isRegularFile(file) && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+    }
+
+    private Object lockFor(String videoPath) {
+        return pathLocks[Math.floorMod(videoPath.hashCode(), LOCK_STRIPES)];
+    }
+
+    static String generateFilename(String originalFilename) {
+        return "video_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8)
+                + extensionOf(originalFilename);
+    }
+
+    static String extensionOf(String filename) {
+        String extension = filename != null && filename.contains(".")
+                ? filename.substring(filename.lastIndexOf(".")).toLowerCase(Locale.ROOT)
+                : DEFAULT_EXTENSION;
+        // Only keep simple extensions - the name comes from a client header
+        return extension.matches("\\.[a-z0-9]{1,8}") ? extension : DEFAULT_EXTENSION;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+
+    /**
+     * Fajl upisan u skladište adresirano sadržajem.
+     */
+    public static final class StoredFile {
+        private final String videoPath;
+        private final long size;
+        private final String sha256;
+
+        StoredFile(String videoPath, long size, String sha256) {
+            this.videoPath = videoPath;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        public String getVideoPath() {
+            return videoPath;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    /**
+     * Završeni upload koji čeka da bude iskorišćen za kreiranje videa.
+     */
+    public static final class CompletedUpload {
+        private final UUID ownerId;
+        private final String videoPath;
+        private final long size;
+        private final String sha256;
+        private final Instant completedAt;
+
+        CompletedUpload(UUID ownerId, String videoPath, long size, String sha256, Instant completedAt) {
+            this.ownerId = ownerId;
+            this.videoPath = videoPath;
+            this.size = size;
+            this.sha256 = sha256;
+            this.completedAt = completedAt;
+        }
+
+        public UUID getOwnerId() {
+            return ownerId;
+        }
+
+        public String getVideoPath() {
+            return videoPath;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public Instant getCompletedAt() {
+            return completedAt;
+        }
+    }
+}
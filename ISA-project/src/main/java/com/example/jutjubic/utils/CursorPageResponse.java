@@ -0,0 +1,29 @@
+package com.example.jutjubic.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Paginated response for keyset (cursor) pagination.
+ * Unlike {@link PageResponse} it carries no total count - the client follows
+ * {@code nextCursor} until {@code hasNext} is false.
+ * @param <T> The type of content in the page
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+
+    // ----- Content -----
+    private List<T> content;
+
+    // ----- Cursor Metadata -----
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+}
@@ -0,0 +1,301 @@
+package com.example.jutjubic.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable append-only record log made of fixed-size memory-mapped segment files.
+ *
+ * Each record is framed as {@code length, crc32c, bytes}; a zero length marks the end of a segment,
+ * and a bad checksum (torn write after a crash) ends replay of that segment. {@link #append} returns
+ * only after the written range is forced to disk.
+ *
+ * When the active segment is full, the records the owner still needs ({@code liveRecords}) are copied
+ * into a new segment and the older segments are deleted; while live records fill more than half a
+ * segment, a new segment is started without copying instead. Every segment header stores the first segment
+ * that is still live; it is updated in the newest segment only after the copy is on disk, so a crash
+ * mid-roll replays the old segments as well (records are replayed in order, duplicates are the owner's
+ * to resolve).
+ *
+ * Not thread-safe - the owner serializes access.
+ */
+public final class MappedAppendLog implements Closeable {
+
+    private static final int MAGIC = 0x4A514C31; // "JQL1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FIRST_LIVE_OFFSET = 8;
+    private static final int FRAME_SIZE = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.log");
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final Supplier<List<byte[]>> liveRecords;
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+    private long firstLiveSegment;
+    private long activeSegment;
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+
+    private MappedAppendLog(Path directory, int segmentBytes, Supplier<List<byte[]>> liveRecords) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.liveRecords = liveRecords;
+    }
+
+    /**
+     * Opens (or creates) the log in {@code directory} and replays every live record in append order.
+     * The buffers passed to {@code replay} are views of the mapped file and must be copied if kept.
+     *
+     * @param liveRecords records that must survive a segment roll, asked for when the active segment is full
+     */
+    public static MappedAppendLog open(Path directory, int segmentBytes, Consumer<ByteBuffer> replay,
+                                       Supplier<List<byte[]>> liveRecords) throws IOException {
+        if (segmentBytes < HEADER_SIZE + FRAME_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        MappedAppendLog log = new MappedAppendLog(directory, segmentBytes, liveRecords);
+        log.recover(replay);
+        return log;
+    }
+
+    /**
+     * Appends the records and forces them to disk. Records of one call never straddle a roll,
+     * so they are either all replayed after a crash or (torn tail) a prefix of them is.
+     */
+    public void append(List<byte[]> records) throws IOException {
+        long needed = 0;
+        for (byte[] record : records) {
+            if (FRAME_SIZE + record.length > segmentBytes - HEADER_SIZE) {
+                throw new IOException("Record of " + record.length + " bytes does not fit a segment");
+            }
+            needed += FRAME_SIZE + record.length;
+        }
+        if (needed > active.remaining()) {
+            List<byte[]> live = liveRecords.get();
+            long liveBytes = live.stream().mapToLong(record -> FRAME_SIZE + record.length).sum();
+            if (liveBytes <= (segmentBytes - HEADER_SIZE) / 2) {
+                roll(live);
+            } else {
+                // Mostly live data - copying it would not free anything, so grow until jobs complete
+                openSegment(activeSegment + 1, firstLiveSegment);
+            }
+        }
+
+        int start = active.position();
+        for (byte[] record : records) {
+            if (FRAME_SIZE + record.length > active.remaining()) {
+                // Batch larger than a segment: continue in a new one without moving the live boundary
+                force(start);
+                openSegment(activeSegment + 1, firstLiveSegment);
+                start = active.position();
+            }
+            writeRecord(record);
+        }
+        force(start);
+    }
+
+    /**
+     * Bytes used by the active segment, for monitoring.
+     */
+    public long activeBytes() {
+        return active.position();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (activeChannel != null) {
+            active.force();
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    private void recover(Consumer<ByteBuffer> replay) throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+
+        // Newest segment with a valid header decides which segments are live
+        Long newest = null;
+        for (Long number : segments.descendingKeySet()) {
+            ByteBuffer header = readHeader(segments.get(number));
+            if (header != null) {
+                newest = number;
+                firstLiveSegment = header.getLong(FIRST_LIVE_OFFSET);
+                break;
+            }
+        }
+        if (newest == null) {
+            for (Path file : segments.values()) {
+                Files.deleteIfExists(file);
+            }
+            segments.clear();
+            firstLiveSegment = 1;
+            openSegment(1, 1);
+            return;
+        }
+
+        for (Long number : new ArrayList<>(segments.keySet())) {
+            if (number < firstLiveSegment || number > newest) {
+                deleteSegment(number);
+            }
+        }
+        for (Long number : segments.keySet()) {
+            if (number.equals(newest)) {
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(segments.get(number), StandardOpenOption.READ)) {
+                replaySegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), replay);
+            }
+        }
+
+        activeSegment = newest;
+        activeChannel = FileChannel.open(segments.get(newest), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(activeChannel.size(), segmentBytes));
+        int end = replaySegment(active, replay);
+
+        // Clear whatever follows the last valid record, so a later write cannot line up with stale bytes
+        active.position(end);
+        while (active.hasRemaining()) {
+            active.put((byte) 0);
+        }
+        active.force();
+        active.position(end);
+    }
+
+    /**
+     * @return position after the last valid record
+     */
+    private static int replaySegment(ByteBuffer segment, Consumer<ByteBuffer> replay) {
+        CRC32C crc = new CRC32C();
+        int position = HEADER_SIZE;
+        while (position + FRAME_SIZE <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + FRAME_SIZE + length > segment.limit()) {
+                break;
+            }
+            ByteBuffer record = segment.slice(position + FRAME_SIZE, length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != segment.getInt(position + 4)) {
+                break;
+            }
+            replay.accept(record.asReadOnlyBuffer());
+            position += FRAME_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Starts a new segment, copies the live records into it and only then moves the live boundary
+     * and deletes the older segments.
+     */
+    private void roll(List<byte[]> live) throws IOException {
+        long first = activeSegment + 1;
+        openSegment(first, firstLiveSegment);
+
+        int start = active.position();
+        for (byte[] record : live) {
+            if (FRAME_SIZE + record.length > active.remaining()) {
+                force(start);
+                openSegment(activeSegment + 1, firstLiveSegment);
+                start = active.position();
+            }
+            writeRecord(record);
+        }
+        force(start);
+
+        active.putLong(FIRST_LIVE_OFFSET, first);
+        active.force(0, HEADER_SIZE);
+        firstLiveSegment = first;
+
+        for (Long number : new ArrayList<>(segments.headMap(first).keySet())) {
+            deleteSegment(number);
+        }
+    }
+
+    private void openSegment(long number, long firstLive) throws IOException {
+        Path file = directory.resolve(String.format("segment-%08d.log", number));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(firstLive);
+        buffer.force(0, HEADER_SIZE);
+
+        if (activeChannel != null) {
+            active.force();
+            activeChannel.close();
+        }
+        segments.put(number, file);
+        activeSegment = number;
+        activeChannel = channel;
+        active = buffer;
+    }
+
+    private void writeRecord(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        active.putInt(record.length).putInt((int) crc.getValue()).put(record);
+    }
+
+    private void force(int start) {
+        if (active.position() > start) {
+            active.force(start, active.position() - start);
+        }
+    }
+
+    /**
+     * Segments below the live boundary are ignored on replay, so a failed delete
+     * (e.g. a mapping still held on Windows) is retried on the next open.
+     */
+    private void deleteSegment(long number) {
+        Path file = segments.remove(number);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Still below the live boundary - removed on the next open
+        }
+    }
+
+    private static ByteBuffer readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = channel.read(header);
+            }
+            header.flip();
+            if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                return null;
+            }
+            return header;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.jutjubic.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Minimal ISO-BMFF (MP4/MOV) box parser for upload metadata.
+ *
+ * Only box headers are walked, using positional reads on a {@link FileChannel};
+ * payloads are read just for {@code mvhd}, {@code tkhd}, {@code hdlr} and the first
+ * {@code stsd} entry, so large sample tables and media data are never touched.
+ * That replaces forking ffprobe for the common MP4 case.
+ *
+ * Returns {@code null} for anything that does not look like ISO-BMFF; callers fall back to ffprobe.
+ */
+public final class Mp4BoxParser {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_DEPTH = 8;
+
+    private Mp4BoxParser() {
+    }
+
+    /**
+     * Parses duration, resolution and codecs from the {@code moov} box.
+     *
+     * @return parsed metadata, or {@code null} if the file is not ISO-BMFF or has no {@code moov}
+     */
+    public static Mp4Metadata parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(16);
+
+            Box first = readBoxHeader(channel, 0, fileSize, header);
+            if (first == null || !first.type.equals("ftyp")) {
+                return null;
+            }
+
+            long position = 0;
+            while (position < fileSize) {
+                Box box = readBoxHeader(channel, position, fileSize, header);
+                if (box == null) {
+                    return null;
+                }
+                if (box.type.equals("moov")) {
+                    Mp4Metadata metadata = new Mp4Metadata();
+                    walk(channel, box, metadata, new TrackState(), 0);
+                    return metadata;
+                }
+                position = box.end;
+            }
+            return null;
+        }
+    }
+
+    private static void walk(FileChannel channel, Box parent, Mp4Metadata metadata, TrackState track,
+                             int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = parent.payloadStart;
+
+        while (position + HEADER_SIZE <= parent.end) {
+            Box box = readBoxHeader(channel, position, parent.end, header);
+            if (box == null) {
+                return;
+            }
+
+            switch (box.type) {
+                case "mvhd" -> parseMvhd(channel, box, metadata);
+                case "trak" -> {
+                    TrackState trackState = new TrackState();
+                    walk(channel, box, metadata, trackState, depth + 1);
+                    trackState.applyTo(metadata);
+                }
+                case "mdia", "minf", "stbl" -> walk(channel, box, metadata, track, depth + 1);
+                case "tkhd" -> parseTkhd(channel, box, track);
+                case "hdlr" -> track.handler = readFourCc(channel, box.payloadStart + 8, box.end);
+                case "stsd" -> parseStsd(channel, box, track);
+                default -> {
+                    // Not needed - skipped without reading its payload
+                }
+            }
+            position = box.end;
+        }
+    }
+
+    private static void parseMvhd(FileChannel channel, Box box, Mp4Metadata metadata) throws IOException {
+        ByteBuffer payload = readPayload(channel, box, 32);
+        if (payload == null) {
+            return;
+        }
+        int version = payload.get(0) & 0xFF;
+        long timescale;
+        long duration;
+        if (version == 1) {
+            timescale = Integer.toUnsignedLong(payload.getInt(20));
+            duration = payload.getLong(24);
+        } else {
+            timescale = Integer.toUnsignedLong(payload.getInt(12));
+            duration = Integer.toUnsignedLong(payload.getInt(16));
+        }
+        // All ones means "unknown" and zero is typical for fragmented MP4
+        boolean unknown = version == 1 ? duration == -1L : duration == 0xFFFFFFFFL;
+        if (timescale > 0 && duration > 0 && !unknown) {
+            metadata.durationSeconds = (double) duration / timescale;
+        }
+    }
+
+    private static void parseTkhd(FileChannel channel, Box box, TrackState track) throws IOException {
+        ByteBuffer payload = readPayload(channel, box, 96);
+        if (payload == null) {
+            return;
+        }
+        int offset = (payload.get(0) & 0xFF) == 1 ? 88 : 76;
+        if (payload.limit() >= offset + 8) {
+            // 16.16 fixed point
+            track.width = payload.getInt(offset) >>> 16;
+            track.height = payload.getInt(offset + 4) >>> 16;
+        }
+    }
+
+    private static void parseStsd(FileChannel channel, Box box, TrackState track) throws IOException {
+        // version/flags(4) + entry_count(4) + first entry: size(4) + format(4) + visual sample entry fields
+        ByteBuffer payload = readPayload(channel, box, 44);
+        if (payload == null || payload.limit() < 16 || payload.getInt(4) == 0) {
+            return;
+        }
+        byte[] format = new byte[4];
+        payload.get(12, format);
+        track.format = new String(format, StandardCharsets.ISO_8859_1);
+
+        if (payload.limit() >= 44) {
+            track.sampleWidth = payload.getShort(40) & 0xFFFF;
+            track.sampleHeight = payload.getShort(42) & 0xFFFF;
+        }
+    }
+
+    private static ByteBuffer readPayload(FileChannel channel, Box box, int maxBytes) throws IOException {
+        int length = (int) Math.min(maxBytes, box.end - box.payloadStart);
+        if (length <= 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, box.payloadStart);
+        buffer.flip();
+        return buffer.limit() == length ? buffer : null;
+    }
+
+    private static String readFourCc(FileChannel channel, long position, long end) throws IOException {
+        if (position + 4 > end) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        readFully(channel, buffer, position);
+        return buffer.hasRemaining() ? null : new String(buffer.array(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads a box header at {@code position}. Handles 64-bit sizes and size 0 ("to end of parent").
+     * Returns {@code null} for a truncated or malformed header.
+     */
+    private static Box readBoxHeader(FileChannel channel, long position, long limit, ByteBuffer header)
+            throws IOException {
+        if (position + HEADER_SIZE > limit) {
+            return null;
+        }
+        header.clear().limit(HEADER_SIZE);
+        readFully(channel, header, position);
+        if (header.hasRemaining()) {
+            return null;
+        }
+
+        long size = Integer.toUnsignedLong(header.getInt(0));
+        String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+        long payloadStart = position + HEADER_SIZE;
+
+        if (size == 1) {
+            header.clear().limit(8);
+            readFully(channel, header, payloadStart);
+            if (header.hasRemaining()) {
+                return null;
+            }
+            size = header.getLong(0);
+            payloadStart += 8;
+        } else if (size == 0) {
+            size = limit - position;
+        }
+
+        if (size < payloadStart - position || position + size > limit) {
+            return null;
+        }
+        return new Box(type, payloadStart, position + size);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Maps sample entry four-character codes to the codec names ffprobe reports.
+     */
+    static String codecName(String fourCc) {
+        if (fourCc == null) {
+            return null;
+        }
+        return switch (fourCc) {
+            case "avc1", "avc3" -> "h264";
+            case "hvc1", "hev1" -> "hevc";
+            case "av01" -> "av1";
+            case "vp09" -> "vp9";
+            case "mp4v" -> "mpeg4";
+            case "mp4a" -> "aac";
+            case "Opus" -> "opus";
+            case "ac-3" -> "ac3";
+            case "ec-3" -> "eac3";
+            default -> fourCc.trim();
+        };
+    }
+
+    private record Box(String type, long payloadStart, long end) {
+    }
+
+    private static final class TrackState {
+        private String handler;
+        private String format;
+        private int width;
+        private int height;
+        private int sampleWidth;
+        private int sampleHeight;
+
+        private void applyTo(Mp4Metadata metadata) {
+            if ("vide".equals(handler) && metadata.videoCodec == null) {
+                metadata.videoCodec = codecName(format);
+                // tkhd holds the display size; fall back to the coded size from the sample entry
+                metadata.width = width > 0 ? width : sampleWidth;
+                metadata.height = height > 0 ? height : sampleHeight;
+            } else if ("soun".equals(handler) && metadata.audioCodec == null) {
+                metadata.audioCodec = codecName(format);
+            }
+        }
+    }
+
+    /**
+     * Metadata read from the {@code moov} box. Missing values are {@code null} or 0.
+     */
+    public static final class Mp4Metadata {
+        private Double durationSeconds;
+        private int width;
+        private int height;
+        private String videoCodec;
+        private String audioCodec;
+
+        public Double getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public String getVideoCodec() {
+            return videoCodec;
+        }
+
+        public String getAudioCodec() {
+            return audioCodec;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.jutjubic.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the {@code moov} box of an MP4/MOV file in front of the media data ("faststart"),
+ * the same rewrite {@code qt-faststart} and {@code -movflags +faststart} perform.
+ *
+ * Only {@code moov} is read into memory; its {@code stco}/{@code co64} chunk offsets are shifted
+ * by the size of {@code moov}, and the media data is copied with {@link FileChannel#transferTo}.
+ * The result is written to a sibling temp file and atomically moved over the original, so readers
+ * see either the old or the new file.
+ */
+public final class Mp4Faststart {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_DEPTH = 8;
+
+    /**
+     * Larger {@code moov} boxes (hours of video with tiny chunks) are left alone rather than buffered.
+     */
+    private static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+
+    private static final String TEMP_SUFFIX = ".faststart.tmp";
+
+    private Mp4Faststart() {
+    }
+
+    /**
+     * @return true if the file is ISO-BMFF and its {@code moov} comes after the first {@code mdat}
+     */
+    public static boolean needsFaststart(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return findLayout(channel) != null;
+        }
+    }
+
+    /**
+     * Relocates {@code moov} to the front of the file.
+     *
+     * @return true if the file was rewritten, false if it already was faststart or cannot be handled
+     *         (not ISO-BMFF, compressed or oversized {@code moov}, 32-bit chunk offset overflow)
+     */
+    public static boolean relocateMoov(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            Layout layout = findLayout(source);
+            if (layout == null || layout.moov.size() > MAX_MOOV_SIZE) {
+                return false;
+            }
+
+            ByteBuffer moov = ByteBuffer.allocate((int) layout.moov.size());
+            readFully(source, moov, layout.moov.start);
+            if (moov.hasRemaining()) {
+                return false;
+            }
+            moov.flip();
+
+            // Everything between the insertion point and the old moov moves forward by the size of moov
+            if (!patchChunkOffsets(moov, layout.moov.payloadStart - layout.moov.start, moov.limit(),
+                    layout.insertAt, layout.moov.start, layout.moov.size(), 0)) {
+                return false;
+            }
+
+            try (FileChannel target = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                transferFully(source, 0, layout.insertAt, target);
+                while (moov.hasRemaining()) {
+                    target.write(moov);
+                }
+                transferFully(source, layout.insertAt, layout.moov.start - layout.insertAt, target);
+                transferFully(source, layout.moov.end, source.size() - layout.moov.end, target);
+                target.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Finds the top-level boxes. Returns null unless the file starts with {@code ftyp} and has a
+     * {@code moov} after its first {@code mdat}.
+     */
+    private static Layout findLayout(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        List<Box> boxes = new ArrayList<>();
+
+        long position = 0;
+        while (position < fileSize) {
+            Box box = readBoxHeader(channel, position, fileSize, header);
+            if (box == null) {
+                return null;
+            }
+            boxes.add(box);
+            position = box.end;
+        }
+        if (boxes.isEmpty() || !boxes.get(0).type.equals("ftyp")) {
+            return null;
+        }
+
+        Box firstMdat = null;
+        for (Box box : boxes) {
+            if (box.type.equals("mdat") && firstMdat == null) {
+                firstMdat = box;
+            } else if (box.type.equals("moov")) {
+                return firstMdat != null ? new Layout(box, firstMdat.start) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks the boxes inside {@code moov} (held in {@code buffer}) and shifts every chunk offset
+     * that points into {@code [insertAt, moovStart)} by {@code shift}. Offsets past the old
+     * {@code moov} keep their position.
+     *
+     * Every read is bounds-checked against the enclosing box, so a malformed {@code moov} is
+     * reported as unsupported instead of throwing.
+     *
+     * @return false if the layout is not supported (compressed moov, 32-bit overflow) or malformed
+     */
+    private static boolean patchChunkOffsets(ByteBuffer buffer, long from, long to, long insertAt, long moovStart,
+                                             long shift, int depth) {
+        if (depth > MAX_DEPTH) {
+            return true;
+        }
+        long position = from;
+        while (position + HEADER_SIZE <= to) {
+            int start = (int) position;
+            long size = Integer.toUnsignedLong(buffer.getInt(start));
+            String type = fourCc(buffer, start + 4);
+            int payload = start + HEADER_SIZE;
+            if (size == 1) {
+                if (payload + 8 > to) {
+                    return false;
+                }
+                size = buffer.getLong(payload);
+                payload += 8;
+            } else if (size == 0) {
+                size = to - position;
+            }
+            // size > to - position also rejects a 64-bit size that would overflow position + size
+            if (size < payload - start || size > to - position) {
+                return false;
+            }
+            int end = (int) (position + size);
+
+            switch (type) {
+                case "cmov" -> {
+                    return false;
+                }
+                case "trak", "mdia", "minf", "stbl" -> {
+                    if (!patchChunkOffsets(buffer, payload, end, insertAt, moovStart, shift, depth + 1)) {
+                        return false;
+                    }
+                }
+                case "stco" -> {
+                    // version/flags and entry count
+                    if (payload + 8 > end) {
+                        return false;
+                    }
+                    long count = Integer.toUnsignedLong(buffer.getInt(payload + 4));
+                    if (payload + 8 + count * 4 > end) {
+                        return false;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        int entry = payload + 8 + i * 4;
+                        long offset = Integer.toUnsignedLong(buffer.getInt(entry));
+                        if (offset >= insertAt && offset < moovStart) {
+                            offset += shift;
+                            if (offset > 0xFFFFFFFFL) {
+                                return false;
+                            }
+                            buffer.putInt(entry, (int) offset);
+                        }
+                    }
+                }
+                case "co64" -> {
+                    if (payload + 8 > end) {
+                        return false;
+                    }
+                    long count = Integer.toUnsignedLong(buffer.getInt(payload + 4));
+                    if (payload + 8 + count * 8 > end) {
+                        return false;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        int entry = payload + 8 + i * 8;
+                        long offset = buffer.getLong(entry);
+                        if (offset >= insertAt && offset < moovStart) {
+                            buffer.putLong(entry, offset + shift);
+                        }
+                    }
+                }
+                default -> {
+                    // No chunk offsets inside
+                }
+            }
+            position = end;
+        }
+        return true;
+    }
+
+    private static Box readBoxHeader(FileChannel channel, long position, long limit, ByteBuffer header)
+            throws IOException {
+        if (position + HEADER_SIZE > limit) {
+            return null;
+        }
+        header.clear().limit(HEADER_SIZE);
+        readFully(channel, header, position);
+        if (header.hasRemaining()) {
+            return null;
+        }
+
+        long size = Integer.toUnsignedLong(header.getInt(0));
+        String type = fourCc(header, 4);
+        long payloadStart = position + HEADER_SIZE;
+
+        if (size == 1) {
+            header.clear().limit(8);
+            readFully(channel, header, payloadStart);
+            if (header.hasRemaining()) {
+                return null;
+            }
+            size = header.getLong(0);
+            payloadStart += 8;
+        } else if (size == 0) {
+            size = limit - position;
+        }
+
+        if (size < payloadStart - position || size > limit - position) {
+            return null;
+        }
+        return new Box(type, position, payloadStart, position + size);
+    }
+
+    private static String fourCc(ByteBuffer buffer, int index) {
+        byte[] type = new byte[4];
+        buffer.get(index, type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private static void transferFully(FileChannel source, long position, long count, FileChannel target)
+            throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file while copying media data");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private record Box(String type, long start, long payloadStart, long end) {
+        long size() {
+            return end - start;
+        }
+    }
+
+    private record Layout(Box moov, long insertAt) {
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.jutjubic.utils;
+
+import com.example.jutjubic.dto.SuggestionDto;
+
+import java.util.*;
+
+/**
+ * Immutable prefix trie for typeahead suggestions.
+ *
+ * Every node stores the ids of its top-K suggestions (by weight) in its subtree,
+ * so a lookup costs O(prefix length) and never scans the subtree.
+ * Children are kept in sorted char arrays and found with binary search,
+ * which is much more compact than a map per node.
+ *
+ * Instances are built once with {@link Builder} and then shared read-only between threads.
+ */
+public final class SuggestionTrie {
+
+    private static final int[] NO_IDS = new int[0];
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root;
+    private final String[] texts;
+    private final String[] types;
+    private final UUID[] videoIds;
+    private final long[] weights;
+
+    private SuggestionTrie(Node root, String[] texts, String[] types, UUID[] videoIds, long[] weights) {
+        this.root = root;
+        this.texts = texts;
+        this.types = types;
+        this.videoIds = videoIds;
+        this.weights = weights;
+    }
+
+    public static SuggestionTrie empty() {
+        return new Builder(1).build();
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    /**
+     * Returns up to {@code limit} suggestions whose key starts with the given prefix,
+     * heaviest first. The prefix must already be normalized with {@link #normalize(String)}.
+     */
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+
+        int count = Math.min(limit, node.top.length);
+        List<SuggestionDto> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = node.top[i];
+            result.add(new SuggestionDto(texts[id], types[id], videoIds[id], weights[id]));
+        }
+        return result;
+    }
+
+    /**
+     * Lowercases and collapses whitespace so lookups and keys agree.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final int[] top;
+
+        private Node(char[] keys, Node[] children, int[] top) {
+            this.keys = keys;
+            this.children = children;
+            this.top = top;
+        }
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    /**
+     * Mutable builder. Not thread-safe; build a fresh one for every rebuild.
+     */
+    public static final class Builder {
+        private final int topK;
+        private final MutableNode root = new MutableNode();
+        private final List<String> texts = new ArrayList<>();
+        private final List<String> types = new ArrayList<>();
+        private final List<UUID> videoIds = new ArrayList<>();
+        private final List<Long> weights = new ArrayList<>();
+
+        public Builder(int topK) {
+            this.topK = topK;
+        }
+
+        /**
+         * Registers a suggestion and returns its id, to be used with {@link #addKey(String, int)}.
+         */
+        public int addSuggestion(String text, String type, UUID videoId, long weight) {
+            texts.add(text);
+            types.add(type);
+            videoIds.add(videoId);
+            weights.add(weight);
+            return texts.size() - 1;
+        }
+
+        /**
+         * Makes the suggestion reachable through every prefix of the given key.
+         */
+        public void addKey(String key, int suggestionId) {
+            String normalized = normalize(key);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            MutableNode node = root;
+            for (int i = 0; i < normalized.length(); i++) {
+                node = node.children.computeIfAbsent(normalized.charAt(i), c -> new MutableNode());
+            }
+            node.terminals.add(suggestionId);
+        }
+
+        public SuggestionTrie build() {
+            long[] weightArray = new long[weights.size()];
+            for (int i = 0; i < weightArray.length; i++) {
+                weightArray[i] = weights.get(i);
+            }
+            Node frozen = freeze(root, weightArray);
+            return new SuggestionTrie(frozen,
+                    texts.toArray(new String[0]),
+                    types.toArray(new String[0]),
+                    videoIds.toArray(new UUID[0]),
+                    weightArray);
+        }
+
+        private Node freeze(MutableNode node, long[] weightArray) {
+            char[] keys = node.children.isEmpty() ? NO_KEYS : new char[node.children.size()];
+            Node[] children = node.children.isEmpty() ? NO_CHILDREN : new Node[node.children.size()];
+
+            // Candidates are this node's own suggestions plus the top-K of every child
+            Set<Integer> candidates = new HashSet<>(node.terminals);
+            int i = 0;
+            for (Map.Entry<Character, MutableNode> entry : node.children.entrySet()) {
+                keys[i] = entry.getKey();
+                children[i] = freeze(entry.getValue(), weightArray);
+                for (int id : children[i].top) {
+                    candidates.add(id);
+                }
+                i++;
+            }
+
+            int[] top = candidates.isEmpty() ? NO_IDS : candidates.stream()
+                    .sorted(Comparator.<Integer>comparingLong(id -> weightArray[id]).reversed()
+                            .thenComparing(id -> texts.get(id)))
+                    .limit(topK)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new Node(keys, children, top);
+        }
+    }
+
+    private static final class MutableNode {
+        private final TreeMap<Character, MutableNode> children = new TreeMap<>();
+        private final List<Integer> terminals = new ArrayList<>(1);
+    }
+}
@@ -0,0 +1,42 @@
+-- ============================================================================
+-- NORMALIZED VIDEO TAGS
+-- ============================================================================
+-- videos.tags is a comma-separated TEXT column, so "videos with tag X" needs a
+-- full scan that parses every row. This migration creates video_tags with one
+-- row per (tag, video) and backfills it from the existing column.
+--
+-- The primary key (tag, video_id) prevents duplicates; the composite index
+-- (tag, created_at, video_id) serves keyset pagination for
+-- GET /api/tags/{tag}/videos without a filesort.
+--
+-- Tags are normalized the same way as TagService.normalizeTag:
+-- trimmed, lowercased, and '#' stripped and trimmed again for as long as the tag starts
+-- with '#' ("# #music" -> "music"), cut to 64 characters. The whole leading run of '#'
+-- and whitespace is removed at once, which is what that loop ends up removing.
+-- Videos without created_at get the migration time, so every row has a usable cursor.
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS video_tags (
+    tag        VARCHAR(64) NOT NULL,
+    video_id   BINARY(16)  NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (tag, video_id),
+    CONSTRAINT fk_video_tags_video FOREIGN KEY (video_id) REFERENCES videos (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_video_tags_tag_created ON video_tags (tag, created_at, video_id);
+
+-- Backfill: split the comma-separated column with JSON_TABLE (MySQL 8+).
+-- Quotes and backslashes are stripped so every tag list forms a valid JSON array.
+INSERT IGNORE INTO video_tags (tag, video_id, created_at)
+SELECT DISTINCT
+    LEFT(LOWER(REGEXP_REPLACE(jt.tag, '^[#[:space:]]+|[[:space:]]+$', '')), 64),
+    v.id,
+    COALESCE(v.created_at, NOW(6))
+FROM videos v,
+     JSON_TABLE(
+         CONCAT('["', REPLACE(REPLACE(REPLACE(v.tags, '\\', ''), '"', ''), ',', '","'), '"]'),
+         '$[*]' COLUMNS (tag VARCHAR(255) PATH '$')
+     ) jt
+WHERE v.tags IS NOT NULL
+  AND REGEXP_REPLACE(jt.tag, '^[#[:space:]]+|[[:space:]]+$', '') <> '';
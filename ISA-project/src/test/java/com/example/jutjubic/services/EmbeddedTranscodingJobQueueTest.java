@@ -0,0 +1,132 @@
+package com.example.jutjubic.services;
+
+import com.example.jutjubic.dto.TranscodingJobMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmbeddedTranscodingJobQueueTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @TempDir
+    Path directory;
+
+    private final List<EmbeddedTranscodingJobQueue> queues = new ArrayList<>();
+
+    @AfterEach
+    void shutdownQueues() throws IOException {
+        for (EmbeddedTranscodingJobQueue queue : queues) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void redeliversInProgressJobAfterRestartWithSameAttempt() throws Exception {
+        UUID videoId = UUID.randomUUID();
+        CountDownLatch inProgress = new CountDownLatch(1);
+        TranscodingConsumerService crashing = mock(TranscodingConsumerService.class);
+        when(crashing.process(any(), anyInt())).thenAnswer(invocation -> {
+            int attempt = invocation.getArgument(1);
+            if (attempt == 0) {
+                return TranscodingJobQueue.Outcome.RETRY;
+            }
+            inProgress.countDown();
+            // Still transcoding when the application goes down
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return TranscodingJobQueue.Outcome.ACK;
+        });
+
+        EmbeddedTranscodingJobQueue queue = newQueue(crashing);
+        queue.publish(List.of(message(videoId, TranscodingProducerService.PRIORITY_NORMAL)), List.of("job"));
+        queue.startConsumers();
+        assertTrue(inProgress.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        queue.shutdown();
+
+        BlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+        EmbeddedTranscodingJobQueue restarted = newQueue(recording(deliveries));
+        assertEquals(1, restarted.depth());
+        restarted.startConsumers();
+
+        Delivery delivery = deliveries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(new Delivery(videoId, 1), delivery);
+    }
+
+    @Test
+    void pendingJobsSurviveRestartInPriorityOrder() throws Exception {
+        UUID low = UUID.randomUUID();
+        UUID high = UUID.randomUUID();
+        EmbeddedTranscodingJobQueue queue = newQueue(mock(TranscodingConsumerService.class));
+        queue.publish(List.of(message(low, TranscodingProducerService.PRIORITY_LOW),
+                message(high, TranscodingProducerService.PRIORITY_HIGH)), List.of("low", "high"));
+        queue.shutdown();
+
+        BlockingQueue<Delivery> deliveries = new LinkedBlockingQueue<>();
+        EmbeddedTranscodingJobQueue restarted = newQueue(recording(deliveries));
+        assertEquals(2, restarted.depth());
+        restarted.startConsumers();
+
+        assertEquals(new Delivery(high, 0), deliveries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(new Delivery(low, 0), deliveries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @SuppressWarnings("unchecked")
+    private EmbeddedTranscodingJobQueue newQueue(TranscodingConsumerService consumer) throws IOException {
+        ObjectProvider<TranscodingConsumerService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(consumer);
+
+        EmbeddedTranscodingJobQueue queue = new EmbeddedTranscodingJobQueue(provider, new PerformanceMetricsService(),
+                JsonMapper.builder().build());
+        ReflectionTestUtils.setField(queue, "directory", directory.toString());
+        ReflectionTestUtils.setField(queue, "segmentBytes", 64 * 1024);
+        ReflectionTestUtils.setField(queue, "initialConsumers", 1);
+        ReflectionTestUtils.setField(queue, "retryDelayMs", 0L);
+        queue.init();
+        queues.add(queue);
+        return queue;
+    }
+
+    private static TranscodingConsumerService recording(BlockingQueue<Delivery> deliveries) {
+        TranscodingConsumerService consumer = mock(TranscodingConsumerService.class);
+        when(consumer.process(any(), anyInt())).thenAnswer(invocation -> {
+            TranscodingJobMessage message = invocation.getArgument(0);
+            deliveries.add(new Delivery(message.getVideoId(), invocation.getArgument(1)));
+            return TranscodingJobQueue.Outcome.ACK;
+        });
+        return consumer;
+    }
+
+    private static TranscodingJobMessage message(UUID videoId, int priority) {
+        TranscodingJobMessage message = new TranscodingJobMessage();
+        message.setVideoId(videoId);
+        message.setPriority(priority);
+        return message;
+    }
+
+    private record Delivery(UUID videoId, int attempt) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.jutjubic.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedAppendLogTest {
+
+    private static final int SEGMENT_BYTES = 128;
+    private static final int HEADER_SIZE = 16;
+    private static final int FRAME_SIZE = 8;
+
+    // Does not fit after "a" and "b" in the first segment, but fits after one copied record in the next
+    private static final int FILLER_BYTES = 90;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAppendedRecordsAfterReopen() throws IOException {
+        try (MappedAppendLog log = open(new ArrayList<>(), List::of)) {
+            log.append(List.of(record("a"), record("b")));
+            log.append(List.of(record("c")));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (MappedAppendLog ignored = open(replayed, List::of)) {
+            assertEquals(List.of("a", "b", "c"), replayed);
+        }
+    }
+
+    @Test
+    void replayStopsAtTornTailAndOverwritesIt() throws IOException {
+        try (MappedAppendLog log = open(new ArrayList<>(), List::of)) {
+            log.append(List.of(record("a"), record("b"), record("c")));
+        }
+        // Crash mid-write of "c": its payload no longer matches the checksum
+        int cPayload = HEADER_SIZE + 2 * (FRAME_SIZE + 1) + FRAME_SIZE;
+        patch(segment(1), cPayload, new byte[]{'x'});
+
+        List<String> replayed = new ArrayList<>();
+        try (MappedAppendLog log = open(replayed, List::of)) {
+            assertEquals(List.of("a", "b"), replayed);
+            log.append(List.of(record("d")));
+        }
+
+        replayed.clear();
+        try (MappedAppendLog ignored = open(replayed, List::of)) {
+            assertEquals(List.of("a", "b", "d"), replayed);
+        }
+    }
+
+    @Test
+    void replaysOldSegmentsWhenCrashedBetweenRollCopyAndHeaderUpdate() throws IOException {
+        List<byte[]> live = new ArrayList<>();
+        try (MappedAppendLog log = open(new ArrayList<>(), () -> live)) {
+            log.append(List.of(record("a"), record("b")));
+        }
+        byte[] firstSegment = Files.readAllBytes(segment(1));
+
+        // "a" is done, "b" is still live: filling the segment rolls "b" into segment 2
+        live.add(record("b"));
+        try (MappedAppendLog log = open(new ArrayList<>(), () -> live)) {
+            log.append(List.of(new byte[FILLER_BYTES]));
+            assertEquals(1, log.segmentCount());
+        }
+
+        // Crash after the copy of "b" was forced, before segment 2's header moved the live boundary:
+        // segment 1 still exists, segment 2 still points at it and holds only the copy
+        Files.write(segment(1), firstSegment);
+        patch(segment(2), 8, ByteBuffer.allocate(8).putLong(1).array());
+        int afterCopy = HEADER_SIZE + FRAME_SIZE + 1;
+        patch(segment(2), afterCopy, new byte[SEGMENT_BYTES - afterCopy]);
+
+        List<String> replayed = new ArrayList<>();
+        try (MappedAppendLog log = open(replayed, () -> live)) {
+            assertEquals(List.of("a", "b", "b"), replayed);
+            assertEquals(2, log.segmentCount());
+        }
+    }
+
+    @Test
+    void rollKeepsOnlyLiveRecords() throws IOException {
+        List<byte[]> live = new ArrayList<>();
+        try (MappedAppendLog log = open(new ArrayList<>(), () -> live)) {
+            log.append(List.of(record("a"), record("b")));
+            live.add(record("b"));
+            log.append(List.of(new byte[FILLER_BYTES]));
+            assertEquals(1, log.segmentCount());
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (MappedAppendLog ignored = open(replayed, () -> live)) {
+            assertEquals(List.of("b", "\0".repeat(FILLER_BYTES)), replayed);
+        }
+    }
+
+    @Test
+    void batchLargerThanOneSegmentSpansSegments() throws IOException {
+        // 112 usable bytes per segment: four 24-byte frames fit, the fifth starts a new segment
+        List<byte[]> batch = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String value = String.format("record-%09d", i);
+            batch.add(record(value));
+            expected.add(value);
+        }
+
+        try (MappedAppendLog log = open(new ArrayList<>(), List::of)) {
+            log.append(batch);
+            assertEquals(3, log.segmentCount());
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (MappedAppendLog log = open(replayed, List::of)) {
+            assertEquals(expected, replayed);
+            assertEquals(3, log.segmentCount());
+        }
+    }
+
+    @Test
+    void rejectsRecordLargerThanSegment() throws IOException {
+        try (MappedAppendLog log = open(new ArrayList<>(), List::of)) {
+            assertThrows(IOException.class, () -> log.append(List.of(new byte[SEGMENT_BYTES])));
+        }
+    }
+
+    private MappedAppendLog open(List<String> replayed, Supplier<List<byte[]>> live) throws IOException {
+        return MappedAppendLog.open(directory, SEGMENT_BYTES, record -> {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            replayed.add(new String(bytes, StandardCharsets.US_ASCII));
+        }, live);
+    }
+
+    private Path segment(long number) {
+        return directory.resolve(String.format("segment-%08d.log", number));
+    }
+
+    private static byte[] record(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void patch(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.jutjubic.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Mp4FaststartTest {
+
+    private static final byte[] MEDIA = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // ftyp (16 bytes) + mdat header (8 bytes): the media payload starts here in the original layout
+    private static final int MEDIA_OFFSET = 24;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void relocatesMoovAndShiftsStcoOffsets() throws IOException {
+        byte[] moov = moov(box("stco", fullBox(1, ByteBuffer.allocate(4).putInt(MEDIA_OFFSET).array())));
+        Path file = write(concat(ftyp(), mdat(), moov));
+
+        assertTrue(Mp4Faststart.needsFaststart(file));
+        assertTrue(Mp4Faststart.relocateMoov(file));
+
+        byte[] result = Files.readAllBytes(file);
+        assertEquals("moov", fourCc(result, 16 + 4));
+        int shifted = ByteBuffer.wrap(result).getInt(indexOf(result, "stco") + 16);
+        assertEquals(MEDIA_OFFSET + moov.length, shifted);
+        assertArrayEquals(MEDIA, Arrays.copyOfRange(result, shifted, shifted + MEDIA.length));
+        assertFalse(Mp4Faststart.needsFaststart(file));
+        assertFalse(Files.exists(directory.resolve("video.mp4.faststart.tmp")));
+    }
+
+    @Test
+    void relocatesMoovAndShiftsCo64Offsets() throws IOException {
+        byte[] moov = moov(box("co64", fullBox(1, ByteBuffer.allocate(8).putLong(MEDIA_OFFSET).array())));
+        Path file = write(concat(ftyp(), mdat(), moov));
+
+        assertTrue(Mp4Faststart.relocateMoov(file));
+
+        byte[] result = Files.readAllBytes(file);
+        long shifted = ByteBuffer.wrap(result).getLong(indexOf(result, "co64") + 16);
+        assertEquals(MEDIA_OFFSET + moov.length, shifted);
+        assertArrayEquals(MEDIA, Arrays.copyOfRange(result, (int) shifted, (int) shifted + MEDIA.length));
+    }
+
+    @Test
+    void leavesFaststartFileAlone() throws IOException {
+        byte[] original = concat(ftyp(), moov(box("stco", fullBox(1, ByteBuffer.allocate(4).putInt(84).array()))),
+                mdat());
+        Path file = write(original);
+
+        assertFalse(Mp4Faststart.needsFaststart(file));
+        assertFalse(Mp4Faststart.relocateMoov(file));
+        assertArrayEquals(original, Files.readAllBytes(file));
+    }
+
+    @Test
+    void rejectsNonIsoBmffFile() throws IOException {
+        Path file = write("not an mp4 file at all".getBytes(StandardCharsets.US_ASCII));
+
+        assertFalse(Mp4Faststart.needsFaststart(file));
+        assertFalse(Mp4Faststart.relocateMoov(file));
+    }
+
+    @Test
+    void rejectsStcoWithMoreEntriesThanFit() throws IOException {
+        assertUnchanged(moov(box("stco", fullBox(1000, ByteBuffer.allocate(4).putInt(MEDIA_OFFSET).array()))));
+    }
+
+    @Test
+    void rejectsStcoTooShortForEntryCount() throws IOException {
+        assertUnchanged(moov(box("stco", new byte[4])));
+    }
+
+    @Test
+    void rejectsCo64TooShortForEntryCount() throws IOException {
+        assertUnchanged(moov(box("co64", new byte[2])));
+    }
+
+    @Test
+    void rejectsChildBoxLargerThanParent() throws IOException {
+        byte[] stco = box("stco", fullBox(1, ByteBuffer.allocate(4).putInt(MEDIA_OFFSET).array()));
+        ByteBuffer.wrap(stco).putInt(0, 4096);
+        assertUnchanged(moov(stco));
+    }
+
+    @Test
+    void rejectsOverflowingLargesize() throws IOException {
+        byte[] child = ByteBuffer.allocate(16).putInt(1).put(type("stco")).putLong(Long.MAX_VALUE).array();
+        assertUnchanged(box("moov", box("trak", child)));
+    }
+
+    @Test
+    void rejectsTruncatedLargesizeHeader() throws IOException {
+        // size 1 announces an 8-byte largesize, but the parent ends after the type
+        byte[] child = ByteBuffer.allocate(12).putInt(1).put(type("stco")).putInt(0).array();
+        assertUnchanged(box("moov", box("trak", child)));
+    }
+
+    private void assertUnchanged(byte[] moov) throws IOException {
+        byte[] original = concat(ftyp(), mdat(), moov);
+        Path file = write(original);
+
+        assertFalse(Mp4Faststart.relocateMoov(file));
+        assertArrayEquals(original, Files.readAllBytes(file));
+        assertFalse(Files.exists(directory.resolve("video.mp4.faststart.tmp")));
+    }
+
+    private Path write(byte[] content) throws IOException {
+        Path file = directory.resolve("video.mp4");
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] ftyp() {
+        return box("ftyp", concat(type("isom"), new byte[]{0, 0, 2, 0}));
+    }
+
+    private static byte[] mdat() {
+        return box("mdat", MEDIA);
+    }
+
+    /**
+     * moov > trak > mdia > minf > stbl > chunk offset box.
+     */
+    private static byte[] moov(byte[] chunkOffsets) {
+        return box("moov", box("trak", box("mdia", box("minf", box("stbl", chunkOffsets)))));
+    }
+
+    private static byte[] fullBox(int count, byte[] entries) {
+        return concat(new byte[4], ByteBuffer.allocate(4).putInt(count).array(), entries);
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return concat(ByteBuffer.allocate(4).putInt(8 + payload.length).array(), type(type), payload);
+    }
+
+    private static byte[] type(String type) {
+        return type.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static String fourCc(byte[] content, int index) {
+        return new String(content, index, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int indexOf(byte[] content, String type) {
+        for (int i = 0; i + 4 <= content.length; i++) {
+            if (fourCc(content, i).equals(type)) {
+                return i - 4;
+            }
+        }
+        throw new AssertionError(type + " not found");
+    }
+}
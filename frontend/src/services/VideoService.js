@@ -69,6 +69,18 @@ export function getVideoById(id) {
   return api.get(`/api/videos/${id}`);
 }
 
+/**
+ * Get several videos in one request instead of one getVideoById call per video.
+ * Results follow the order of the given IDs; missing IDs are skipped.
+ * @param {string[]} ids - Video UUIDs (max 100)
+ * @returns {Promise} - Axios response promise with video list
+ */
+export function getVideosBatch(ids) {
+  return api.get('/api/videos/batch', {
+    params: { ids: ids.join(',') }
+  });
+}
+
 /**
  * Create a new video with file upload.
  * @param {FormData} formData - FormData containing video data and files